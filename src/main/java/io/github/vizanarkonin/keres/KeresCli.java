@@ -0,0 +1,146 @@
+package io.github.vizanarkonin.keres;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.github.vizanarkonin.keres.core.comparison.RunComparator;
+import io.github.vizanarkonin.keres.core.comparison.RunComparison;
+import io.github.vizanarkonin.keres.core.comparison.RunResults;
+import io.github.vizanarkonin.keres.core.processing.DataCollector;
+
+/**
+ * Command line entry point for results post-processing tools, which don't require a scenario to be run.
+ * Usage: java -cp {keres jar} io.github.vizanarkonin.keres.KeresCli {command} {arguments}
+ * Exit codes: 0 - success, 1 - error, 2 - invalid arguments, 3 - performance regression detected (compare command)
+ */
+public class KeresCli {
+    private static final Logger     log                     = LogManager.getLogger("KeresCli");
+    private static final int        EXIT_CODE_REGRESSION    = 3;
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            printUsage();
+            System.exit(2);
+        }
+
+        int exitCode;
+        try {
+            switch (args[0]) {
+                case "recover":
+                    exitCode = recover(args);
+                    break;
+                case "compare":
+                    exitCode = compare(args);
+                    break;
+                default:
+                    printUsage();
+                    exitCode = 2;
+            }
+        } catch (Exception e) {
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+            exitCode = 1;
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * recover {checkpoint file or folder} [results folder]
+     * Builds HTML report from a results checkpoint. Results folder defaults to KeresResults.
+     */
+    private static int recover(String[] args) throws Exception {
+        if (args.length < 2) {
+            printUsage();
+            return 2;
+        }
+
+        String resultsFolder = args.length > 2 ? args[2] : "KeresResults";
+        Path reportPath = DataCollector.recoverReport(Paths.get(args[1]), resultsFolder);
+        if (reportPath == null) {
+            return 1;
+        }
+        System.out.println("Report is recovered into " + reportPath);
+
+        return 0;
+    }
+
+    /**
+     * compare [options] {baseline} {candidate} [{candidate} ...]
+     * Compares each candidate run with the baseline one. Runs are given as report folders, results checkpoints or journal folders.
+     * Options:
+     *  --output {folder}           - Folder to write comparison.json and comparison.txt into. Defaults to the current folder
+     *  --percentiles {list}        - Compared percentiles, i.e. 50,90,99
+     *  --significance {value}      - Significance level, i.e. 0.01
+     *  --latency-tolerance {%}     - Maximum tolerated increase of a percentile, in percent
+     *  --error-rate-tolerance {%}  - Maximum tolerated increase of the error rate, in percentage points
+     *  --throughput-tolerance {%}  - Maximum tolerated decrease of requests per second, in percent
+     */
+    private static int compare(String[] args) throws Exception {
+        RunComparator comparator = new RunComparator();
+        Path output = Paths.get(".");
+        List<RunResults> runs = new ArrayList<>();
+        for (int index = 1; index < args.length; index++) {
+            String argument = args[index];
+            if (!argument.startsWith("--")) {
+                runs.add(RunResults.load(Paths.get(argument)));
+                continue;
+            }
+            if (index + 1 >= args.length) {
+                printUsage();
+                return 2;
+            }
+
+            String value = args[++index];
+            switch (argument) {
+                case "--output":
+                    output = Paths.get(value);
+                    break;
+                case "--percentiles":
+                    comparator.setPercentiles(Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).sorted().toArray());
+                    break;
+                case "--significance":
+                    comparator.setSignificanceLevel(Double.parseDouble(value));
+                    break;
+                case "--latency-tolerance":
+                    comparator.setMaxLatencyIncrease(Double.parseDouble(value) / 100);
+                    break;
+                case "--error-rate-tolerance":
+                    comparator.setMaxErrorRateIncrease(Double.parseDouble(value) / 100);
+                    break;
+                case "--throughput-tolerance":
+                    comparator.setMaxThroughputDecrease(Double.parseDouble(value) / 100);
+                    break;
+                default:
+                    printUsage();
+                    return 2;
+            }
+        }
+        if (runs.size() < 2) {
+            printUsage();
+            return 2;
+        }
+
+        List<RunComparison> comparisons = comparator.compareAll(runs);
+        comparisons.forEach(comparison -> System.out.print(comparison.toText()));
+        boolean passed = RunComparison.writeReport(comparisons, output);
+        System.out.println("Comparison verdict: " + (passed ? "PASSED" : "REGRESSED") + ". Reports are written into " + output.toAbsolutePath());
+
+        return passed ? 0 : EXIT_CODE_REGRESSION;
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: KeresCli {command} {arguments}");
+        System.out.println("Commands:");
+        System.out.println("    recover {checkpoint file or folder} [results folder] - builds HTML report from the latest results checkpoint of a run that did not finish");
+        System.out.println("    compare [options] {baseline} {candidate} [{candidate} ...] - compares runs (report folders, checkpoints or journals) with the baseline");
+        System.out.println("        --output {folder}, --percentiles {50,90,99}, --significance {0.01}, --latency-tolerance {10},");
+        System.out.println("        --error-rate-tolerance {1}, --throughput-tolerance {10}");
+    }
+}
@@ -3,6 +3,7 @@ package io.github.vizanarkonin.keres;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -22,6 +23,12 @@ import io.github.vizanarkonin.keres.core.interfaces.KeresScenarioMetaData;
 import io.github.vizanarkonin.keres.core.interfaces.KeresUserDefinition;
 import io.github.vizanarkonin.keres.core.interfaces.KeresUserDefinitionMetaData;
 import io.github.vizanarkonin.keres.core.processing.DataCollector;
+import io.github.vizanarkonin.keres.core.processing.KeyNormalizationRule;
+import io.github.vizanarkonin.keres.core.processing.MetricKeys;
+import io.github.vizanarkonin.keres.core.processing.SloAction;
+import io.github.vizanarkonin.keres.core.processing.SloRule;
+import io.github.vizanarkonin.keres.core.processing.NodeResultsMode;
+import io.github.vizanarkonin.keres.core.processing.OverflowPolicy;
 import io.github.vizanarkonin.keres.core.utils.ClassUtils;
 import io.github.vizanarkonin.keres.core.utils.KeresMode;
 import io.github.vizanarkonin.keres.core.utils.TimeUtils;
@@ -243,7 +250,9 @@ public class KeresController {
         log.warn("Stop Execution called");
         log.warn("---------------------");
         stopExecution = true;
-        runnerThread.interrupt();
+        if (runnerThread != null) {
+            runnerThread.interrupt();
+        }
     }
 
     public static boolean shouldStop() {
@@ -253,4 +262,233 @@ public class KeresController {
     public static void setResultsFolderRoot(String location) {
         DataCollector.get().setResultsFolder(location);
     }
+
+    /**
+     * By default, report only contains per-second aggregates (counters and latency histograms).
+     * Enabling this option makes collector read every raw sample back from the results journal and include them in the report.
+     * NOTE: Report size grows with every request made - use it for short runs and debugging.
+     * @param value - true to include raw samples, false to only include aggregates
+     */
+    public static void setRawSamplesRetention(boolean value) {
+        DataCollector.get().setRetainRawSamples(value);
+    }
+
+    /**
+     * Unless all raw samples are retained - report includes a bounded random sample of them, used by scatter chart of the report viewer.
+     * Run time of each request key is split into windows, each one keeping up to samplesPerWindow random responses.
+     * Once there are more than maxWindows windows - adjacent ones are merged, so report size doesn't depend on the run duration.
+     * Defaults are 50 samples and 120 windows per key.
+     * @param samplesPerWindow  - Maximum amount of samples per window, or 0 to disable sampling
+     * @param maxWindows        - Maximum amount of windows per request key
+     */
+    public static void setRawSamplesSampling(int samplesPerWindow, int maxWindows) {
+        DataCollector.get().setRawSamplesPerWindow(samplesPerWindow);
+        DataCollector.get().setMaxRawSamplesWindows(maxWindows);
+    }
+
+    /**
+     * Defines what the node submits to the hub. By default, only per-second aggregates are sent - counters, failures
+     * and latency histograms, so hub ingress does not depend on the node's RPS.
+     * RAW mode sends every raw sample instead (requires results journal) - use it if raw samples are needed in hub's report.
+     * @param value - Node results mode
+     */
+    public static void setNodeResultsMode(NodeResultsMode value) {
+        DataCollector.get().setNodeResultsMode(value);
+    }
+
+    /**
+     * Sets the capacity of results ingestion buffer (rounded up to the nearest power of two). Applied on the next run start.
+     * @param capacity - Maximum amount of responses waiting to be processed
+     */
+    public static void setResultsBufferCapacity(int capacity) {
+        DataCollector.get().setBufferCapacity(capacity);
+    }
+
+    /**
+     * Defines what happens to responses reported while results ingestion buffer is full.
+     * @param policy - BLOCK (default) - wait for free slot, DROP - discard and count
+     */
+    public static void setResultsOverflowPolicy(OverflowPolicy policy) {
+        DataCollector.get().setOverflowPolicy(policy);
+    }
+
+    /**
+     * Enables or disables the on-disk results journal, which stores every raw sample. Enabled by default.
+     * Even when enabled, journal is only written if raw samples are read back - raw samples retention is on, node results mode is RAW,
+     * or the journal is kept. Disabling it makes raw samples unavailable.
+     * @param value - true to write the journal, false to skip it
+     */
+    public static void setResultsJournalEnabled(boolean value) {
+        DataCollector.get().setJournalEnabled(value);
+    }
+
+    /**
+     * By default, results journal is removed once the report is generated. Set this flag to keep it for further processing.
+     * @param value - true to keep the journal, false to remove it
+     */
+    public static void setKeepResultsJournal(boolean value) {
+        DataCollector.get().setKeepJournal(value);
+    }
+
+    /**
+     * Sets the amount of results batches a node keeps in memory while the hub is slow or unreachable (one batch per second).
+     * Batches beyond that are spilled to disk and sent once the hub catches up. Default is 120.
+     * @param value - Maximum amount of batches kept in memory
+     */
+    public static void setMaxBufferedResultBatches(int value) {
+        DataCollector.get().setMaxBufferedResultBatches(value);
+    }
+
+    /**
+     * Enables an embedded HTTP endpoint, serving live run metrics in OpenMetrics (Prometheus) text format at http://{host}:{port}/metrics.
+     * Endpoint is started with the run and stopped once it's finished. Disabled by default.
+     * @param port - Port to listen on, or 0 to disable the endpoint
+     */
+    public static void setMetricsPort(int port) {
+        DataCollector.get().setMetricsPort(port);
+    }
+
+    /**
+     * Sets the address the metrics endpoint is bound to. Default is 127.0.0.1 - endpoint is only available from the load generator box itself.
+     * @param address - Address to bind to, i.e. "0.0.0.0" to let a remote Prometheus scrape it
+     */
+    public static void setMetricsBindAddress(String address) {
+        DataCollector.get().setMetricsBindAddress(address);
+    }
+
+    /**
+     * Enables an embedded live dashboard at http://{host}:{port}/ - charts of throughput, errors, response times and active users,
+     * updated every second while the run is in progress. Only available in standalone mode. Disabled by default.
+     * @param port - Port to listen on, or 0 to disable the dashboard
+     */
+    public static void setDashboardPort(int port) {
+        DataCollector.get().setDashboardPort(port);
+    }
+
+    /**
+     * Sets the address the live dashboard is bound to. Default is 127.0.0.1 - dashboard is only available from the load generator box itself.
+     * @param address - Address to bind to, i.e. "0.0.0.0" to serve on all interfaces
+     */
+    public static void setDashboardBindAddress(String address) {
+        DataCollector.get().setDashboardBindAddress(address);
+    }
+
+    /**
+     * Sets the maximum amount of request keys. Once it's reached, requests with new names are recorded under a single
+     * "({method})(other requests)" key of their method, and a warning is logged. Default is 5000.
+     * @param limit - Keys limit, or 0 to disable it
+     */
+    public static void setMaxRequestKeys(int limit) {
+        MetricKeys.setMaxKeys(limit);
+    }
+
+    /**
+     * Replaces the rules request names are normalized with before they're grouped into request keys. There are none by default.
+     * I.e. KeyNormalizationRule.NUMERIC_SEGMENTS records "/users/42" as "/users/{id}". Should be called before any request is defined.
+     * @param rules - Rules to apply, in order. Empty to keep request names as is
+     */
+    public static void setRequestKeyNormalizationRules(KeyNormalizationRule... rules) {
+        MetricKeys.setNormalizationRules(rules);
+    }
+
+    /**
+     * Adds a rule on top of the current request name normalization rules. Should be called before any request is defined.
+     * @param rule - Rule to add
+     */
+    public static void addRequestKeyNormalizationRule(KeyNormalizationRule rule) {
+        MetricKeys.addNormalizationRule(rule);
+    }
+
+    /**
+     * Sets the interval between results checkpoints - compact snapshots of the aggregated results, written into {resultsFolder}/checkpoints
+     * in standalone mode. If the process is killed before the report is generated, it can be recovered from the latest checkpoint
+     * with recoverReport(). Default is 60 seconds. Applied on the next run start.
+     * @param seconds - Interval in seconds, or 0 to disable the checkpoints
+     */
+    public static void setCheckpointInterval(int seconds) {
+        DataCollector.get().setCheckpointInterval(seconds);
+    }
+
+    /**
+     * Sets the amount of threads, used to generate the report at the end of the run. Default is the amount of available processors.
+     * @param threads - Amount of report generation threads
+     */
+    public static void setReportParallelism(int threads) {
+        DataCollector.get().setReportParallelism(threads);
+    }
+
+    /**
+     * Sets the percentiles of the report's response times table. They're precomputed for each request key and the totals row,
+     * so the table is shown instantly regardless of the run size. Default is 50, 60, 75, 85 and 95.
+     * @param percentiles - Exactly 5 percentile values, within [0, 100] range
+     */
+    public static void setReportTablePercentiles(double... percentiles) {
+        DataCollector.get().setTablePercentiles(percentiles);
+    }
+
+    /**
+     * Sets whether the per-key files of the report are gzip-compressed. Compressed report is several times smaller,
+     * but it has to be served over HTTP to be viewed - browsers don't allow reading them from a local file. Disabled by default.
+     * @param compress - Whether to compress the per-key files
+     */
+    public static void setReportKeyFilesCompression(boolean compress) {
+        DataCollector.get().setCompressReportKeyFiles(compress);
+    }
+
+    /**
+     * Builds HTML report from the results checkpoint of a run that did not finish properly. Report is placed into the results folder.
+     * Same can be done from the command line: java -cp {keres jar} io.github.vizanarkonin.keres.KeresCli recover {checkpoint}
+     * @param checkpointPath    - Checkpoint file, or a folder with checkpoints (the latest one is used)
+     * @return                  - Whether the report was generated
+     */
+    public static boolean recoverReport(String checkpointPath) {
+        try {
+            return DataCollector.recoverReport(Paths.get(checkpointPath), DataCollector.get().getResultsFolder()) != null;
+        } catch (IOException e) {
+            log.error("Failed to recover report from checkpoint " + checkpointPath);
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+            return false;
+        }
+    }
+
+    /**
+     * Sets expected interval between requests of closed-loop users without pacing, used for coordinated omission correction.
+     * Responses, which took longer than 2 intervals, are also recorded as the requests that would have been sent during the stall.
+     * Corrected results are reported alongside the measured ones. Paced and open model users are corrected regardless of this setting.
+     * @param intervalInMs - Expected interval in milliseconds, or 0 to disable the correction (default)
+     */
+    public static void setExpectedRequestInterval(long intervalInMs) {
+        DataCollector.get().setExpectedRequestInterval(intervalInMs);
+    }
+
+    /**
+     * Adds an SLO rule, evaluated every second over the live statistics of the run. Depending on rule's action, a breach is logged,
+     * marks the run as failed, or stops the execution. Verdicts are printed at the end of the run, written into the report and
+     * (in NODE mode) sent to the hub. Rules are applied on the next run start - changes made mid-run only affect the following runs.
+     * @param rule - Rule, i.e. SloRule.percentile(95).of("(GET)checkout").lessThan(400).over(60).onBreach(SloAction.ABORT)
+     */
+    public static void addSloRule(SloRule rule) {
+        DataCollector.get().getSloRules().add(rule);
+    }
+
+    /**
+     * Same as above, but with text rule definition.
+     * @param definition    - Rule definition, i.e. "p95 of (GET)checkout < 400ms over 60s". See SloRule.parse() for the format
+     * @param action        - Action to take on breach
+     */
+    public static void addSloRule(String definition, SloAction action) {
+        addSloRule(SloRule.parse(definition).onBreach(action));
+    }
+
+    public static void clearSloRules() {
+        DataCollector.get().getSloRules().clear();
+    }
+
+    /**
+     * @return - Whether an SLO rule with FAIL_RUN or ABORT action was breached during the last run. Can be used to set CI job's exit code
+     */
+    public static boolean isRunFailed() {
+        return DataCollector.get().isRunFailed();
+    }
 }
@@ -6,7 +6,10 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import io.github.vizanarkonin.keres.core.clients.http.KeresHttpClient;
+import io.github.vizanarkonin.keres.core.events.ActionEvent;
+import io.github.vizanarkonin.keres.core.executors.KeresUser;
 import io.github.vizanarkonin.keres.core.processing.DataCollector;
+import io.github.vizanarkonin.keres.core.processing.MetricKeys;
 import io.github.vizanarkonin.keres.core.utils.Response;
 
 /**
@@ -17,12 +20,16 @@ import io.github.vizanarkonin.keres.core.utils.Response;
 public class ParallelAction {
     private static final Logger log         = LogManager.getLogger("ParallelAction");
     private final String actionName;
+    private final int metricKeyId;
     private ArrayList<Runnable> runnables; 
     private ArrayList<Thread> tasks;
     private long startTime = 0;
+    // Flight recorder event - begins with the first started task
+    private ActionEvent event;
 
     public ParallelAction(String name) {
         this.actionName = name;
+        this.metricKeyId = MetricKeys.idFor("ACTION", name);
     }
 
     public ParallelAction addAndStart(Runnable task) {
@@ -30,6 +37,7 @@ public class ParallelAction {
             tasks = new ArrayList<>();
         }
         if (startTime == 0) {
+            beginEvent();
             startTime = System.currentTimeMillis();
         }
         tasks.add(Thread.startVirtualThread(task));
@@ -42,6 +50,7 @@ public class ParallelAction {
             tasks = new ArrayList<>();
         }
         if (startTime == 0) {
+            beginEvent();
             startTime = System.currentTimeMillis();
         }
         tasks.add(Thread.startVirtualThread(() -> task.accept(KeresHttpClient.getClientForThread())));
@@ -79,6 +88,11 @@ public class ParallelAction {
         return this;
     }
 
+    private void beginEvent() {
+        event = new ActionEvent();
+        event.begin();
+    }
+
     public void waitForRequestsToFinish() {
         log.trace("waitForRequestsToFinish");
         tasks.forEach(runnerThread ->  {
@@ -90,10 +104,21 @@ public class ParallelAction {
         });
         long finishTime = System.currentTimeMillis();
         long timeElapsed = finishTime - startTime;
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.key = MetricKeys.get(metricKeyId);
+                event.actionType = "PARALLEL";
+                event.userId = KeresUser.getCurrentUserId();
+                event.commit();
+            }
+            event = null;
+        }
 
         Response overallStats = new Response()
             .setRequestMethod("ACTION")
             .setRequestName(actionName)
+            .setMetricKeyId(metricKeyId)
             .setStartTime(startTime)
             .setFinishTime(finishTime)
             .setResponseTime(timeElapsed);
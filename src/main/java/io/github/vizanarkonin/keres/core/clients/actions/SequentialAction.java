@@ -1,6 +1,9 @@
 package io.github.vizanarkonin.keres.core.clients.actions;
 
+import io.github.vizanarkonin.keres.core.events.ActionEvent;
+import io.github.vizanarkonin.keres.core.executors.KeresUser;
 import io.github.vizanarkonin.keres.core.processing.DataCollector;
+import io.github.vizanarkonin.keres.core.processing.MetricKeys;
 import io.github.vizanarkonin.keres.core.utils.Response;
 
 /**
@@ -9,22 +12,34 @@ import io.github.vizanarkonin.keres.core.utils.Response;
  */
 public class SequentialAction {
     private final String actionName;
+    private final int metricKeyId;
     private final Runnable task;
 
     public SequentialAction(String name, Runnable task) {
         this.actionName = name;
+        this.metricKeyId = MetricKeys.idFor("ACTION", name);
         this.task = task;
     }
 
     public void execute() {
+        ActionEvent event = new ActionEvent();
+        event.begin();
         long startPoint = System.currentTimeMillis();
         task.run();
         long finishPoint = System.currentTimeMillis();
         long timeElapsed = finishPoint - startPoint;
+        event.end();
+        if (event.shouldCommit()) {
+            event.key = MetricKeys.get(metricKeyId);
+            event.actionType = "SEQUENTIAL";
+            event.userId = KeresUser.getCurrentUserId();
+            event.commit();
+        }
 
         Response overallStats = new Response()
             .setRequestMethod("ACTION")
             .setRequestName(actionName)
+            .setMetricKeyId(metricKeyId)
             .setStartTime(startPoint)
             .setFinishTime(finishPoint)
             .setResponseTime(timeElapsed);
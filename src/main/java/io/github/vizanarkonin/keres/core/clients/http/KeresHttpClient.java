@@ -7,8 +7,10 @@ import io.github.vizanarkonin.keres.core.clients.KeresClientBase;
 import io.github.vizanarkonin.keres.core.clients.actions.ActionController;
 import io.github.vizanarkonin.keres.core.clients.actions.ParallelAction;
 import io.github.vizanarkonin.keres.core.clients.http.builders.KeresHttpRequest;
+import io.github.vizanarkonin.keres.core.events.RequestEvent;
 import io.github.vizanarkonin.keres.core.executors.KeresUser;
 import io.github.vizanarkonin.keres.core.processing.DataCollector;
+import io.github.vizanarkonin.keres.core.processing.MetricKeys;
 import io.github.vizanarkonin.keres.core.utils.Response;
 import io.github.vizanarkonin.keres.core.utils.Tuple;
 
@@ -141,7 +143,10 @@ public class KeresHttpClient extends KeresClientBase<KeresHttpClient> {
         
         Response response = new Response()
             .setRequestMethod(request.getMethod().methodValue)
-            .setRequestName(request.getName());
+            .setRequestName(request.getName())
+            .setMetricKeyId(request.getMetricKeyId());
+        RequestEvent event = new RequestEvent();
+        event.begin();
         long startPoint = System.currentTimeMillis();
         response.setStartTime(startPoint);
         long timeElapsed = 0;
@@ -149,7 +154,13 @@ public class KeresHttpClient extends KeresClientBase<KeresHttpClient> {
         try {
             HttpRequest req = request.build();
             log.trace("Request:\r\n" + req.toString() + "\r\n\r\nBody:\r\n" + (request.getStringBody() == null ? "" : request.getStringBody()) + "\r\n\r\nHeaders:\r\n" + req.headers().toString() + "\r\n");
-            HttpResponse<String> res = httpClient.send(request.build(), BodyHandlers.ofString());
+            HttpResponse<String> res;
+            try {
+                res = httpClient.send(request.build(), BodyHandlers.ofString());
+            } finally {
+                // Event only covers the exchange itself - post-request, check and save tasks are generator-side work
+                event.end();
+            }
             finishTime = System.currentTimeMillis();
             timeElapsed = finishTime - startPoint;
 
@@ -236,6 +247,16 @@ public class KeresHttpClient extends KeresClientBase<KeresHttpClient> {
                     ));
             }
 
+            // Event is ended as soon as the exchange is over. If the request failed before it was sent, commit ends it on it's own
+            if (event.shouldCommit()) {
+                event.key = MetricKeys.get(request.getMetricKeyId());
+                event.statusCode = response.getResponseCode();
+                event.failed = response.isFailed();
+                event.finished = response.isFinished();
+                event.userId = KeresUser.getCurrentUserId();
+                event.commit();
+            }
+
             // In case request was interrupted with InterruptedException
             if (!response.isFinished())
                 return response;
@@ -14,6 +14,7 @@ import org.assertj.core.api.SoftAssertions;
 
 import io.github.vizanarkonin.keres.core.clients.http.HttpMethod;
 import io.github.vizanarkonin.keres.core.clients.http.KeresHttpClient;
+import io.github.vizanarkonin.keres.core.processing.MetricKeys;
 import io.github.vizanarkonin.keres.core.utils.Response;
 import io.github.vizanarkonin.keres.core.utils.Tuple;
 import lombok.Getter;
@@ -35,6 +36,9 @@ public class KeresHttpRequest {
     @Getter
     private final HttpMethod                                method;
     @Getter
+    // Id of "({method}){name}" key in MetricKeys registry - resolved when the request is built, so responses don't have to be looked up by name
+    private final int                                       metricKeyId;
+    @Getter
     private final HttpRequest.Builder                       builder;
     @Getter
     private List<Consumer<Response>>                        postRequestTasks;
@@ -48,6 +52,7 @@ public class KeresHttpRequest {
         this.name = name;
         this.builder = HttpRequest.newBuilder(URI.create(KeresHttpClient.getClientForThread().processStringExpression(url)));
         this.method = method;
+        this.metricKeyId = MetricKeys.idFor(method.methodValue, name);
     }
 
     public static KeresHttpRequest get(String name, String url) {
@@ -0,0 +1,111 @@
+package io.github.vizanarkonin.keres.core.comparison;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import io.github.vizanarkonin.keres.core.comparison.RunResults.KeyResults;
+import io.github.vizanarkonin.keres.core.processing.AggregatedRequestLog;
+import lombok.Getter;
+
+/**
+ * Comparison of a single request key (or the totals) between the baseline and the candidate run.
+ */
+@Getter
+public class KeyComparison {
+    public static enum Status {
+        PASSED,
+        REGRESSED,
+        IMPROVED,
+        // Key is only present in one of the runs
+        MISSING,
+        NEW,
+        // One of the runs has less requests than comparator's minimum
+        NOT_ENOUGH_DATA
+    }
+
+    private final String                                name;
+    private final KeyResults                            baseline;
+    private final KeyResults                            candidate;
+    private final double                                baselineRequestsPerSecond;
+    private final double                                candidateRequestsPerSecond;
+    private final long[]                                baselinePercentiles;
+    private final long[]                                candidatePercentiles;
+    private SignificanceTests.MannWhitneyResult         responseTimesTest;
+    private double                                      errorRatePValue         = 1;
+    private double                                      throughputPValue        = 1;
+    private final List<String>                          regressions             = new ArrayList<>();
+    private final List<String>                          improvements            = new ArrayList<>();
+    private Status                                      status                  = Status.PASSED;
+
+    KeyComparison(String name, KeyResults baseline, double baselineSeconds, KeyResults candidate, double candidateSeconds, double[] percentiles) {
+        this.name = name;
+        this.baseline = baseline;
+        this.candidate = candidate;
+        this.baselineRequestsPerSecond = baseline == null || baselineSeconds <= 0 ? 0 : baseline.getRequestsCount() / baselineSeconds;
+        this.candidateRequestsPerSecond = candidate == null || candidateSeconds <= 0 ? 0 : candidate.getRequestsCount() / candidateSeconds;
+        this.baselinePercentiles = baseline == null ? new long[percentiles.length] : baseline.getResponseTimes().getValuesAtPercentiles(percentiles);
+        this.candidatePercentiles = candidate == null ? new long[percentiles.length] : candidate.getResponseTimes().getValuesAtPercentiles(percentiles);
+    }
+
+    void setResponseTimesTest(SignificanceTests.MannWhitneyResult responseTimesTest) {
+        this.responseTimesTest = responseTimesTest;
+    }
+
+    void setErrorRatePValue(double errorRatePValue) {
+        this.errorRatePValue = errorRatePValue;
+    }
+
+    void setThroughputPValue(double throughputPValue) {
+        this.throughputPValue = throughputPValue;
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public boolean isRegressed() {
+        return status == Status.REGRESSED;
+    }
+
+    public JSONObject toJSON(double[] percentiles) {
+        JSONObject result = new JSONObject()
+            .put("name", name)
+            .put("status", status.name())
+            .put("regressions", new JSONArray(regressions))
+            .put("improvements", new JSONArray(improvements))
+            .put("errorRatePValue", errorRatePValue)
+            .put("throughputPValue", throughputPValue);
+        if (baseline != null) {
+            result.put("baseline", runJSON(baseline, baselineRequestsPerSecond, baselinePercentiles, percentiles));
+        }
+        if (candidate != null) {
+            result.put("candidate", runJSON(candidate, candidateRequestsPerSecond, candidatePercentiles, percentiles));
+        }
+        if (responseTimesTest != null) {
+            result.put("responseTimesTest", new JSONObject()
+                .put("z", responseTimesTest.z)
+                .put("pValue", responseTimesTest.pValue)
+                .put("probabilityOfSlower", responseTimesTest.probabilityOfSlower));
+        }
+
+        return result;
+    }
+
+    private static JSONObject runJSON(KeyResults results, double requestsPerSecond, long[] values, double[] percentiles) {
+        JSONObject percentilesJSON = new JSONObject();
+        for (int index = 0; index < percentiles.length; index++) {
+            percentilesJSON.put(AggregatedRequestLog.percentileKey(percentiles[index]), values[index]);
+        }
+
+        return new JSONObject()
+            .put("requestsCount", results.getRequestsCount())
+            .put("failuresCount", results.getFailuresCount())
+            .put("errorRate", results.getErrorRate())
+            .put("requestsPerSecond", requestsPerSecond)
+            .put("averageResponseTime", results.getResponseTimes().getMean())
+            .put("percentiles", percentilesJSON);
+    }
+}
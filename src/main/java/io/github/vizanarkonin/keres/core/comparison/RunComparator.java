@@ -0,0 +1,151 @@
+package io.github.vizanarkonin.keres.core.comparison;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.github.vizanarkonin.keres.core.comparison.KeyComparison.Status;
+import io.github.vizanarkonin.keres.core.comparison.RunResults.KeyResults;
+import io.github.vizanarkonin.keres.core.processing.AggregatedRequestLog;
+import io.github.vizanarkonin.keres.core.processing.LatencyHistogram;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Compares the results of a run with the baseline ones, key by key, and detects performance regressions.
+ * A change only counts as a regression if it's both statistically significant and larger than the configured tolerance - with
+ * millions of samples even a 1ms shift is significant, and with a handful of them even a large one may be a noise.
+ * - Response times - Mann-Whitney U test over the latency distributions, plus relative (and absolute) change of any compared percentile
+ * - Error rate - two-proportion z-test, plus absolute change of the error rate
+ * - Throughput - Poisson rates test, plus relative decrease of requests per second
+ */
+@Getter @Setter
+public class RunComparator {
+    public static final String      TOTAL_KEY               = "TOTAL";
+
+    // Compared response time percentiles, sorted in ascending order
+    private double[]                percentiles             = { 50, 90, 99 };
+    // p-value below which a change is considered significant
+    private double                  significanceLevel       = 0.01;
+    // Maximum tolerated relative increase of a response time percentile, i.e. 0.1 for 10%
+    private double                  maxLatencyIncrease      = 0.1;
+    // Percentile increases below this value (in ms) are never reported, however large they are relatively
+    private long                    minLatencyIncreaseMs    = 5;
+    // Maximum tolerated absolute increase of the error rate, i.e. 0.01 for 1 percentage point
+    private double                  maxErrorRateIncrease    = 0.01;
+    // Maximum tolerated relative decrease of requests per second
+    private double                  maxThroughputDecrease   = 0.1;
+    // Keys with less requests in either of the runs are not compared
+    private long                    minRequests             = 30;
+
+    /**
+     * Compares each of the runs with the first one.
+     * @param runs  - Baseline run, followed by one or more compared runs
+     * @return      - Comparison of each compared run with the baseline
+     */
+    public List<RunComparison> compareAll(List<RunResults> runs) {
+        if (runs.size() < 2) {
+            throw new IllegalArgumentException("At least 2 result sets are required for comparison, got " + runs.size());
+        }
+
+        List<RunComparison> result = new ArrayList<>();
+        for (int index = 1; index < runs.size(); index++) {
+            result.add(compare(runs.get(0), runs.get(index)));
+        }
+
+        return result;
+    }
+
+    public RunComparison compare(RunResults baseline, RunResults candidate) {
+        double baselineSeconds = baseline.getDurationMs() / 1000.0;
+        double candidateSeconds = candidate.getDurationMs() / 1000.0;
+        List<KeyComparison> keys = new ArrayList<>();
+
+        Set<String> names = new LinkedHashSet<>(baseline.getKeys().keySet());
+        names.addAll(candidate.getKeys().keySet());
+        for (String name : names) {
+            keys.add(compareKey(name, baseline.getKeys().get(name), baselineSeconds, candidate.getKeys().get(name), candidateSeconds));
+        }
+        KeyComparison total = compareKey(TOTAL_KEY, totalOf(baseline), baselineSeconds, totalOf(candidate), candidateSeconds);
+
+        return new RunComparison(baseline, candidate, percentiles, keys, total);
+    }
+
+    private KeyComparison compareKey(String name, KeyResults baseline, double baselineSeconds, KeyResults candidate, double candidateSeconds) {
+        KeyComparison comparison = new KeyComparison(name, baseline, baselineSeconds, candidate, candidateSeconds, percentiles);
+        if (baseline == null || candidate == null) {
+            comparison.setStatus(baseline == null ? Status.NEW : Status.MISSING);
+            return comparison;
+        }
+        if (baseline.getRequestsCount() < minRequests || candidate.getRequestsCount() < minRequests) {
+            comparison.setStatus(Status.NOT_ENOUGH_DATA);
+            return comparison;
+        }
+
+        SignificanceTests.MannWhitneyResult responseTimesTest = SignificanceTests.mannWhitney(baseline.getResponseTimes(), candidate.getResponseTimes());
+        comparison.setResponseTimesTest(responseTimesTest);
+        if (responseTimesTest != null && responseTimesTest.pValue < significanceLevel) {
+            for (int index = 0; index < percentiles.length; index++) {
+                long baselineValue = comparison.getBaselinePercentiles()[index];
+                long candidateValue = comparison.getCandidatePercentiles()[index];
+                long delta = candidateValue - baselineValue;
+                double relativeDelta = (double) delta / Math.max(1, baselineValue);
+                String description = String.format("p%s %d -> %d ms (%+.1f%%)",
+                    AggregatedRequestLog.percentileKey(percentiles[index]), baselineValue, candidateValue, relativeDelta * 100);
+                if (responseTimesTest.z > 0 && relativeDelta > maxLatencyIncrease && delta >= minLatencyIncreaseMs) {
+                    comparison.getRegressions().add(description);
+                } else if (responseTimesTest.z < 0 && -relativeDelta > maxLatencyIncrease && -delta >= minLatencyIncreaseMs) {
+                    comparison.getImprovements().add(description);
+                }
+            }
+        }
+
+        comparison.setErrorRatePValue(SignificanceTests.proportionsPValue(
+            baseline.getFailuresCount(), baseline.getRequestsCount(), candidate.getFailuresCount(), candidate.getRequestsCount()));
+        double errorRateDelta = candidate.getErrorRate() - baseline.getErrorRate();
+        if (comparison.getErrorRatePValue() < significanceLevel && Math.abs(errorRateDelta) > maxErrorRateIncrease) {
+            String description = String.format("error rate %.2f%% -> %.2f%%", baseline.getErrorRate() * 100, candidate.getErrorRate() * 100);
+            (errorRateDelta > 0 ? comparison.getRegressions() : comparison.getImprovements()).add(description);
+        }
+
+        comparison.setThroughputPValue(SignificanceTests.ratesPValue(
+            baseline.getRequestsCount(), baselineSeconds, candidate.getRequestsCount(), candidateSeconds));
+        if (comparison.getBaselineRequestsPerSecond() > 0 && comparison.getThroughputPValue() < significanceLevel) {
+            double relativeDelta = (comparison.getCandidateRequestsPerSecond() - comparison.getBaselineRequestsPerSecond()) / comparison.getBaselineRequestsPerSecond();
+            String description = String.format("throughput %.1f -> %.1f rps (%+.1f%%)",
+                comparison.getBaselineRequestsPerSecond(), comparison.getCandidateRequestsPerSecond(), relativeDelta * 100);
+            if (-relativeDelta > maxThroughputDecrease) {
+                comparison.getRegressions().add(description);
+            } else if (relativeDelta > maxThroughputDecrease) {
+                comparison.getImprovements().add(description);
+            }
+        }
+
+        comparison.setStatus(
+            !comparison.getRegressions().isEmpty() ? Status.REGRESSED :
+            !comparison.getImprovements().isEmpty() ? Status.IMPROVED :
+            Status.PASSED);
+
+        return comparison;
+    }
+
+    /**
+     * @return - Totals of all request keys of the run, excluding actions (they cover the same requests once again)
+     */
+    private static KeyResults totalOf(RunResults run) {
+        long requestsCount = 0;
+        long failuresCount = 0;
+        LatencyHistogram responseTimes = new LatencyHistogram();
+        for (KeyResults key : run.getKeys().values()) {
+            if (key.getName().startsWith("(ACTION)")) {
+                continue;
+            }
+            requestsCount += key.getRequestsCount();
+            failuresCount += key.getFailuresCount();
+            responseTimes.add(key.getResponseTimes());
+        }
+
+        return new KeyResults(TOTAL_KEY, requestsCount, failuresCount, responseTimes);
+    }
+}
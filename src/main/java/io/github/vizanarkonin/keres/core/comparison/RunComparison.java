@@ -0,0 +1,146 @@
+package io.github.vizanarkonin.keres.core.comparison;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import io.github.vizanarkonin.keres.core.processing.AggregatedRequestLog;
+import lombok.Getter;
+
+/**
+ * Result of comparing a run with the baseline one - per-key comparisons, the totals and the pass/fail verdict.
+ */
+@Getter
+public class RunComparison {
+    public static final String      JSON_REPORT_FILE    = "comparison.json";
+    public static final String      TEXT_REPORT_FILE    = "comparison.txt";
+
+    private final RunResults            baseline;
+    private final RunResults            candidate;
+    private final double[]              percentiles;
+    private final List<KeyComparison>   keys;
+    private final KeyComparison         total;
+
+    RunComparison(RunResults baseline, RunResults candidate, double[] percentiles, List<KeyComparison> keys, KeyComparison total) {
+        this.baseline = baseline;
+        this.candidate = candidate;
+        this.percentiles = percentiles;
+        this.keys = keys;
+        this.total = total;
+    }
+
+    /**
+     * @return - Whether neither the totals nor any of the keys have regressed
+     */
+    public boolean isPassed() {
+        return !total.isRegressed() && keys.stream().noneMatch(KeyComparison::isRegressed);
+    }
+
+    public JSONObject toJSON() {
+        JSONArray keysJSON = new JSONArray();
+        keys.forEach(key -> keysJSON.put(key.toJSON(percentiles)));
+
+        return new JSONObject()
+            .put("passed", isPassed())
+            .put("baseline", runJSON(baseline))
+            .put("candidate", runJSON(candidate))
+            .put("total", total.toJSON(percentiles))
+            .put("keys", keysJSON);
+    }
+
+    /**
+     * @return - Human-readable comparison table, followed by the list of detected changes
+     */
+    public String toText() {
+        StringBuilder result = new StringBuilder();
+        result.append("------------------------------------------------------------------------------------------\n");
+        result.append(String.format("Baseline:  %s (%s, %ds)\n", baseline.getSource(), baseline.getTestId(), baseline.getDurationMs() / 1000));
+        result.append(String.format("Candidate: %s (%s, %ds)\n", candidate.getSource(), candidate.getTestId(), candidate.getDurationMs() / 1000));
+        result.append("Verdict: ").append(isPassed() ? "PASSED" : "REGRESSED").append("\n");
+        result.append("------------------------------------------------------------------------------------------\n");
+        result.append(String.format("%-16s %-22s %-22s %-18s", "STATUS", "REQUESTS", "RPS", "ERRORS %"));
+        for (double percentile : percentiles) {
+            result.append(String.format(" %-16s", "P" + AggregatedRequestLog.percentileKey(percentile) + " MS"));
+        }
+        result.append(" KEY\n");
+        for (KeyComparison key : keys) {
+            appendRow(result, key);
+        }
+        appendRow(result, total);
+
+        for (KeyComparison key : keys) {
+            appendChanges(result, key);
+        }
+        appendChanges(result, total);
+        result.append("------------------------------------------------------------------------------------------\n");
+
+        return result.toString();
+    }
+
+    /**
+     * Writes JSON (machine-readable) and text reports of the comparisons into given folder.
+     * @param comparisons   - Comparisons of each run with the baseline
+     * @param folder        - Output folder. Created if missing
+     * @return              - Whether all of the comparisons have passed
+     */
+    public static boolean writeReport(List<RunComparison> comparisons, Path folder) throws IOException {
+        boolean passed = comparisons.stream().allMatch(RunComparison::isPassed);
+        JSONArray comparisonsJSON = new JSONArray();
+        StringBuilder text = new StringBuilder();
+        for (RunComparison comparison : comparisons) {
+            comparisonsJSON.put(comparison.toJSON());
+            text.append(comparison.toText());
+        }
+
+        Files.createDirectories(folder);
+        Files.writeString(folder.resolve(JSON_REPORT_FILE), new JSONObject()
+            .put("passed", passed)
+            .put("comparisons", comparisonsJSON)
+            .toString(2), StandardCharsets.UTF_8);
+        Files.writeString(folder.resolve(TEXT_REPORT_FILE), text.toString(), StandardCharsets.UTF_8);
+
+        return passed;
+    }
+
+    private void appendRow(StringBuilder result, KeyComparison key) {
+        result.append(String.format("%-16s %-22s %-22s %-18s",
+            key.getStatus(),
+            pair(key.getBaseline() == null ? "-" : String.valueOf(key.getBaseline().getRequestsCount()),
+                 key.getCandidate() == null ? "-" : String.valueOf(key.getCandidate().getRequestsCount())),
+            pair(key.getBaseline() == null ? "-" : String.format("%.1f", key.getBaselineRequestsPerSecond()),
+                 key.getCandidate() == null ? "-" : String.format("%.1f", key.getCandidateRequestsPerSecond())),
+            pair(key.getBaseline() == null ? "-" : String.format("%.2f", key.getBaseline().getErrorRate() * 100),
+                 key.getCandidate() == null ? "-" : String.format("%.2f", key.getCandidate().getErrorRate() * 100))));
+        for (int index = 0; index < percentiles.length; index++) {
+            result.append(String.format(" %-16s", pair(
+                key.getBaseline() == null ? "-" : String.valueOf(key.getBaselinePercentiles()[index]),
+                key.getCandidate() == null ? "-" : String.valueOf(key.getCandidatePercentiles()[index]))));
+        }
+        result.append(" ").append(key.getName()).append("\n");
+    }
+
+    private static void appendChanges(StringBuilder result, KeyComparison key) {
+        for (String regression : key.getRegressions()) {
+            result.append("[REGRESSION]  ").append(key.getName()).append(" - ").append(regression).append("\n");
+        }
+        for (String improvement : key.getImprovements()) {
+            result.append("[IMPROVEMENT] ").append(key.getName()).append(" - ").append(improvement).append("\n");
+        }
+    }
+
+    private static String pair(String baselineValue, String candidateValue) {
+        return baselineValue + " -> " + candidateValue;
+    }
+
+    private static JSONObject runJSON(RunResults run) {
+        return new JSONObject()
+            .put("source", run.getSource())
+            .put("testId", run.getTestId())
+            .put("durationMs", run.getDurationMs());
+    }
+}
@@ -0,0 +1,216 @@
+package io.github.vizanarkonin.keres.core.comparison;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import io.github.vizanarkonin.keres.core.grpc.ResultsBatch;
+import io.github.vizanarkonin.keres.core.grpc.ResultsCheckpoint;
+import io.github.vizanarkonin.keres.core.processing.AggregatedRequestLog;
+import io.github.vizanarkonin.keres.core.processing.AggregatedResults;
+import io.github.vizanarkonin.keres.core.processing.CheckpointFile;
+import io.github.vizanarkonin.keres.core.processing.FailureMessageDictionary;
+import io.github.vizanarkonin.keres.core.processing.LatencyHistogram;
+import io.github.vizanarkonin.keres.core.processing.ResultsJournal;
+import lombok.Getter;
+
+/**
+ * Run totals of each request key, loaded from a finished (or crashed) run. Used as an input for run comparison.
+ * Can be loaded from:
+ * - Report folder (or it's results.js file) - uses requests_summary section, so the report has to be generated by Keres 1.5 or newer
+ * - Results checkpoint file, or a checkpoints folder (the latest checkpoint is used)
+ * - Results journal folder - every raw sample is read and aggregated
+ */
+@Getter
+public class RunResults {
+    private final String                        source;
+    private String                              testId              = "";
+    // Time between the first and the last second of the run with any requests, inclusive
+    private long                                durationMs          = 0;
+    private final LinkedHashMap<String, KeyResults> keys            = new LinkedHashMap<>();
+
+    private RunResults(String source) {
+        this.source = source;
+    }
+
+    public static RunResults load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            throw new IOException("Results source " + path + " does not exist");
+        }
+
+        if (Files.isDirectory(path)) {
+            if (Files.exists(path.resolve("results.js"))) {
+                return fromReport(path.resolve("results.js"));
+            }
+            if (Files.exists(path.resolve(ResultsJournal.KEYS_FILE))) {
+                return fromJournal(path);
+            }
+
+            return fromCheckpoint(path);
+        }
+
+        return path.getFileName().toString().endsWith(CheckpointFile.EXTENSION) ?
+            fromCheckpoint(path) :
+            fromReport(path);
+    }
+
+    /**
+     * Reads run totals from report's results file. Only test_id, timestamps (or run_time_frame), requests_summary and key_files lines are parsed.
+     * If the summary has no response times distribution of a key - it's read from the key's own file of the report.
+     * @param resultsFile - results.js file of the report
+     */
+    public static RunResults fromReport(Path resultsFile) throws IOException {
+        RunResults results = new RunResults(resultsFile.toString());
+        JSONObject summary = null;
+        JSONObject keyFiles = new JSONObject();
+        boolean keyFilesCompressed = false;
+        boolean hasTimeFrame = false;
+        try (BufferedReader reader = Files.newBufferedReader(resultsFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("const test_id = ")) {
+                    results.testId = new JSONArray("[" + constValue(line, "test_id") + "]").getString(0);
+                } else if (line.startsWith("const timestamps = ") && !hasTimeFrame) {
+                    // First timestamp is a padding bucket, one before the first one with requests
+                    JSONArray timestamps = new JSONArray(constValue(line, "timestamps"));
+                    if (timestamps.length() > 1) {
+                        long firstBucket = timestamps.getLong(0) + AggregatedRequestLog.BUCKET_SIZE_MS;
+                        results.durationMs = timestamps.getLong(timestamps.length() - 1) - firstBucket + AggregatedRequestLog.BUCKET_SIZE_MS;
+                    }
+                } else if (line.startsWith("const run_time_frame = ")) {
+                    // Timestamps of longer runs have coarser resolution - run time frame is precise. It holds the first and the last buckets with requests
+                    JSONArray timeFrame = new JSONArray(constValue(line, "run_time_frame"));
+                    if (timeFrame.length() > 1) {
+                        results.durationMs = timeFrame.getLong(1) - timeFrame.getLong(0) + AggregatedRequestLog.BUCKET_SIZE_MS;
+                    }
+                    hasTimeFrame = true;
+                } else if (line.startsWith("const requests_summary = ")) {
+                    summary = new JSONObject(constValue(line, "requests_summary"));
+                } else if (line.startsWith("const key_files = ")) {
+                    keyFiles = new JSONObject(constValue(line, "key_files"));
+                } else if (line.startsWith("const key_files_compressed = ")) {
+                    keyFilesCompressed = Boolean.parseBoolean(constValue(line, "key_files_compressed"));
+                }
+            }
+        }
+        if (summary == null) {
+            throw new IOException("Results file " + resultsFile + " has no requests_summary section - it was generated by an older Keres version");
+        }
+
+        for (String key : summary.keySet()) {
+            JSONObject entry = summary.getJSONObject(key);
+            if (!entry.has("responseTimes") && keyFiles.has(key)) {
+                entry = readKeyFile(resultsFile.resolveSibling(keyFiles.getString(key)), keyFilesCompressed).getJSONObject("summary");
+            }
+            LatencyHistogram responseTimes = new LatencyHistogram();
+            JSONArray values = entry.has("responseTimes") ? entry.getJSONArray("responseTimes") : new JSONArray();
+            for (int index = 0; index < values.length(); index++) {
+                responseTimes.recordValue(values.getJSONArray(index).getLong(0), values.getJSONArray(index).getLong(1));
+            }
+            results.keys.put(key, new KeyResults(key, entry.getLong("requestsCount"), entry.getLong("failuresCount"), responseTimes));
+        }
+
+        return results;
+    }
+
+    /**
+     * Reads per-key file of the report. Plain files hold a single register_key_data() call, compressed ones - plain JSON.
+     */
+    private static JSONObject readKeyFile(Path file, boolean compressed) throws IOException {
+        if (compressed) {
+            try (InputStream input = new GZIPInputStream(Files.newInputStream(file))) {
+                return new JSONObject(new String(input.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+
+        String content = Files.readString(file, StandardCharsets.UTF_8);
+
+        return new JSONObject(content.substring(content.indexOf('(') + 1, content.lastIndexOf(')')));
+    }
+
+    public static RunResults fromCheckpoint(Path path) throws IOException {
+        Path checkpointFile = CheckpointFile.resolve(path);
+        ResultsCheckpoint checkpoint = CheckpointFile.read(checkpointFile);
+        RunResults results = new RunResults(checkpointFile.toString());
+        results.testId = checkpoint.getTestId();
+
+        // Failure messages don't matter here - ids are kept as is
+        ResultsBatch batch = checkpoint.getResults();
+        AggregatedResults aggregatedResults = AggregatedResults.fromProto(batch, new FailureMessageDictionary(), id -> id);
+        for (AggregatedRequestLog requestLog : aggregatedResults.getRequestLogs().values()) {
+            results.keys.put(requestLog.getName(),
+                new KeyResults(requestLog.getName(), requestLog.getRequestsCount(), requestLog.getFailuresCount(), requestLog.getResponseTimes()));
+        }
+        if (!aggregatedResults.isEmpty()) {
+            results.durationMs = aggregatedResults.getLastTimeStamp() - aggregatedResults.getFirstTimeStamp() + AggregatedRequestLog.BUCKET_SIZE_MS;
+        }
+
+        return results;
+    }
+
+    public static RunResults fromJournal(Path directory) throws IOException {
+        RunResults results = new RunResults(directory.toString());
+        ResultsJournal journal = ResultsJournal.open(directory);
+        // Ordered by key id - i.e. in order of the first appearance
+        TreeMap<Integer, KeyResults> keyResults = new TreeMap<>();
+        long[] timeFrame = new long[] { Long.MAX_VALUE, Long.MIN_VALUE };
+        try {
+            journal.read(0, (keyId, startTime, responseTime, responseCode, failed, failureMessageId) -> {
+                KeyResults entry = keyResults.computeIfAbsent(keyId, id -> new KeyResults(journal.getKey(id), 0, 0, new LatencyHistogram()));
+                entry.requestsCount++;
+                if (failed) {
+                    entry.failuresCount++;
+                }
+                entry.responseTimes.recordValue(responseTime);
+                timeFrame[0] = Math.min(timeFrame[0], startTime);
+                timeFrame[1] = Math.max(timeFrame[1], startTime);
+            });
+        } finally {
+            journal.close();
+        }
+
+        keyResults.values().forEach(entry -> results.keys.put(entry.name, entry));
+        if (timeFrame[0] <= timeFrame[1]) {
+            results.durationMs = AggregatedRequestLog.bucketTimeStampFor(timeFrame[1]) - AggregatedRequestLog.bucketTimeStampFor(timeFrame[0]) + AggregatedRequestLog.BUCKET_SIZE_MS;
+        }
+
+        return results;
+    }
+
+    private static String constValue(String line, String name) {
+        String value = line.substring(("const " + name + " = ").length()).trim();
+
+        return value.endsWith(";") ? value.substring(0, value.length() - 1) : value;
+    }
+
+    /**
+     * Totals of a single request key.
+     */
+    @Getter
+    public static class KeyResults {
+        private final String            name;
+        private long                    requestsCount;
+        private long                    failuresCount;
+        private final LatencyHistogram  responseTimes;
+
+        public KeyResults(String name, long requestsCount, long failuresCount, LatencyHistogram responseTimes) {
+            this.name = name;
+            this.requestsCount = requestsCount;
+            this.failuresCount = failuresCount;
+            this.responseTimes = responseTimes;
+        }
+
+        public double getErrorRate() {
+            return requestsCount == 0 ? 0 : (double) failuresCount / requestsCount;
+        }
+    }
+}
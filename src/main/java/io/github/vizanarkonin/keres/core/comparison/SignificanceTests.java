@@ -0,0 +1,118 @@
+package io.github.vizanarkonin.keres.core.comparison;
+
+import java.util.TreeMap;
+
+import io.github.vizanarkonin.keres.core.processing.LatencyHistogram;
+
+/**
+ * Two-sided significance tests, used by run comparison. All of them use normal approximation, which holds well for the sample
+ * sizes of a load test, and work straight on the aggregates - so the cost doesn't depend on the amount of requests made.
+ */
+public class SignificanceTests {
+
+    private SignificanceTests() {}
+
+    /**
+     * Mann-Whitney U test over two latency distributions. Both histograms share the same bucket layout, so each bucket is a group
+     * of tied values - ranks are assigned to the buckets in ascending order, and the variance is corrected for the ties.
+     * @param baseline  - Response times of the baseline run
+     * @param candidate - Response times of the compared run
+     * @return          - Test result, or null if either of the histograms is empty
+     */
+    public static MannWhitneyResult mannWhitney(LatencyHistogram baseline, LatencyHistogram candidate) {
+        double baselineCount = baseline.getTotalCount();
+        double candidateCount = candidate.getTotalCount();
+        if (baselineCount == 0 || candidateCount == 0) {
+            return null;
+        }
+
+        // Key is bucket index, value is counts of both runs
+        TreeMap<Integer, long[]> buckets = new TreeMap<>();
+        baseline.forEachBucket((index, count) -> buckets.computeIfAbsent(index, key -> new long[2])[0] += count);
+        candidate.forEachBucket((index, count) -> buckets.computeIfAbsent(index, key -> new long[2])[1] += count);
+
+        double rankSum = 0;
+        double ranked = 0;
+        double tiesCorrection = 0;
+        for (long[] counts : buckets.values()) {
+            double tied = counts[0] + counts[1];
+            double averageRank = ranked + (tied + 1) / 2;
+            rankSum += counts[0] * averageRank;
+            tiesCorrection += tied * tied * tied - tied;
+            ranked += tied;
+        }
+
+        double total = baselineCount + candidateCount;
+        double baselineU = rankSum - baselineCount * (baselineCount + 1) / 2;
+        double candidateU = baselineCount * candidateCount - baselineU;
+        double mean = baselineCount * candidateCount / 2;
+        double variance = baselineCount * candidateCount / 12 * ((total + 1) - tiesCorrection / (total * (total - 1)));
+        double z = variance <= 0 ? 0 : (candidateU - mean) / Math.sqrt(variance);
+
+        return new MannWhitneyResult(z, twoSidedPValue(z), candidateU / (baselineCount * candidateCount));
+    }
+
+    /**
+     * Two-proportion z-test, i.e. for error rates.
+     * @return - Two-sided p-value. 1 if there's not enough data
+     */
+    public static double proportionsPValue(long baselineHits, long baselineCount, long candidateHits, long candidateCount) {
+        if (baselineCount == 0 || candidateCount == 0) {
+            return 1;
+        }
+
+        double pooled = (double) (baselineHits + candidateHits) / (baselineCount + candidateCount);
+        double variance = pooled * (1 - pooled) * (1.0 / baselineCount + 1.0 / candidateCount);
+        if (variance <= 0) {
+            return 1;
+        }
+
+        double z = ((double) candidateHits / candidateCount - (double) baselineHits / baselineCount) / Math.sqrt(variance);
+
+        return twoSidedPValue(z);
+    }
+
+    /**
+     * Test for the difference of two Poisson rates, i.e. for throughput of the runs.
+     * @return - Two-sided p-value. 1 if there's not enough data
+     */
+    public static double ratesPValue(long baselineCount, double baselineSeconds, long candidateCount, double candidateSeconds) {
+        if (baselineSeconds <= 0 || candidateSeconds <= 0 || baselineCount + candidateCount == 0) {
+            return 1;
+        }
+
+        double variance = baselineCount / (baselineSeconds * baselineSeconds) + candidateCount / (candidateSeconds * candidateSeconds);
+        double z = (candidateCount / candidateSeconds - baselineCount / baselineSeconds) / Math.sqrt(variance);
+
+        return twoSidedPValue(z);
+    }
+
+    public static double twoSidedPValue(double z) {
+        return Math.min(1, erfc(Math.abs(z) / Math.sqrt(2)));
+    }
+
+    /**
+     * Complementary error function, with fractional error below 1.2e-7 (Chebyshev fit, see Numerical Recipes, erfcc).
+     */
+    private static double erfc(double x) {
+        double t = 1 / (1 + 0.5 * Math.abs(x));
+        double result = t * Math.exp(-x * x - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418 +
+            t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587 + t * (-0.82215223 + t * 0.17087277)))))))));
+
+        return x >= 0 ? result : 2 - result;
+    }
+
+    public static class MannWhitneyResult {
+        // Positive if candidate's response times tend to be higher than baseline's ones
+        public final double     z;
+        public final double     pValue;
+        // Probability that a random candidate response is slower than a random baseline one (ties count as a half)
+        public final double     probabilityOfSlower;
+
+        public MannWhitneyResult(double z, double pValue, double probabilityOfSlower) {
+            this.z = z;
+            this.pValue = pValue;
+            this.probabilityOfSlower = probabilityOfSlower;
+        }
+    }
+}
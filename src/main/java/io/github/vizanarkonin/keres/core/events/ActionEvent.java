@@ -0,0 +1,27 @@
+package io.github.vizanarkonin.keres.core.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event, covering execution of a sequential or parallel action.
+ */
+@Name("keres.Action")
+@Label("Action")
+@Category({ "Keres", "Requests" })
+@Description("Sequential or parallel action, executed by a virtual user")
+@StackTrace(false)
+public class ActionEvent extends Event {
+    @Label("Request Key")
+    public String   key;
+    @Label("Action Type")
+    @Description("SEQUENTIAL or PARALLEL")
+    public String   actionType;
+    @Label("User Id")
+    @Description("Id of the virtual user, -1 if action was executed outside of one")
+    public long     userId;
+}
@@ -0,0 +1,33 @@
+package io.github.vizanarkonin.keres.core.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event, covering a single request made by KeresHttpClient.
+ * Recorded along with GC, safepoint and virtual thread pinning events - so generator-side pauses can be told apart from target latency.
+ * Fields are only populated if the event is going to be committed, so it costs next to nothing while no recording is running.
+ */
+@Name("keres.Request")
+@Label("Request")
+@Category({ "Keres", "Requests" })
+@Description("Request, made by a virtual user")
+@StackTrace(false)
+public class RequestEvent extends Event {
+    @Label("Request Key")
+    public String   key;
+    @Label("Status Code")
+    public int      statusCode;
+    @Label("Failed")
+    public boolean  failed;
+    @Label("Finished")
+    @Description("False if request was interrupted")
+    public boolean  finished;
+    @Label("User Id")
+    @Description("Id of the virtual user, -1 if request was made outside of one")
+    public long     userId;
+}
@@ -0,0 +1,25 @@
+package io.github.vizanarkonin.keres.core.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event, marking the start of a virtual user thread.
+ */
+@Name("keres.UserStart")
+@Label("User Start")
+@Category({ "Keres", "Users" })
+@Description("Virtual user thread has started")
+@StackTrace(false)
+public class UserStartEvent extends Event {
+    @Label("User Id")
+    public long     userId;
+    @Label("Mode")
+    public String   mode;
+    @Label("User Definition")
+    public String   userDefinition;
+}
@@ -0,0 +1,25 @@
+package io.github.vizanarkonin.keres.core.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event, marking the end of a virtual user thread. Event duration covers the whole lifetime of the user.
+ */
+@Name("keres.UserStop")
+@Label("User Stop")
+@Category({ "Keres", "Users" })
+@Description("Virtual user thread has finished")
+@StackTrace(false)
+public class UserStopEvent extends Event {
+    @Label("User Id")
+    public long     userId;
+    @Label("Mode")
+    public String   mode;
+    @Label("User Definition")
+    public String   userDefinition;
+}
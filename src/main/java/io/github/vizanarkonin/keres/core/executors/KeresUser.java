@@ -8,6 +8,9 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import io.github.vizanarkonin.keres.KeresController;
+import io.github.vizanarkonin.keres.core.events.UserStartEvent;
+import io.github.vizanarkonin.keres.core.events.UserStopEvent;
+import io.github.vizanarkonin.keres.core.interfaces.KeresPacing;
 import io.github.vizanarkonin.keres.core.interfaces.KeresUserDefinition;
 import io.github.vizanarkonin.keres.core.utils.TimeUtils;
 
@@ -19,15 +22,34 @@ import io.github.vizanarkonin.keres.core.utils.TimeUtils;
  */
 public class KeresUser {
     private static final Logger log = LogManager.getLogger("KeresUser");
+    // Intended start time of a user that was created at once, without an arrival schedule
+    public static final long NOT_SCHEDULED = -1;
     // Static storage for all currently existing keresUser instances.
     @Getter
     private static final ConcurrentHashMap<Long, KeresUser> allRunners  = new ConcurrentHashMap<>();
+    // How late current iteration of the user thread was started, compared to it's schedule. -1 if it's not scheduled.
+    // Inherited by the threads it starts (i.e. parallel action tasks), so their requests are corrected the same way
+    private static final InheritableThreadLocal<Long> scheduleDelay     = new InheritableThreadLocal<>() {
+        @Override
+        protected Long initialValue() {
+            return -1L;
+        }
+    };
+    // Id of the user, current thread belongs to. Inherited by the threads it starts (i.e. parallel action tasks). -1 if there's none
+    private static final InheritableThreadLocal<Long> currentUserId     = new InheritableThreadLocal<>() {
+        @Override
+        protected Long initialValue() {
+            return -1L;
+        }
+    };
     @Getter
     private long runnerId;
     private Thread runnerThread;
     private boolean isActive = true;
     @Getter
     private final Mode mode;
+    // Flight recorder event, covering the whole lifetime of the user. Committed on unregistering
+    private UserStopEvent lifetimeEvent;
 
     private KeresUser(Mode mode, Thread thread) {
         setThread(thread);
@@ -48,12 +70,26 @@ public class KeresUser {
      * @return      - KeresUser instance
      */
     public static KeresUser initRegularUser(Class<? extends KeresUserDefinition> task) {
+        return initRegularUser(task, NOT_SCHEDULED);
+    }
+
+    /**
+     * Creates a regular-type user, which was intended to arrive at given time (open load profile).
+     * Requests of the user are recorded against it's intended arrival time as well, so arrival delays are not hidden from the results.
+     * @param task                  - Task to execute
+     * @param intendedStartTime     - Timestamp the user was supposed to start at, or NOT_SCHEDULED if it has no arrival schedule
+     * @return                      - KeresUser instance
+     */
+    public static KeresUser initRegularUser(Class<? extends KeresUserDefinition> task, long intendedStartTime) {
         KeresUser runner = new KeresUser(Mode.DEFAULT);
         runner.setThread(Thread.startVirtualThread(() -> {
             try {
                 KeresUserDefinition runnerTask = task.getConstructor().newInstance();
 
-                runner.registerRunner();
+                if (intendedStartTime != NOT_SCHEDULED) {
+                    scheduleDelay.set(Math.max(0, System.currentTimeMillis() - intendedStartTime));
+                }
+                runner.registerRunner(task);
                 runnerTask.setUp();
                 runnerTask.beforeTask();
                 // NOTE: Regular runner should watch for shouldStop() state on it's own, since we do not pass it down
@@ -77,15 +113,28 @@ public class KeresUser {
      * @return      - KeresUser instance
      */
     public static KeresUser initLoopedUser(Class<? extends KeresUserDefinition> task) {
+        return initLoopedUser(task, System.currentTimeMillis());
+    }
+
+    /**
+     * Same as above, but with the time the user was supposed to be created at - it serves as a starting point for the pacing schedule.
+     * @param task                  - Task to execute
+     * @param intendedStartTime     - Timestamp the user was supposed to start at
+     * @return                      - KeresUser instance
+     */
+    public static KeresUser initLoopedUser(Class<? extends KeresUserDefinition> task, long intendedStartTime) {
         KeresUser runner = new KeresUser(Mode.LOOPED);
         runner.setThread(Thread.startVirtualThread(() -> {
             try {
                 KeresUserDefinition runnerTask = task.getConstructor().newInstance();
+                long pacing = getPacing(task);
+                long nextIterationTime = intendedStartTime;
 
-                runner.registerRunner();
+                runner.registerRunner(task);
                 runnerTask.setUp();
 
                 while (runner.isActive && !KeresController.shouldStop()) {
+                    nextIterationTime = awaitIteration(pacing, nextIterationTime);
                     runnerTask.beforeTask();
                     runnerTask.task();
                     runnerTask.afterTask();
@@ -110,16 +159,30 @@ public class KeresUser {
      * @return                  - KeresUser instance
      */
     public static KeresUser initCycledUser(Class<? extends KeresUserDefinition> task, int cyclesToPerform) {
+        return initCycledUser(task, cyclesToPerform, System.currentTimeMillis());
+    }
+
+    /**
+     * Same as above, but with the time the user was supposed to be created at - it serves as a starting point for the pacing schedule.
+     * @param task                  - Task to execute
+     * @param cyclesToPerform       - amount of cycles to perform before finishing.
+     * @param intendedStartTime     - Timestamp the user was supposed to start at
+     * @return                      - KeresUser instance
+     */
+    public static KeresUser initCycledUser(Class<? extends KeresUserDefinition> task, int cyclesToPerform, long intendedStartTime) {
         KeresUser runner = new KeresUser(Mode.CYCLED);
         runner.setThread(Thread.startVirtualThread(() -> {
             try {
                 KeresUserDefinition runnerTask = task.getConstructor().newInstance();
+                long pacing = getPacing(task);
+                long nextIterationTime = intendedStartTime;
 
-                runner.registerRunner();
+                runner.registerRunner(task);
                 runnerTask.setUp();
 
                 for (int cycle = 0; cycle < cyclesToPerform; cycle++) {
                     if (runner.isActive && !KeresController.shouldStop()) {
+                        nextIterationTime = awaitIteration(pacing, nextIterationTime);
                         runnerTask.beforeTask();
                         runnerTask.task();
                         runnerTask.afterTask();
@@ -191,14 +254,76 @@ public class KeresUser {
         return this;
     }
 
+    /**
+     * @return - How late the current iteration of calling user thread was started, compared to it's schedule (in ms).
+     *           -1 if iterations of the user are not scheduled (closed-loop user without pacing)
+     */
+    public static long getCurrentScheduleDelay() {
+        return scheduleDelay.get();
+    }
+
+    /**
+     * @return - Id of the virtual user, calling thread belongs to. -1 if it's called outside of a virtual user
+     */
+    public static long getCurrentUserId() {
+        return currentUserId.get();
+    }
+
+    /**
+     * @param task  - User definition type
+     * @return      - Pacing interval from KeresPacing annotation, or 0 if there's none
+     */
+    private static long getPacing(Class<? extends KeresUserDefinition> task) {
+        KeresPacing pacing = task.getAnnotation(KeresPacing.class);
+
+        return pacing == null ? 0 : Math.max(0, pacing.intervalInMs());
+    }
+
+    /**
+     * Waits for the next scheduled iteration (if pacing is set) and records how late it was started.
+     * Schedule is not shifted when the user falls behind - so every missed slot is accounted for in the delay of the following ones.
+     * @param pacing            - Pacing interval, 0 if iterations are not scheduled
+     * @param iterationTime     - Intended start time of the iteration
+     * @return                  - Intended start time of the next iteration
+     */
+    private static long awaitIteration(long pacing, long iterationTime) {
+        if (pacing <= 0) {
+            return iterationTime;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now < iterationTime) {
+            TimeUtils.waitFor(iterationTime - now);
+        }
+        scheduleDelay.set(Math.max(0, System.currentTimeMillis() - iterationTime));
+
+        return iterationTime + pacing;
+    }
+
     /**
      * Adds KeresUser to allRunners list.
      * IMPORTANT: This method MUST be called from inside the virtual user thread - it relies on thread ID for registration.
      */
-    private void registerRunner() {
+    private void registerRunner(Class<? extends KeresUserDefinition> task) {
         runnerId = Thread.currentThread().threadId();
         log.trace("Registering runner " + runnerId + " in the runners map");
         allRunners.put(runnerId, this);
+        currentUserId.set(runnerId);
+
+        UserStartEvent startEvent = new UserStartEvent();
+        if (startEvent.shouldCommit()) {
+            startEvent.userId = runnerId;
+            startEvent.mode = mode.name();
+            startEvent.userDefinition = task.getName();
+            startEvent.commit();
+        }
+        lifetimeEvent = new UserStopEvent();
+        if (lifetimeEvent.isEnabled()) {
+            lifetimeEvent.userDefinition = task.getName();
+            lifetimeEvent.begin();
+        } else {
+            lifetimeEvent = null;
+        }
     }
 
     /**
@@ -207,6 +332,16 @@ public class KeresUser {
     private void unregisterRunner() {
         log.trace("Removing runner " + runnerId + " from the runners map");
         allRunners.remove(runnerId);
+
+        if (lifetimeEvent != null) {
+            lifetimeEvent.end();
+            if (lifetimeEvent.shouldCommit()) {
+                lifetimeEvent.userId = runnerId;
+                lifetimeEvent.mode = mode.name();
+                lifetimeEvent.commit();
+            }
+            lifetimeEvent = null;
+        }
     }
 
     public static enum Mode {
@@ -257,6 +257,19 @@ public class ScenarioExecutor {
      * @param cyclesToExecute   - (For cycled user mode) amount of cycles to execute. Only used for Mode=Cycled
      */
     private void createUsersAtOnce(int number, Mode userMode, int cyclesToExecute) {
+        createUsersAtOnce(number, userMode, cyclesToExecute, KeresUser.NOT_SCHEDULED);
+    }
+
+    /**
+     * Same as above, but with the time users were supposed to be created at. Used as a reference for coordinated omission correction.
+     * @param number            - number of users to create.
+     * @param userMode          - desired user mode.
+     * @param cyclesToExecute   - (For cycled user mode) amount of cycles to execute. Only used for Mode=Cycled
+     * @param intendedStartTime - timestamp users were supposed to be created at, or KeresUser.NOT_SCHEDULED if they have no arrival schedule
+     */
+    private void createUsersAtOnce(int number, Mode userMode, int cyclesToExecute, long intendedStartTime) {
+        // Regular users created at once are not scheduled. Looped and cycled ones still need a starting point for their pacing
+        long pacingStartTime = intendedStartTime == KeresUser.NOT_SCHEDULED ? System.currentTimeMillis() : intendedStartTime;
         for (int index = 0; index < number; index++) {
             if (KeresController.shouldStop()) {
                 log.trace("createUsersAtOnce - shouldStop is true");
@@ -265,13 +278,13 @@ public class ScenarioExecutor {
 
             switch (userMode) {
                 case DEFAULT: 
-                    KeresUser.initRegularUser(task);
+                    KeresUser.initRegularUser(task, intendedStartTime);
                     break;
                 case LOOPED:
-                    KeresUser.initLoopedUser(task);
+                    KeresUser.initLoopedUser(task, pacingStartTime);
                     break;
                 case CYCLED:
-                    KeresUser.initCycledUser(task, cyclesToExecute);
+                    KeresUser.initCycledUser(task, cyclesToExecute, pacingStartTime);
                     break;
                 default:
                     throw new RuntimeException("Unknown KeresUser mode - " + userMode);
@@ -288,15 +301,26 @@ public class ScenarioExecutor {
      */
     private void createUsersOverTime(int number, Duration period, Mode userMode, int cyclesToExecute) {
         long delayBetweenCycles = period.toMillis() / number;
+        // Arrivals follow a fixed schedule, so delays don't accumulate - and each user knows when it was supposed to arrive
+        long startTime = System.currentTimeMillis();
         for (int index = 0; index < number; index++) {
             if (KeresController.shouldStop()) {
                 log.trace("createUsersOverTime - shouldStop is true");
                 break;
             }
 
-            createUsersAtOnce(1, userMode, cyclesToExecute);
-
-            TimeUtils.waitFor(delayBetweenCycles);
+            long intendedStartTime = startTime + index * delayBetweenCycles;
+            long now = System.currentTimeMillis();
+            if (now < intendedStartTime) {
+                TimeUtils.waitFor(intendedStartTime - now);
+            }
+            createUsersAtOnce(1, userMode, cyclesToExecute, intendedStartTime);
+        }
+        // Keeping the overall duration of the step the same as before
+        long stepEndTime = startTime + number * delayBetweenCycles;
+        long now = System.currentTimeMillis();
+        if (now < stepEndTime && !KeresController.shouldStop()) {
+            TimeUtils.waitFor(stepEndTime - now);
         }
     }
 
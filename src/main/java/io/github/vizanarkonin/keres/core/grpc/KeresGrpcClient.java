@@ -35,7 +35,7 @@ public class KeresGrpcClient {
     private StreamObserver<NodeControlRequest>              controlRequestObserver;
     private StreamObserver<MessageResponse>                 controlResponseObserver;
 
-    public boolean                                          connected = false;
+    public volatile boolean                                 connected = false;
 
     @Getter
     private final String                                    hubAddress;
@@ -0,0 +1,387 @@
+package io.github.vizanarkonin.keres.core.grpc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.github.vizanarkonin.keres.core.utils.TimeUtils;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+
+/**
+ * Delivers node results to the hub over client-streaming StreamResults RPC.
+ * Batches are queued by the collector and sent by a dedicated thread, so a slow or unreachable hub never stalls results collection.
+ * - Sending respects gRPC flow control - next batch is only written once the transport is ready to take it
+ * - Queue is bounded in memory - once it's full, batches are spilled into a file and read back in order
+ * - A stream is kept open for a few seconds and then completed. Batches of a stream that failed are re-queued and re-sent
+ *   after the client reconnects - hub skips the ones it already processed by their sequence numbers
+ * - If the hub does not support streaming - falls back to unary SubmitResults calls, with the same retry logic
+ */
+public class ResultsStreamer {
+    private static final Logger                 log                         = LogManager.getLogger("ResultsStreamer");
+    public static final int                     DEFAULT_MAX_BUFFERED_BATCHES = 120;
+    private static final Duration               STREAM_DURATION             = Duration.ofSeconds(10);
+    private static final Duration               RESPONSE_TIMEOUT            = Duration.ofSeconds(30);
+    private static final Duration               RETRY_DELAY                 = Duration.ofSeconds(2);
+    private static final long                   POLL_TIMEOUT_MS             = 200;
+    // How long close() waits for the interrupted sender to requeue its in-flight batches, so they're counted as undelivered
+    private static final Duration               ABORT_TIMEOUT               = Duration.ofSeconds(5);
+
+    private final KeresGrpcClient               client;
+    private final Path                          spillFile;
+    private final int                           maxBufferedBatches;
+    private final Object                        lock                        = new Object();
+    private final ArrayDeque<RunLogRequest>     buffer                      = new ArrayDeque<>();
+    // Amount of batches in spill file that were not yet read back
+    private long                                spilledBatches              = 0;
+    private OutputStream                        spillOutput;
+    private InputStream                         spillInput;
+    private final Object                        readyLock                   = new Object();
+    private volatile boolean                    running                     = false;
+    // Set by close() once the delivery timeout is exceeded - sender gives up on the remaining batches
+    private volatile boolean                    aborted                     = false;
+    private volatile boolean                    streamingSupported          = true;
+    private Thread                              senderThread;
+    private volatile long                       sentBatchesCount            = 0;
+    private volatile long                       resentBatchesCount          = 0;
+    private volatile long                       spilledBatchesCount         = 0;
+
+    /**
+     * @param client                - Connected gRPC client
+     * @param spillFile             - File to spill batches into, once in-memory buffer is full
+     * @param maxBufferedBatches    - Maximum amount of batches kept in memory
+     */
+    public ResultsStreamer(KeresGrpcClient client, Path spillFile, int maxBufferedBatches) {
+        this.client = client;
+        this.spillFile = spillFile;
+        this.maxBufferedBatches = Math.max(1, maxBufferedBatches);
+    }
+
+    public void start() {
+        running = true;
+        aborted = false;
+        senderThread = new Thread(() -> {
+            while (!aborted && (running || !isEmpty())) {
+                if (!client.connected) {
+                    TimeUtils.waitFor(RETRY_DELAY);
+                    continue;
+                }
+
+                boolean delivered = streamingSupported ? sendStream() : sendUnary();
+                if (!delivered) {
+                    TimeUtils.waitFor(RETRY_DELAY);
+                }
+            }
+        });
+        senderThread.setName("ResultsStreamer");
+        senderThread.start();
+    }
+
+    /**
+     * Stops accepting the batches and waits for the queued ones to be delivered.
+     * Batches that could not be delivered in time are lost - they're counted in the log, and the spill file is removed.
+     * @param timeout - Maximum time to wait for the delivery
+     */
+    public void close(Duration timeout) {
+        running = false;
+        try {
+            senderThread.join(timeout.toMillis());
+            // Sender must be done with the buffer before it's dropped - otherwise in-flight batches could be requeued afterwards
+            if (senderThread.isAlive()) {
+                aborted = true;
+                senderThread.interrupt();
+                senderThread.join(ABORT_TIMEOUT.toMillis());
+                if (senderThread.isAlive()) {
+                    log.warn("Results sender did not stop in " + ABORT_TIMEOUT.toSeconds() + " seconds");
+                }
+            }
+        } catch (InterruptedException ignored) {}
+
+        synchronized (lock) {
+            long undelivered = buffer.size() + spilledBatches;
+            if (undelivered > 0) {
+                log.error(String.format("%d results batches were not delivered to the hub in time and are lost. Hub's report of the run is incomplete", undelivered));
+            }
+            buffer.clear();
+            spilledBatches = 0;
+            closeSpillFile(true);
+        }
+    }
+
+    /**
+     * Queues a batch for delivery. Never blocks on the network.
+     * @param batch - Results batch
+     */
+    public void submit(RunLogRequest batch) {
+        synchronized (lock) {
+            // Once anything is spilled, everything that follows goes there too - to keep the order
+            if (spilledBatches > 0 || buffer.size() >= maxBufferedBatches) {
+                spill(batch);
+            } else {
+                buffer.addLast(batch);
+            }
+            lock.notifyAll();
+        }
+    }
+
+    public boolean isEmpty() {
+        synchronized (lock) {
+            return buffer.isEmpty() && spilledBatches == 0;
+        }
+    }
+
+    /**
+     * @return - Amount of batches waiting for delivery, both in memory and in spill file
+     */
+    public long getQueuedBatchesCount() {
+        synchronized (lock) {
+            return buffer.size() + spilledBatches;
+        }
+    }
+
+    public long getSentBatchesCount() {
+        return sentBatchesCount;
+    }
+
+    public long getResentBatchesCount() {
+        return resentBatchesCount;
+    }
+
+    public long getSpilledBatchesCount() {
+        return spilledBatchesCount;
+    }
+
+    // ##########################################################################################
+    // Sending
+    // ##########################################################################################
+
+    private boolean sendStream() {
+        RunLogRequest first = take(POLL_TIMEOUT_MS);
+        if (first == null) {
+            return true;
+        }
+
+        List<RunLogRequest> inFlight = new ArrayList<>();
+        inFlight.add(first);
+        CompletableFuture<MessageResponse> result = new CompletableFuture<>();
+        ClientResponseObserver<RunLogRequest, MessageResponse> responseObserver = new ClientResponseObserver<>() {
+            @Override
+            public void beforeStart(ClientCallStreamObserver<RunLogRequest> requestStream) {
+                requestStream.setOnReadyHandler(() -> {
+                    synchronized (readyLock) {
+                        readyLock.notifyAll();
+                    }
+                });
+            }
+
+            @Override
+            public void onNext(MessageResponse response) {
+                result.complete(response);
+            }
+
+            @Override
+            public void onError(Throwable exception) {
+                result.completeExceptionally(exception);
+            }
+
+            @Override
+            public void onCompleted() {
+                result.complete(null);
+            }
+        };
+
+        ClientCallStreamObserver<RunLogRequest> stream = null;
+        try {
+            stream = (ClientCallStreamObserver<RunLogRequest>) client.controlsStreamStub.streamResults(responseObserver);
+            long deadline = System.currentTimeMillis() + STREAM_DURATION.toMillis();
+            RunLogRequest batch = first;
+            while (batch != null) {
+                awaitReady(stream, result);
+                if (result.isDone()) {
+                    // Hub has closed the stream prematurely - that's an error, which is handled below
+                    break;
+                }
+                stream.onNext(batch);
+
+                batch = null;
+                while (batch == null && running && System.currentTimeMillis() < deadline && !result.isDone()) {
+                    batch = take(POLL_TIMEOUT_MS);
+                }
+                if (batch == null && !running) {
+                    batch = take(0);
+                }
+                if (batch != null) {
+                    inFlight.add(batch);
+                }
+            }
+            if (!result.isDone()) {
+                stream.onCompleted();
+            }
+
+            MessageResponse response = result.get(RESPONSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            if (response != null && response.getStatus() == ResponseStatus.FAILURE) {
+                throw new RuntimeException("Hub failed to process results stream - " + response.getDetails());
+            }
+            sentBatchesCount += inFlight.size();
+
+            return true;
+        } catch (Exception e) {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            if (Status.fromThrowable(cause).getCode() == Status.Code.UNIMPLEMENTED) {
+                log.warn("Hub does not support results streaming. Falling back to unary results submission");
+                streamingSupported = false;
+            } else {
+                log.error("Results stream failed. " + inFlight.size() + " batches will be re-sent");
+                log.error(cause);
+                log.error(ExceptionUtils.getStackTrace(cause));
+            }
+            if (stream != null && !result.isDone()) {
+                stream.cancel("Results stream failed", cause);
+            }
+            requeue(inFlight);
+
+            return false;
+        }
+    }
+
+    private boolean sendUnary() {
+        RunLogRequest batch = take(POLL_TIMEOUT_MS);
+        if (batch == null) {
+            return true;
+        }
+
+        try {
+            MessageResponse response = client.controlsBlockingStub.submitResults(batch);
+            if (response.getStatus() == ResponseStatus.FAILURE) {
+                throw new RuntimeException("Hub failed to process results - " + response.getDetails());
+            }
+            sentBatchesCount++;
+
+            return true;
+        } catch (Exception e) {
+            log.error("Results submission failed. Batch will be re-sent");
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+            requeue(List.of(batch));
+
+            return false;
+        }
+    }
+
+    // Flow control - waits until transport can take another message without buffering it
+    private void awaitReady(ClientCallStreamObserver<RunLogRequest> stream, CompletableFuture<MessageResponse> result) throws InterruptedException {
+        synchronized (readyLock) {
+            while (!stream.isReady() && !result.isDone()) {
+                readyLock.wait(POLL_TIMEOUT_MS);
+            }
+        }
+    }
+
+    // ##########################################################################################
+    // Buffering
+    // ##########################################################################################
+
+    private RunLogRequest take(long timeoutMs) {
+        synchronized (lock) {
+            refill();
+            if (buffer.isEmpty() && timeoutMs > 0) {
+                try {
+                    lock.wait(timeoutMs);
+                } catch (InterruptedException e) {
+                    // close() interrupts the sender to stop it - the flag has to survive until the sender loop checks it
+                    Thread.currentThread().interrupt();
+                }
+                refill();
+            }
+
+            return buffer.pollFirst();
+        }
+    }
+
+    private void requeue(List<RunLogRequest> batches) {
+        synchronized (lock) {
+            for (int index = batches.size() - 1; index >= 0; index--) {
+                buffer.addFirst(batches.get(index));
+            }
+            resentBatchesCount += batches.size();
+        }
+    }
+
+    // Moves spilled batches back into memory, as long as there's space for them
+    private void refill() {
+        try {
+            while (spilledBatches > 0 && buffer.size() < maxBufferedBatches) {
+                if (spillInput == null) {
+                    spillOutput.flush();
+                    spillInput = new BufferedInputStream(Files.newInputStream(spillFile));
+                }
+                buffer.addLast(RunLogRequest.parseDelimitedFrom(spillInput));
+                spilledBatches--;
+            }
+            if (spilledBatches == 0 && spillOutput != null) {
+                closeSpillFile(true);
+            }
+        } catch (IOException e) {
+            log.error("Failed to read spilled results from " + spillFile + ". " + spilledBatches + " batches are lost");
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+            spilledBatches = 0;
+            closeSpillFile(false);
+        }
+    }
+
+    private void spill(RunLogRequest batch) {
+        try {
+            if (spillOutput == null) {
+                Files.createDirectories(spillFile.getParent());
+                spillOutput = new BufferedOutputStream(Files.newOutputStream(spillFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+                log.warn("Results buffer is full - spilling results batches to " + spillFile);
+            }
+            batch.writeDelimitedTo(spillOutput);
+            spillOutput.flush();
+            spilledBatches++;
+            spilledBatchesCount++;
+        } catch (IOException e) {
+            log.error("Failed to spill results batch to " + spillFile + ". Keeping it in memory");
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+            buffer.addLast(batch);
+        }
+    }
+
+    private void closeSpillFile(boolean delete) {
+        try {
+            if (spillInput != null) {
+                spillInput.close();
+            }
+            if (spillOutput != null) {
+                spillOutput.close();
+            }
+            if (delete) {
+                Files.deleteIfExists(spillFile);
+            }
+        } catch (IOException e) {
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+        }
+        spillInput = null;
+        spillOutput = null;
+    }
+}
@@ -0,0 +1,18 @@
+package io.github.vizanarkonin.keres.core.interfaces;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation, used to define pacing for looped and cycled users of a KeresUserDefinition class.
+ * With pacing set, iterations are started on a fixed schedule - every intervalInMs milliseconds since the user was created.
+ * If an iteration takes longer than that - the next one starts right away, and it's requests are recorded against their intended
+ * start time as well (coordinated omission correction), so target stalls are not hidden by the missed iterations.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface KeresPacing {
+    long intervalInMs();
+}
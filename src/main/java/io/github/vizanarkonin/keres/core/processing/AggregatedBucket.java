@@ -0,0 +1,238 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import java.util.HashMap;
+
+import org.json.JSONObject;
+
+import io.github.vizanarkonin.keres.core.grpc.ResultsBucket;
+import lombok.Getter;
+
+/**
+ * Aggregated statistics of a single request key over a single time bucket (or the whole run, if used as a totals container).
+ * Replaces per-sample storage - instead of keeping every response we keep counters and latency histograms.
+ * Passed and failed response times are kept in separate histograms, since report treats them differently.
+ */
+@Getter
+public class AggregatedBucket {
+    private final long                      timeStamp;
+    private long                            requestsCount       = 0;
+    private long                            failuresCount       = 0;
+    private final LatencyHistogram          passedResponseTimes = new LatencyHistogram();
+    // Most of the buckets never see a failure, so this one is only created on demand
+    private LatencyHistogram                failedResponseTimes;
+    /**
+     * Response times, corrected for coordinated omission - measured from the intended start time, plus the synthetic samples
+     * for the requests a stalled closed-loop user has missed. Only created once the first correction happens - and seeded with
+     * all the response times recorded up to that point, so it always covers every request.
+     */
+    private LatencyHistogram                correctedResponseTimes;
+    // Key is response code, value is amount of responses with it
+    private final HashMap<Integer, Long>    responseCodes       = new HashMap<>();
+
+    public AggregatedBucket(long timeStamp) {
+        this.timeStamp = timeStamp;
+    }
+
+    public void record(long responseTime, boolean failed, int responseCode) {
+        record(responseTime, failed, responseCode, responseTime, 0);
+    }
+
+    /**
+     * @param responseTime          - Measured response time
+     * @param failed                - Whether the response has failed
+     * @param responseCode          - Response code
+     * @param correctedResponseTime - Response time, measured from the intended start time. Equals responseTime if request was not delayed
+     * @param expectedInterval      - Expected interval between requests of a closed-loop user. 0 disables the interval correction
+     */
+    public void record(long responseTime, boolean failed, int responseCode, long correctedResponseTime, long expectedInterval) {
+        if (correctedResponseTimes == null && (correctedResponseTime != responseTime || (expectedInterval > 0 && responseTime >= 2 * expectedInterval))) {
+            correctedResponseTimes = getResponseTimes();
+        }
+        if (correctedResponseTimes != null) {
+            recordCorrected(correctedResponseTimes, correctedResponseTime, expectedInterval);
+        }
+
+        requestsCount += 1;
+        if (failed) {
+            failuresCount += 1;
+            if (failedResponseTimes == null) {
+                failedResponseTimes = new LatencyHistogram();
+            }
+            failedResponseTimes.recordValue(responseTime);
+        } else {
+            passedResponseTimes.recordValue(responseTime);
+        }
+        responseCodes.merge(responseCode, 1L, Long::sum);
+    }
+
+    public void merge(AggregatedBucket other) {
+        // Corrected histograms go first - while own response times don't include the other bucket yet.
+        // If only one side has corrections - response times of the other one are taken as is
+        if (correctedResponseTimes != null || other.correctedResponseTimes != null) {
+            if (correctedResponseTimes == null) {
+                correctedResponseTimes = getResponseTimes();
+            }
+            correctedResponseTimes.add(other.correctedResponseTimes != null ? other.correctedResponseTimes : other.getResponseTimes());
+        }
+        requestsCount += other.requestsCount;
+        failuresCount += other.failuresCount;
+        passedResponseTimes.add(other.passedResponseTimes);
+        if (other.failedResponseTimes != null) {
+            if (failedResponseTimes == null) {
+                failedResponseTimes = new LatencyHistogram();
+            }
+            failedResponseTimes.add(other.failedResponseTimes);
+        }
+        other.responseCodes.forEach((code, count) -> responseCodes.merge(code, count, Long::sum));
+    }
+
+    /**
+     * @return - Whether coordinated omission correction has ever been applied to this bucket
+     */
+    public boolean hasCorrections() {
+        return correctedResponseTimes != null;
+    }
+
+    /**
+     * @return - Copy of coordinated omission corrected response times. Same as getResponseTimes() if no correction was applied
+     */
+    public LatencyHistogram getCorrectedResponseTimes() {
+        return correctedResponseTimes == null ? getResponseTimes() : correctedResponseTimes.copy();
+    }
+
+    /**
+     * @return - Histogram with both passed and failed response times
+     */
+    public LatencyHistogram getResponseTimes() {
+        LatencyHistogram result = passedResponseTimes.copy();
+        result.add(failedResponseTimes);
+
+        return result;
+    }
+
+    /**
+     * @param percentiles   - Percentiles, in range of 0 to 100, sorted in ascending order
+     * @return              - Response times (both passed and failed) at given percentiles
+     */
+    public long[] getResponseTimePercentiles(double[] percentiles) {
+        return failedResponseTimes == null ?
+            passedResponseTimes.getValuesAtPercentiles(percentiles) :
+            getResponseTimes().getValuesAtPercentiles(percentiles);
+    }
+
+    public long getResponseTimeSum() {
+        return passedResponseTimes.getTotalSum() + (failedResponseTimes == null ? 0 : failedResponseTimes.getTotalSum());
+    }
+
+    public long getAverageResponseTime() {
+        return requestsCount == 0 ? 0 : getResponseTimeSum() / requestsCount;
+    }
+
+    public JSONObject toJSON() {
+        JSONObject result = new JSONObject()
+            .put("timeStamp", timeStamp)
+            .put("requestsCount", requestsCount)
+            .put("failuresCount", failuresCount)
+            .put("responseCodes", new JSONObject(responseCodes))
+            .put("passed", histogramToJSON(passedResponseTimes));
+        if (failedResponseTimes != null) {
+            result.put("failed", histogramToJSON(failedResponseTimes));
+        }
+        if (correctedResponseTimes != null) {
+            result.put("corrected", histogramToJSON(correctedResponseTimes));
+        }
+
+        return result;
+    }
+
+    public static AggregatedBucket fromJSON(JSONObject input) {
+        AggregatedBucket bucket = new AggregatedBucket(input.getLong("timeStamp"));
+        bucket.requestsCount = input.getLong("requestsCount");
+        bucket.failuresCount = input.getLong("failuresCount");
+        JSONObject codes = input.getJSONObject("responseCodes");
+        codes.keySet().forEach(code -> bucket.responseCodes.put(Integer.parseInt(code), codes.getLong(code)));
+        bucket.passedResponseTimes.add(histogramFromJSON(input.getJSONObject("passed")));
+        if (input.has("failed")) {
+            bucket.failedResponseTimes = histogramFromJSON(input.getJSONObject("failed"));
+        }
+        if (input.has("corrected")) {
+            bucket.correctedResponseTimes = histogramFromJSON(input.getJSONObject("corrected"));
+        }
+
+        return bucket;
+    }
+
+    /**
+     * Serializes bucket data into protobuf form. Key index and time stamp are batch-level concerns and are set by the caller.
+     * @return - Bucket message builder
+     */
+    public ResultsBucket.Builder toProto() {
+        ResultsBucket.Builder builder = ResultsBucket.newBuilder()
+            .setRequestsCount(requestsCount)
+            .setFailuresCount(failuresCount)
+            .setPassed(passedResponseTimes.toProto());
+        responseCodes.forEach((code, count) -> builder.addResponseCodes(code).addResponseCodeCounts(count));
+        if (failedResponseTimes != null) {
+            builder.setFailed(failedResponseTimes.toProto());
+        }
+        if (correctedResponseTimes != null) {
+            builder.setCorrected(correctedResponseTimes.toProto());
+        }
+
+        return builder;
+    }
+
+    /**
+     * Restores bucket from it's protobuf form.
+     * @param timeStamp - Bucket time stamp, decoded by the caller
+     * @param input     - Bucket message
+     * @return          - Restored bucket
+     */
+    public static AggregatedBucket fromProto(long timeStamp, ResultsBucket input) {
+        AggregatedBucket bucket = new AggregatedBucket(timeStamp);
+        bucket.requestsCount = input.getRequestsCount();
+        bucket.failuresCount = input.getFailuresCount();
+        for (int index = 0; index < input.getResponseCodesCount(); index++) {
+            bucket.responseCodes.put(input.getResponseCodes(index), input.getResponseCodeCounts(index));
+        }
+        bucket.passedResponseTimes.add(LatencyHistogram.fromProto(input.getPassed()));
+        if (input.hasFailed()) {
+            bucket.failedResponseTimes = LatencyHistogram.fromProto(input.getFailed());
+        }
+        if (input.hasCorrected()) {
+            bucket.correctedResponseTimes = LatencyHistogram.fromProto(input.getCorrected());
+        }
+
+        return bucket;
+    }
+
+    /**
+     * Records corrected response time. With expected interval set - also back-fills the requests that were missed while the user
+     * was waiting for this response, the same way HdrHistogram's recordValueWithExpectedInterval does.
+     */
+    private static void recordCorrected(LatencyHistogram histogram, long responseTime, long expectedInterval) {
+        histogram.recordValue(responseTime);
+        if (expectedInterval <= 0) {
+            return;
+        }
+        for (long missedValue = responseTime - expectedInterval; missedValue >= expectedInterval; missedValue -= expectedInterval) {
+            histogram.recordValue(missedValue);
+        }
+    }
+
+    private static JSONObject histogramToJSON(LatencyHistogram histogram) {
+        return new JSONObject()
+            .put("sum", histogram.getTotalSum())
+            .put("min", histogram.getMinValue())
+            .put("max", histogram.getMaxValue())
+            .put("buckets", histogram.toJSONArray());
+    }
+
+    private static LatencyHistogram histogramFromJSON(JSONObject input) {
+        return LatencyHistogram.fromJSONArray(
+            input.getJSONArray("buckets"),
+            input.getLong("sum"),
+            input.getLong("min"),
+            input.getLong("max"));
+    }
+}
@@ -0,0 +1,255 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import lombok.Getter;
+
+/**
+ * Aggregated results of a single request key.
+ * Keeps one AggregatedBucket per second of the run, plus a totals bucket for the whole run.
+ * Bucket time stamp marks the end of the second - i.e. bucket T contains the requests that were started within (T - 1000, T] range.
+ * Besides the per-second buckets, rollups of 10 seconds, 1 minute and 10 minutes are kept (see RESOLUTIONS_MS) - they're updated
+ * as the data arrives, so a multi-day run can be charted without sweeping hundreds of thousands of buckets per key.
+ * Rollup buckets follow the same rule - bucket T of resolution R contains the requests started within (T - R, T] range.
+ */
+public class AggregatedRequestLog {
+    public static final long                    BUCKET_SIZE_MS  = 1000;
+    // Time series resolutions (levels). Level 0 is the per-second buckets, the rest are rollups of them
+    public static final long[]                  RESOLUTIONS_MS  = { BUCKET_SIZE_MS, 10_000, 60_000, 600_000 };
+    // Summary fields, holding the response times distributions. These make up most of the summary size
+    public static final List<String>            SUMMARY_DISTRIBUTION_KEYS = List.of("responseTimes", "passedResponseTimes", "correctedResponseTimes");
+
+    @Getter
+    private final String                        name;
+    private final AggregatedBucket              totals          = new AggregatedBucket(0);
+    private final TreeMap<Long, AggregatedBucket> buckets       = new TreeMap<>();
+    // Rollup buckets of each level above 0 (index is level - 1)
+    private final List<TreeMap<Long, AggregatedBucket>> rollups = new ArrayList<>();
+    // Latest used rollup bucket of each level - most of the responses go into the same one
+    private final AggregatedBucket[]            currentRollups  = new AggregatedBucket[RESOLUTIONS_MS.length - 1];
+
+    public AggregatedRequestLog(String name) {
+        this.name = name;
+        for (int level = 1; level < RESOLUTIONS_MS.length; level++) {
+            rollups.add(new TreeMap<>());
+        }
+    }
+
+    public static long bucketTimeStampFor(long startTime) {
+        return bucketTimeStampFor(startTime, BUCKET_SIZE_MS);
+    }
+
+    /**
+     * @param startTime     - Request start time
+     * @param resolution    - Bucket size in ms
+     * @return              - Time stamp of the bucket of given size that the request belongs to
+     */
+    public static long bucketTimeStampFor(long startTime, long resolution) {
+        return Math.floorDiv(startTime + resolution - 1, resolution) * resolution;
+    }
+
+    public synchronized void record(long startTime, long responseTime, boolean failed, int responseCode) {
+        record(startTime, responseTime, failed, responseCode, responseTime, 0);
+    }
+
+    /**
+     * Records a response, along with it's coordinated omission corrected response time.
+     * See AggregatedBucket.record() for the details.
+     */
+    public synchronized void record(long startTime, long responseTime, boolean failed, int responseCode, long correctedResponseTime, long expectedInterval) {
+        totals.record(responseTime, failed, responseCode, correctedResponseTime, expectedInterval);
+        buckets
+            .computeIfAbsent(bucketTimeStampFor(startTime), AggregatedBucket::new)
+                .record(responseTime, failed, responseCode, correctedResponseTime, expectedInterval);
+        for (int level = 1; level < RESOLUTIONS_MS.length; level++) {
+            rollupBucketFor(level, startTime).record(responseTime, failed, responseCode, correctedResponseTime, expectedInterval);
+        }
+    }
+
+    public synchronized void merge(AggregatedRequestLog other) {
+        synchronized (other) {
+            totals.merge(other.totals);
+            other.buckets.forEach((timeStamp, bucket) -> buckets.computeIfAbsent(timeStamp, AggregatedBucket::new).merge(bucket));
+            for (int level = 1; level < RESOLUTIONS_MS.length; level++) {
+                TreeMap<Long, AggregatedBucket> levelBuckets = rollups.get(level - 1);
+                other.rollups.get(level - 1).forEach((timeStamp, bucket) -> levelBuckets.computeIfAbsent(timeStamp, AggregatedBucket::new).merge(bucket));
+            }
+        }
+    }
+
+    private AggregatedBucket rollupBucketFor(int level, long startTime) {
+        long timeStamp = bucketTimeStampFor(startTime, RESOLUTIONS_MS[level]);
+        AggregatedBucket bucket = currentRollups[level - 1];
+        if (bucket == null || bucket.getTimeStamp() != timeStamp) {
+            bucket = rollups.get(level - 1).computeIfAbsent(timeStamp, AggregatedBucket::new);
+            currentRollups[level - 1] = bucket;
+        }
+
+        return bucket;
+    }
+
+    /**
+     * Merges a per-second bucket into the rollups. Used when the log is restored from the per-second buckets only.
+     */
+    private void addToRollups(AggregatedBucket bucket) {
+        for (int level = 1; level < RESOLUTIONS_MS.length; level++) {
+            // Per-second bucket T holds the requests started within (T - 1000, T] - same rollup bucket as for T itself
+            rollupBucketFor(level, bucket.getTimeStamp()).merge(bucket);
+        }
+    }
+
+    public synchronized long getRequestsCount() {
+        return totals.getRequestsCount();
+    }
+
+    public synchronized long getFailuresCount() {
+        return totals.getFailuresCount();
+    }
+
+    /**
+     * @return - Copy of the run response times histogram (both passed and failed responses)
+     */
+    public synchronized LatencyHistogram getResponseTimes() {
+        return totals.getResponseTimes();
+    }
+
+    /**
+     * NOTE: Returned instance is a live object - only access it once the data collection is finished.
+     * @return - Totals bucket for the whole run
+     */
+    public AggregatedBucket getTotals() {
+        return totals;
+    }
+
+    public synchronized AggregatedBucket getBucket(long timeStamp) {
+        return buckets.get(timeStamp);
+    }
+
+    public synchronized List<AggregatedBucket> getBuckets() {
+        return new ArrayList<>(buckets.values());
+    }
+
+    /**
+     * @param level - Index in RESOLUTIONS_MS. 0 for per-second buckets
+     * @return      - Buckets of given resolution, sorted by time stamp
+     */
+    public synchronized List<AggregatedBucket> getBuckets(int level) {
+        return level == 0 ? getBuckets() : new ArrayList<>(rollups.get(level - 1).values());
+    }
+
+    public synchronized long getFirstTimeStamp() {
+        return buckets.isEmpty() ? 0 : buckets.firstKey();
+    }
+
+    public synchronized long getLastTimeStamp() {
+        return buckets.isEmpty() ? 0 : buckets.lastKey();
+    }
+
+    public synchronized boolean isEmpty() {
+        return buckets.isEmpty();
+    }
+
+    public synchronized JSONArray toJSON() {
+        JSONArray result = new JSONArray();
+        buckets.values().forEach(bucket -> result.put(bucket.toJSON()));
+
+        return result;
+    }
+
+    /**
+     * Restores a log from already decoded buckets.
+     * @param name      - Request key
+     * @param buckets   - Buckets, in any order
+     * @return          - Restored log
+     */
+    public static AggregatedRequestLog fromBuckets(String name, List<AggregatedBucket> buckets) {
+        AggregatedRequestLog log = new AggregatedRequestLog(name);
+        for (AggregatedBucket bucket : buckets) {
+            log.totals.merge(bucket);
+            log.addToRollups(bucket);
+            log.buckets.merge(bucket.getTimeStamp(), bucket, (existing, added) -> {
+                existing.merge(added);
+                return existing;
+            });
+        }
+
+        return log;
+    }
+
+    public static AggregatedRequestLog fromJSON(String name, JSONArray input) {
+        AggregatedRequestLog log = new AggregatedRequestLog(name);
+        for (int index = 0; index < input.length(); index++) {
+            AggregatedBucket bucket = AggregatedBucket.fromJSON(input.getJSONObject(index));
+            log.totals.merge(bucket);
+            log.addToRollups(bucket);
+            log.buckets.put(bucket.getTimeStamp(), bucket);
+        }
+
+        return log;
+    }
+
+    /**
+     * Builds a summary object for the report viewer - run totals, precomputed percentiles and response times distributions.
+     * Distributions allow the viewer to compute any other percentile with the same accuracy.
+     * @param percentiles   - Percentiles to precompute, sorted in ascending order
+     * @return              - JSONObject with summary data
+     */
+    public synchronized JSONObject toSummaryJSON(double[] percentiles) {
+        return toSummaryJSON(totals, percentiles);
+    }
+
+    /**
+     * Builds a summary object of given totals bucket. Same as toSummaryJSON(percentiles), but can be used for merged totals of several keys.
+     * @param totals        - Totals bucket
+     * @param percentiles   - Percentiles to precompute, sorted in ascending order
+     * @return              - JSONObject with summary data
+     */
+    public static JSONObject toSummaryJSON(AggregatedBucket totals, double[] percentiles) {
+        LatencyHistogram responseTimes = totals.getResponseTimes();
+        long[] values = responseTimes.getValuesAtPercentiles(percentiles);
+        JSONObject percentilesJSON = new JSONObject();
+        for (int index = 0; index < percentiles.length; index++) {
+            percentilesJSON.put(percentileKey(percentiles[index]), values[index]);
+        }
+
+        JSONObject result = new JSONObject()
+            .put("requestsCount", totals.getRequestsCount())
+            .put("failuresCount", totals.getFailuresCount())
+            .put("averageResponseTime", totals.getAverageResponseTime())
+            .put("minResponseTime", responseTimes.getMinValue())
+            .put("maxResponseTime", responseTimes.getMaxValue())
+            .put("percentiles", percentilesJSON)
+            .put("responseTimes", responseTimes.toValuesJSONArray())
+            .put("passedResponseTimes", totals.getPassedResponseTimes().toValuesJSONArray());
+        // Corrected distribution is only included if coordinated omission correction took place
+        if (totals.hasCorrections()) {
+            LatencyHistogram correctedResponseTimes = totals.getCorrectedResponseTimes();
+            long[] correctedValues = correctedResponseTimes.getValuesAtPercentiles(percentiles);
+            JSONObject correctedPercentilesJSON = new JSONObject();
+            for (int index = 0; index < percentiles.length; index++) {
+                correctedPercentilesJSON.put(percentileKey(percentiles[index]), correctedValues[index]);
+            }
+            result
+                .put("correctedMinResponseTime", correctedResponseTimes.getMinValue())
+                .put("correctedMaxResponseTime", correctedResponseTimes.getMaxValue())
+                .put("correctedPercentiles", correctedPercentilesJSON)
+                .put("correctedResponseTimes", correctedResponseTimes.toValuesJSONArray());
+        }
+
+        return result;
+    }
+
+    /**
+     * @param percentile    - Percentile value
+     * @return              - Percentile name, used as a key in the report - i.e. "99" or "99.9"
+     */
+    public static String percentileKey(double percentile) {
+        return BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString();
+    }
+}
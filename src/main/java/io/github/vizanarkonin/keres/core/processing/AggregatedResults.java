@@ -0,0 +1,252 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntUnaryOperator;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import io.github.vizanarkonin.keres.core.grpc.ResultsBatch;
+import io.github.vizanarkonin.keres.core.grpc.ResultsBucket;
+import io.github.vizanarkonin.keres.core.grpc.ResultsFailure;
+
+/**
+ * Histogram-backed results storage. Holds aggregated request logs (per request key) and failure entries.
+ * Memory footprint depends on the amount of request keys and run duration, not on the amount of requests made.
+ * Used both by the runner (collecting own results) and by the hub (merging results received from nodes).
+ * Failure messages are not stored here - failure entries refer to them by id in the shared FailureMessageDictionary.
+ */
+public class AggregatedResults {
+    private final FailureMessageDictionary                          failureMessages;
+    private final ConcurrentHashMap<String, AggregatedRequestLog>   requestLogs     = new ConcurrentHashMap<>();
+    // Key is a failure name in format "{requestKey} -- Code {code} -- Cause: '{message}'"
+    private final ConcurrentHashMap<String, FailureEntry>           failures        = new ConcurrentHashMap<>();
+
+    public AggregatedResults(FailureMessageDictionary failureMessages) {
+        this.failureMessages = failureMessages;
+    }
+
+    public void record(String key, long startTime, long responseTime, boolean failed, int responseCode, int failureMessageId) {
+        record(key, startTime, responseTime, failed, responseCode, failureMessageId, responseTime, 0);
+    }
+
+    /**
+     * Records a response, along with it's coordinated omission corrected response time.
+     * @param correctedResponseTime - Response time, measured from the intended start time
+     * @param expectedInterval      - Expected interval between requests of a closed-loop user. 0 disables the interval correction
+     */
+    public void record(String key, long startTime, long responseTime, boolean failed, int responseCode, int failureMessageId, long correctedResponseTime, long expectedInterval) {
+        requestLogs
+            .computeIfAbsent(key, AggregatedRequestLog::new)
+                .record(startTime, responseTime, failed, responseCode, correctedResponseTime, expectedInterval);
+
+        if (failed) {
+            recordFailure(key, responseCode, failureMessageId, 1);
+        }
+    }
+
+    /**
+     * Same as above, but with already resolved request log - used by collection thread, which caches request logs by key id.
+     * @param requestLog    - Request log, obtained from getOrCreateRequestLog()
+     */
+    public void record(AggregatedRequestLog requestLog, long startTime, long responseTime, boolean failed, int responseCode, int failureMessageId, long correctedResponseTime, long expectedInterval) {
+        requestLog.record(startTime, responseTime, failed, responseCode, correctedResponseTime, expectedInterval);
+
+        if (failed) {
+            recordFailure(requestLog.getName(), responseCode, failureMessageId, 1);
+        }
+    }
+
+    public void recordFailure(String key, int responseCode, int failureMessageId, long occurrences) {
+        String failureMessage = failureMessages.get(failureMessageId);
+        String message = failureMessage.length() > 200 ? failureMessage.substring(0, 200) + "..." : failureMessage;
+        String failureKey = String.format("%s -- Code %d -- Cause: '%s'", key, responseCode, message);
+
+        FailureEntry entry = failures.computeIfAbsent(failureKey, name -> new FailureEntry(name, responseCode, failureMessageId));
+        synchronized (entry) {
+            entry.logFailures(occurrences);
+        }
+    }
+
+    /**
+     * Merges results with the same failure messages dictionary into this one.
+     * @param other - Results to merge
+     */
+    public void merge(AggregatedResults other) {
+        other.requestLogs.forEach((key, log) -> requestLogs.computeIfAbsent(key, AggregatedRequestLog::new).merge(log));
+        other.failures.forEach((key, entry) -> {
+            FailureEntry target = failures.computeIfAbsent(key, name -> new FailureEntry(name, entry.getResponseCode(), entry.getResponseId()));
+            synchronized (target) {
+                target.logFailures(entry.getOccurrencesCount());
+            }
+        });
+    }
+
+    public AggregatedRequestLog getRequestLog(String key) {
+        return requestLogs.get(key);
+    }
+
+    public AggregatedRequestLog getOrCreateRequestLog(String key) {
+        return requestLogs.computeIfAbsent(key, AggregatedRequestLog::new);
+    }
+
+    public ConcurrentHashMap<String, AggregatedRequestLog> getRequestLogs() {
+        return requestLogs;
+    }
+
+    public ConcurrentHashMap<String, FailureEntry> getFailures() {
+        return failures;
+    }
+
+    public boolean isEmpty() {
+        return requestLogs.values().stream().allMatch(AggregatedRequestLog::isEmpty);
+    }
+
+    public void clear() {
+        requestLogs.clear();
+        failures.clear();
+    }
+
+    /**
+     * @return - Earliest bucket time stamp across all request keys, or 0 if there is no data
+     */
+    public long getFirstTimeStamp() {
+        return requestLogs
+            .values()
+            .stream()
+                .filter(log -> !log.isEmpty())
+                .mapToLong(AggregatedRequestLog::getFirstTimeStamp)
+                .min()
+                .orElse(0);
+    }
+
+    /**
+     * @return - Latest bucket time stamp across all request keys, or 0 if there is no data
+     */
+    public long getLastTimeStamp() {
+        return requestLogs
+            .values()
+            .stream()
+                .filter(log -> !log.isEmpty())
+                .mapToLong(AggregatedRequestLog::getLastTimeStamp)
+                .max()
+                .orElse(0);
+    }
+
+    public JSONObject toJSON() {
+        JSONObject logs = new JSONObject();
+        requestLogs.forEach((key, log) -> logs.put(key, log.toJSON()));
+
+        List<FailureEntry> failureEntries = new ArrayList<>(failures.values());
+
+        return new JSONObject()
+            .put("requests", logs)
+            .put("failures", new JSONArray(failureEntries));
+    }
+
+    /**
+     * Restores results, received from a node.
+     * @param input             - Serialized results
+     * @param failureMessages   - Dictionary to register failure messages in
+     * @param messageIdMapper   - Maps node's failure message ids into ids of given dictionary
+     * @return                  - Restored results
+     */
+    public static AggregatedResults fromJSON(JSONObject input, FailureMessageDictionary failureMessages, IntUnaryOperator messageIdMapper) {
+        AggregatedResults results = new AggregatedResults(failureMessages);
+
+        JSONObject logs = input.getJSONObject("requests");
+        logs.keySet().forEach(key -> results.requestLogs.put(key, AggregatedRequestLog.fromJSON(key, logs.getJSONArray(key))));
+
+        JSONArray failureEntries = input.getJSONArray("failures");
+        for (int index = 0; index < failureEntries.length(); index++) {
+            JSONObject entry = failureEntries.getJSONObject(index);
+            // Older nodes send the message itself instead of it's id
+            int responseId = entry.has("responseId") ?
+                messageIdMapper.applyAsInt(entry.getInt("responseId")) :
+                failureMessages.idFor(entry.optString("response", ""));
+            FailureEntry failure = new FailureEntry(entry.getString("name"), entry.getInt("responseCode"), responseId);
+            failure.logFailures(entry.getLong("occurrencesCount"));
+            results.failures.put(failure.getName(), failure);
+        }
+
+        return results;
+    }
+
+    /**
+     * Adds buckets and failures to a results batch. Request keys are interned into the batch keys list.
+     * @param batch     - Batch builder to add the data to
+     * @param keyIndex  - Index of the keys, already present in the batch. Updated with the new ones
+     */
+    public void toProto(ResultsBatch.Builder batch, HashMap<String, Integer> keyIndex) {
+        requestLogs.forEach((key, log) -> {
+            int index = internKey(batch, keyIndex, key);
+            long previousTimeStamp = 0;
+            for (AggregatedBucket bucket : log.getBuckets()) {
+                batch.addBuckets(bucket
+                    .toProto()
+                        .setKeyIndex(index)
+                        .setTimeStampDelta(bucket.getTimeStamp() - previousTimeStamp));
+                previousTimeStamp = bucket.getTimeStamp();
+            }
+        });
+
+        failures.values().forEach(entry -> {
+            // Failure name always starts with the request key
+            String key = entry.getName().substring(0, entry.getName().indexOf(" -- Code "));
+            batch.addFailures(ResultsFailure.newBuilder()
+                .setKeyIndex(internKey(batch, keyIndex, key))
+                .setResponseCode(entry.getResponseCode())
+                .setMessageId(entry.getResponseId())
+                .setOccurrencesCount(entry.getOccurrencesCount()));
+        });
+    }
+
+    /**
+     * Restores results, received from a node in a typed batch.
+     * @param input             - Results batch
+     * @param failureMessages   - Dictionary to register failure messages in
+     * @param messageIdMapper   - Maps node's failure message ids into ids of given dictionary
+     * @return                  - Restored results
+     */
+    public static AggregatedResults fromProto(ResultsBatch input, FailureMessageDictionary failureMessages, IntUnaryOperator messageIdMapper) {
+        AggregatedResults results = new AggregatedResults(failureMessages);
+
+        HashMap<Integer, List<AggregatedBucket>> buckets = new HashMap<>();
+        int previousKeyIndex = -1;
+        long timeStamp = 0;
+        for (ResultsBucket bucket : input.getBucketsList()) {
+            if (bucket.getKeyIndex() != previousKeyIndex) {
+                previousKeyIndex = bucket.getKeyIndex();
+                timeStamp = 0;
+            }
+            timeStamp += bucket.getTimeStampDelta();
+            buckets
+                .computeIfAbsent(bucket.getKeyIndex(), index -> new ArrayList<>())
+                    .add(AggregatedBucket.fromProto(timeStamp, bucket));
+        }
+        buckets.forEach((index, keyBuckets) -> {
+            String key = input.getKeys(index);
+            results.requestLogs.put(key, AggregatedRequestLog.fromBuckets(key, keyBuckets));
+        });
+
+        for (ResultsFailure failure : input.getFailuresList()) {
+            results.recordFailure(
+                input.getKeys(failure.getKeyIndex()),
+                failure.getResponseCode(),
+                messageIdMapper.applyAsInt(failure.getMessageId()),
+                failure.getOccurrencesCount());
+        }
+
+        return results;
+    }
+
+    public static int internKey(ResultsBatch.Builder batch, HashMap<String, Integer> keyIndex, String key) {
+        return keyIndex.computeIfAbsent(key, name -> {
+            batch.addKeys(name);
+            return batch.getKeysCount() - 1;
+        });
+    }
+}
@@ -0,0 +1,79 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import io.github.vizanarkonin.keres.core.grpc.ResultsCheckpoint;
+
+/**
+ * Reads and writes results checkpoints - periodic snapshots of the aggregated run state (see ResultsCheckpoint in Erebus.proto).
+ * Snapshot is written into a temporary file, flushed to disk and then moved over the previous one, so the checkpoint on disk
+ * is always complete - even if the process is killed in the middle of writing it.
+ */
+public class CheckpointFile {
+    public static final String      EXTENSION       = ".ckpt";
+    private static final int        BUFFER_SIZE     = 1 << 16;
+
+    private CheckpointFile() {}
+
+    public static void write(Path path, ResultsCheckpoint checkpoint) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream output = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            checkpoint.writeTo(output);
+            output.flush();
+            channel.force(true);
+        }
+
+        try {
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static ResultsCheckpoint read(Path path) throws IOException {
+        try (InputStream input = Files.newInputStream(resolve(path))) {
+            return ResultsCheckpoint.parseFrom(input);
+        }
+    }
+
+    /**
+     * @param path  - Checkpoint file, or a folder with checkpoint files (i.e. {resultsFolder}/checkpoints)
+     * @return      - Given file, or the most recently modified checkpoint in given folder
+     */
+    public static Path resolve(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return path;
+        }
+
+        try (Stream<Path> files = Files.list(path)) {
+            Optional<Path> latest = files
+                .filter(file -> file.getFileName().toString().endsWith(EXTENSION))
+                .max(Comparator.comparingLong(file -> file.toFile().lastModified()));
+            if (latest.isEmpty()) {
+                throw new IOException("No checkpoint files found in " + path);
+            }
+
+            return latest.get();
+        }
+    }
+
+    public static void delete(Path path) throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(path.resolveSibling(path.getFileName() + ".tmp"));
+    }
+}
@@ -5,26 +5,37 @@ import lombok.Setter;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
-import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import io.github.vizanarkonin.keres.core.grpc.RawSamples;
+import io.github.vizanarkonin.keres.core.grpc.ResultsCheckpoint;
+import io.github.vizanarkonin.keres.core.grpc.ResultsBatch;
 import io.github.vizanarkonin.keres.core.grpc.RunLogRequest;
 import io.github.vizanarkonin.keres.KeresController;
 import io.github.vizanarkonin.keres.core.executors.KeresUser;
 import io.github.vizanarkonin.keres.core.grpc.KeresGrpcClient;
+import io.github.vizanarkonin.keres.core.grpc.ResultsStreamer;
 import io.github.vizanarkonin.keres.core.processing.ResultLog.LogEntry;
 import io.github.vizanarkonin.keres.core.utils.KeresFileUtils;
 import io.github.vizanarkonin.keres.core.utils.KeresMode;
@@ -37,10 +48,37 @@ import io.github.vizanarkonin.keres.core.utils.TimeUtils;
  */
 public class DataCollector {
     private static final Logger                                     log                         = LogManager.getLogger("DataCollector");
+    public static final int                                         DEFAULT_BUFFER_CAPACITY     = 1 << 16;
+    // Maximum amount of responses processed by collection thread in one go
+    private static final int                                        DRAIN_BATCH_SIZE            = 4096;
+    // Maximum amount of raw samples in a single push() statement of results file
+    private static final int                                        RAW_SAMPLES_CHUNK_SIZE      = 1000;
+    // Default interval between results checkpoints, in seconds
+    public static final int                                         DEFAULT_CHECKPOINT_INTERVAL = 60;
+    // Maximum time to wait for the queued results batches to be delivered to the hub on stop
+    private static final Duration                                   RESULTS_FLUSH_TIMEOUT       = Duration.ofMinutes(1);
+    // Response time percentiles, precomputed for each request key and each second of the run
+    public static final double[]                                    REPORT_PERCENTILES          = { 50, 90, 99, 99.9 };
+    // Default percentiles of the report's response times table. Table always has 5 of them
+    public static final double[]                                    DEFAULT_TABLE_PERCENTILES   = { 50, 60, 75, 85, 95 };
+    // Raw (or sampled) responses are kept in a separate file of the report, so the viewer only loads them on demand
+    public static final String                                      REQUESTS_LOG_FILE           = "requests_log.js";
+    // Maximum amount of points per time series, embedded into the report. Longer runs embed a coarser resolution
+    public static final int                                         REPORT_SERIES_MAX_POINTS    = 1800;
+    // Finer resolutions are written into separate files, each holding up to this amount of points
+    public static final int                                         REPORT_SERIES_CHUNK_POINTS  = 3600;
+    private static final String                                     REPORT_SERIES_FOLDER        = "series";
+    // Series and full summary of each request key are kept in separate files of this folder, loaded by the viewer on demand
+    private static final String                                     REPORT_KEYS_FOLDER          = "keys";
+    // Default bind address of the embedded HTTP servers
+    public static final String                                      LOOPBACK_ADDRESS            = "127.0.0.1";
+    // Rolling windows (in seconds) and percentiles, printed with the live statistics
+    public static final int[]                                       LIVE_WINDOWS                = { 1, 10, 60 };
+    public static final double[]                                    LIVE_PERCENTILES            = { 50, 95, 99 };
     // Used for standalone mode
     private static DataCollector                                    staticInstance;
     private static HashMap<String, DataCollector>                   instances                   = new HashMap<>();                 
-    @Setter
+    @Getter @Setter
     private String                                                  resultsFolder               = "KeresResults";
     @Setter
     private String                                                  testId                      = "";
@@ -49,26 +87,138 @@ public class DataCollector {
     @Getter @Setter
     private String                                                  runUUID                     = "";
     private Thread                                                  statusMonitor;
-    private boolean                                                 monitorIsRunning;
-    private ConcurrentLinkedQueue<Response>                         resultsCollector            = new ConcurrentLinkedQueue<>();
-    private Thread                                                  resultsCollectionThread;
-    private boolean                                                 collectionThreadIsRunning;
+    private volatile boolean                                        monitorIsRunning;
+    /**
+     * Ingestion buffer. User threads publish responses into it, and collection thread drains them in batches.
+     * Capacity and overflow policy are applied on the next start() call.
+     */
+    private volatile ResponseRingBuffer                             resultsBuffer               = new ResponseRingBuffer(DEFAULT_BUFFER_CAPACITY);
+    @Getter @Setter
+    private int                                                     bufferCapacity              = DEFAULT_BUFFER_CAPACITY;
+    @Getter @Setter
+    private OverflowPolicy                                          overflowPolicy              = OverflowPolicy.BLOCK;
+    private final LongAdder                                         droppedResponsesCount       = new LongAdder();
+    private volatile Thread                                         resultsCollectionThread;
+    private volatile boolean                                        collectionThreadIsRunning;
     private int                                                     runTimeInSeconds            = 0;
 
     private ArrayList<ResultLog.LogEntry>                           usersOverTimeStatistics     = new ArrayList<>();
+    // Failure messages are stored once, everything else refers to them by id
+    private final FailureMessageDictionary                          failureMessages             = new FailureMessageDictionary();
+    /**
+     * Main data storage - per-second histograms and counters for each request key.
+     * Used for console statistics, report generation and results merging on hub side.
+     */
+    @Getter
+    private AggregatedResults                                       aggregatedResults           = new AggregatedResults(failureMessages);
+    // Live statistics over the last minute, per request key. Updated at ingest time, so printing them doesn't depend on run duration
+    @Getter
+    private final ConcurrentHashMap<String, RollingStatistics>      rollingStatistics           = new ConcurrentHashMap<>();
+    // Port of the embedded OpenMetrics endpoint. 0 (default) disables it. Applied on the next start() call
+    @Getter @Setter
+    private int                                                     metricsPort                 = 0;
+    // Address the OpenMetrics endpoint is bound to. Loopback by default - so run data isn't exposed to the network unless asked for
+    @Getter @Setter
+    private String                                                  metricsBindAddress          = LOOPBACK_ADDRESS;
+    private MetricsServer                                           metricsServer;
+    // Port of the embedded live dashboard. 0 (default) disables it. Only used in standalone mode, applied on the next start() call
+    @Getter @Setter
+    private int                                                     dashboardPort               = 0;
+    // Address the live dashboard is bound to. Loopback by default - so run data is only served to the local browser
+    @Getter @Setter
+    private String                                                  dashboardBindAddress        = LOOPBACK_ADDRESS;
+    private LiveDashboardServer                                     dashboardServer;
+    // Results collected since the last submission to the hub. Only used in NODE mode
+    private AggregatedResults                                       pendingResults              = new AggregatedResults(failureMessages);
+    private final Object                                            pendingResultsLock          = new Object();
+    // Amount of failure messages already submitted to the hub. Only used in NODE mode
+    private int                                                     submittedFailureMessages    = 0;
+    // Hub side - maps failure message ids of each node into the ids of own dictionary. Key is a node id
+    private HashMap<String, HashMap<Integer, Integer>>              nodeFailureMessageIds       = new HashMap<>();
+    /**
+     * Delivers results batches to the hub in background, buffering them while hub is slow or unreachable. Only used in NODE mode.
+     * Buffer size is applied on the next start() call.
+     */
+    private ResultsStreamer                                         resultsStreamer;
+    @Getter @Setter
+    private int                                                     maxBufferedResultBatches    = ResultsStreamer.DEFAULT_MAX_BUFFERED_BATCHES;
+    // Sequence number of the last results batch queued for submission. Only used in NODE mode
+    private long                                                    submittedBatchesCount       = 0;
+    // Hub side - sequence number of the last processed batch of each node. Re-sent batches are skipped. Key is a node id
+    private HashMap<String, Long>                                   nodeBatchSequences          = new HashMap<>();
     /**
-     * Main data storage.
-     * Key is a request name in format ({methodName}){name}
-     * Value is an array of objects (we're using it instead of custom type to truncate resulting JSON)
-     * 0 - request start timestamp
-     * 1 - request finish timestamp
-     * 2 - total response time
-     * 3 - failure status (true - failed, false - passed)
-     * 4 - response code
-     * 5 - if failed - response body
+     * Raw samples storage. Every sample is appended to an on-disk binary journal, so heap only holds the aggregates.
+     * Journal is only written if raw samples are read back (see journalRequired()), and is removed once the report is generated,
+     * unless keepJournal flag is set - i.e. after a crash it stays in place.
+     * Appended on collection thread, read on status monitor thread - it's closed and replaced under journalLock only, so a read never sees it closed midway.
      */
-    private ConcurrentHashMap<String, ArrayList<Object[]>>          requestsLog                 = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<String, ArrayList<Object[]>>          accumulatedRequestsLog      = new ConcurrentHashMap<>();
+    private volatile ResultsJournal                                 journal;
+    private final Object                                            journalLock                 = new Object();
+    @Getter @Setter
+    private boolean                                                 journalEnabled              = true;
+    @Getter @Setter
+    private boolean                                                 keepJournal                 = false;
+    @Getter @Setter
+    private long                                                    journalSegmentSize          = ResultsJournal.DEFAULT_SEGMENT_SIZE;
+    // Index of the first journal record not yet submitted to the hub. Only used in NODE mode
+    private long                                                    submittedJournalPosition    = 0;
+    // If set - raw samples are read back from the journal into the report (requests_log section) and hub submissions
+    @Getter @Setter
+    private boolean                                                 retainRawSamples            = false;
+    // Bounded random sample of raw responses per request key. Feeds requests_log section, unless all raw samples are retained
+    private final ConcurrentHashMap<String, RawSamplesReservoir>    rawSamplesReservoirs        = new ConcurrentHashMap<>();
+    // Maximum amount of sampled responses per time window of each key. 0 disables sampling. Applied on the next start() call
+    @Getter @Setter
+    private int                                                     rawSamplesPerWindow         = RawSamplesReservoir.DEFAULT_SAMPLES_PER_WINDOW;
+    // Maximum amount of sampling windows per key - once exceeded, windows are merged pairwise. Applied on the next start() call
+    @Getter @Setter
+    private int                                                     maxRawSamplesWindows        = RawSamplesReservoir.DEFAULT_MAX_WINDOWS;
+    // SLO rules, evaluated every second over the rolling statistics. Applied on the next start() call
+    @Getter
+    private final List<SloRule>                                     sloRules                    = new CopyOnWriteArrayList<>();
+    // Rules of the current run - a snapshot, taken on start, so adding or removing a rule mid-run doesn't mix up the verdicts
+    private volatile List<SloRule>                                  activeSloRules              = List.of();
+    // Verdicts of the current run, one per active rule (in the same order). Reset on start, kept after stop - so they can be checked by the caller
+    private volatile List<SloVerdict>                               sloVerdicts                 = new ArrayList<>();
+    // Hub side - latest verdicts, received from each node (on gRPC threads). Key is a node id
+    private final ConcurrentHashMap<String, List<SloVerdict>>       nodeSloVerdicts             = new ConcurrentHashMap<>();
+    // Set once a rule with FAIL_RUN or ABORT action is breached (on hub side - once such a verdict is received from a node)
+    @Getter
+    private volatile boolean                                        runFailed                   = false;
+    // Per-key storages of the current run, indexed by MetricKeys id. Only used by collection thread, reset with the results.
+    // Other threads only replace it while collection thread is not running (it's started after and joined before that) - otherwise they
+    // mark it as stale, and collection thread drops it before the next batch
+    private KeyStorages[]                                           keyStorages                 = new KeyStorages[0];
+    private volatile boolean                                        keyStoragesStale            = false;
+    // What a node submits to the hub. Applied on the next start() call
+    @Getter @Setter
+    private NodeResultsMode                                         nodeResultsMode             = NodeResultsMode.AGGREGATED;
+    private volatile NodeResultsMode                                activeNodeResultsMode       = NodeResultsMode.AGGREGATED;
+    /**
+     * Expected interval (in ms) between requests of a closed-loop user without pacing. If set - responses, which took longer than
+     * 2 intervals, are also recorded with synthetic corrected samples for the requests that would have been sent in the meantime.
+     * 0 (default) disables it. Scheduled requests (paced or open model users) are always corrected against their intended start time.
+     */
+    @Getter @Setter
+    private long                                                    expectedRequestInterval     = 0;
+    /**
+     * Interval (in seconds) between checkpoints of the aggregated results in standalone mode. 0 disables them. Applied on the next start() call.
+     * Checkpoint is removed once the report is generated - if the process dies before that, report can be recovered from it with recoverReport().
+     */
+    @Getter @Setter
+    private int                                                     checkpointInterval          = DEFAULT_CHECKPOINT_INTERVAL;
+    // Interval of the current run - copied on start(), so changing the setting mid-run doesn't affect it
+    private volatile int                                            activeCheckpointInterval    = 0;
+    private Path                                                    checkpointPath;
+    // Percentiles of the report's response times table. Precomputed for each key and the totals - other ones are calculated by the viewer
+    @Getter
+    private double[]                                                tablePercentiles            = DEFAULT_TABLE_PERCENTILES.clone();
+    // Whether to gzip per-key files of the report. Compressed files can only be loaded by the viewer if the report is served over HTTP
+    @Getter @Setter
+    private boolean                                                 compressReportKeyFiles      = false;
+    // Amount of threads, used for report generation. Defaults to the amount of available processors
+    @Getter @Setter
+    private int                                                     reportParallelism           = Runtime.getRuntime().availableProcessors();
 
     static Runtime rt       = Runtime.getRuntime();
     static long prevTotal   = 0;
@@ -91,28 +241,96 @@ public class DataCollector {
     }
 
     public void dropLogResults() {
-        requestsLog.clear();
-        accumulatedRequestsLog.clear();
+        aggregatedResults.clear();
+        rollingStatistics.clear();
+        rawSamplesReservoirs.clear();
+        Thread collectionThread = resultsCollectionThread;
+        if (collectionThread == null || !collectionThread.isAlive()) {
+            keyStorages = new KeyStorages[0];
+        } else {
+            keyStoragesStale = true;
+        }
+        synchronized (pendingResultsLock) {
+            pendingResults = new AggregatedResults(failureMessages);
+        }
+        failureMessages.clear();
+        submittedFailureMessages = 0;
+        nodeFailureMessageIds.clear();
+        submittedBatchesCount = 0;
+        nodeBatchSequences.clear();
         runTimeInSeconds = 0;
     }
 
     public void logResponse(Response response) {
-        resultsCollector.add(response);
+        // Called from the user thread - so it's schedule is the one the request belongs to
+        if (response.getScheduleDelay() < 0) {
+            response.setScheduleDelay(KeresUser.getCurrentScheduleDelay());
+        }
+        if (resultsBuffer.offer(response)) {
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case BLOCK:
+                // Only waiting while there's a collection thread to free up a slot - otherwise the caller would be parked forever
+                if (!resultsBuffer.put(response, this::isCollectionThreadAlive)) {
+                    droppedResponsesCount.increment();
+                }
+                break;
+            case DROP:
+                droppedResponsesCount.increment();
+                break;
+        }
     }
 
     public void start(String testId, String testDescription) {
         setTestId(testId);
         setTestDescription(testDescription);
         dropLogResults();
+        resetSloVerdicts();
+        resultsBuffer = new ResponseRingBuffer(bufferCapacity);
+        openJournal(TimeUtils.getCurrentDateTimeString() + "-" + testId);
+        droppedResponsesCount.reset();
+        if (metricsPort > 0) {
+            try {
+                metricsServer = new MetricsServer(this, metricsBindAddress, metricsPort).start();
+            } catch (IOException e) {
+                log.error("Failed to start metrics endpoint on port " + metricsPort);
+                log.error(e);
+                log.error(ExceptionUtils.getStackTrace(e));
+            }
+        }
+        if (dashboardPort > 0 && KeresController.getMode() == KeresMode.STANDALONE) {
+            try {
+                dashboardServer = new LiveDashboardServer(this, dashboardBindAddress, dashboardPort).start();
+            } catch (IOException e) {
+                log.error("Failed to start live dashboard on port " + dashboardPort);
+                log.error(e);
+                log.error(ExceptionUtils.getStackTrace(e));
+            }
+        }
+        activeNodeResultsMode = nodeResultsMode;
+        if (activeNodeResultsMode == NodeResultsMode.RAW && journal == null) {
+            log.warn("Raw results mode requires results journal, which is disabled. Falling back to aggregated results mode");
+            activeNodeResultsMode = NodeResultsMode.AGGREGATED;
+        }
+        activeCheckpointInterval = checkpointInterval;
+        checkpointPath = KeresController.getMode() == KeresMode.STANDALONE && activeCheckpointInterval > 0 ?
+            Paths.get(resultsFolder, "checkpoints", (TimeUtils.getCurrentDateTimeString() + "-" + testId).replaceAll(" ", "_") + CheckpointFile.EXTENSION) :
+            null;
+        if (KeresController.getMode() == KeresMode.NODE) {
+            Path spillFile = Paths.get(resultsFolder, "spill", (TimeUtils.getCurrentDateTimeString() + "-" + testId).replaceAll(" ", "_") + ".bin");
+            resultsStreamer = new ResultsStreamer(KeresGrpcClient.get(), spillFile, maxBufferedResultBatches);
+            resultsStreamer.start();
+        }
+
         monitorIsRunning = true;
         statusMonitor = new Thread() {
             @Override
             public void run() {
-                while (monitorIsRunning || resultsCollector.size() > 0) {
+                while (monitorIsRunning || getQueueDepth() > 0) {
                     tickResults();
                 }
-
-                collectionThreadIsRunning = false;
             }
         };
         statusMonitor.start();
@@ -121,62 +339,135 @@ public class DataCollector {
         resultsCollectionThread = new Thread() {
             @Override
             public void run() {
-                while (collectionThreadIsRunning) {
-                    if (resultsCollector.size() > 0) {
-                        try {
-                            Response response = resultsCollector.remove();
-                            String key = String.format("(%s)%s", response.getRequestMethod(), response.getRequestName());
-
-                            if(!requestsLog.containsKey(key)) {
-                                requestsLog.put(key, new ArrayList<>());
-                            }
-                            if(!accumulatedRequestsLog.containsKey(key)) {
-                                accumulatedRequestsLog.put(key, new ArrayList<>());
-                            }
-
-                            Object[] entry = new Object[] {
-                                response.getStartTime(),
-                                response.getFinishTime(),
-                                response.getResponseTime(),
-                                response.isFailed() ? true : false,
-                                response.getResponseCode(),
-                                response.isFailed() ? 
-                                    response.getResponseContent().isEmpty() ?
-                                        response.getFailureCause() == null ?
-                                            "" :
-                                            response.getFailureCause() :
-                                        response.getResponseContent()
-                                    : ""
-                            };
-
-                            requestsLog
-                                .get(key)
-                                    .add(entry);
-                            accumulatedRequestsLog
-                                .get(key)
-                                    .add(entry);
-                        } catch (Exception e) {
-                            System.out.println(e);
-                            log.info(e);
+                ArrayList<Response> batch = new ArrayList<>(DRAIN_BATCH_SIZE);
+                while (true) {
+                    resultsBuffer.drain(batch::add, DRAIN_BATCH_SIZE);
+                    if (batch.isEmpty()) {
+                        // Stop flag is only checked once there's nothing left - queue depth drops to 0 before the last batch is ingested
+                        if (!collectionThreadIsRunning) {
+                            break;
                         }
+                        // Thread goes into busy-wait loop if we don't put a delay in here, hence why we got 1ms thread sleep when idle
+                        TimeUtils.waitFor(TimeUtils.ONE_MS);
+                        continue;
+                    }
+
+                    try {
+                        ingestBatch(batch);
+                    } catch (Exception e) {
+                        log.error(e);
+                        log.error(ExceptionUtils.getStackTrace(e));
                     }
-                    // Thread goes into busy-wait loop if we don't put a delay in here, hence why we got 1ms thread sleep
-                    TimeUtils.waitFor(TimeUtils.ONE_MS);
+                    batch.clear();
                 }
             }
         };
         resultsCollectionThread.start();
     }
 
+    /**
+     * Records a batch of responses into the storages. Only called by collection thread.
+     * @param batch - Responses to record
+     */
+    private void ingestBatch(List<Response> batch) {
+        // In raw results mode hub aggregates the samples on it's own
+        boolean isNode = KeresController.getMode() == KeresMode.NODE && activeNodeResultsMode == NodeResultsMode.AGGREGATED;
+        if (keyStoragesStale) {
+            keyStoragesStale = false;
+            keyStorages = new KeyStorages[0];
+        }
+        String[] keys = new String[batch.size()];
+        int[] failureMessageIds = new int[batch.size()];
+        long[] correctedResponseTimes = new long[batch.size()];
+        long[] expectedIntervals = new long[batch.size()];
+
+        for (int index = 0; index < batch.size(); index++) {
+            Response response = batch.get(index);
+            // Key id is normally resolved by the request definition - lookup is only needed for responses built by hand
+            int keyId = response.getMetricKeyId() != MetricKeys.NO_KEY ?
+                response.getMetricKeyId() :
+                MetricKeys.idFor(response.getRequestMethod(), response.getRequestName());
+            KeyStorages storages = storagesFor(keyId);
+            String key = storages.requestLog.getName();
+            String failureMessage = response.isFailed() ? 
+                response.getResponseContent().isEmpty() ?
+                    response.getFailureCause() == null ?
+                        "" :
+                        response.getFailureCause() :
+                    response.getResponseContent()
+                : "";
+            keys[index] = key;
+            int failureMessageId = response.isFailed() ? failureMessages.idFor(failureMessage) : FailureMessageDictionary.NO_MESSAGE;
+            failureMessageIds[index] = failureMessageId;
+            // Scheduled requests are measured from their intended start time, unscheduled ones - corrected by the expected interval
+            long scheduleDelay = response.getScheduleDelay();
+            correctedResponseTimes[index] = response.getResponseTime() + Math.max(0, scheduleDelay);
+            expectedIntervals[index] = scheduleDelay < 0 ? expectedRequestInterval : 0;
+
+            aggregatedResults.record(storages.requestLog, response.getStartTime(), response.getResponseTime(), response.isFailed(), response.getResponseCode(), failureMessageId,
+                correctedResponseTimes[index], expectedIntervals[index]);
+            storages.rollingStatistics.record(response.getStartTime() + response.getResponseTime(), response.getResponseTime(), response.isFailed());
+            appendToJournal(key, response.getStartTime(), response.getResponseTime(), response.getResponseCode(), response.isFailed(), failureMessageId);
+            if (storages.rawSamplesReservoir != null) {
+                storages.rawSamplesReservoir.record(response.getStartTime(), response.getResponseTime(), response.getResponseCode(), response.isFailed(), failureMessageId);
+            }
+        }
+
+        if (isNode) {
+            // Taking the lock once per batch instead of once per response
+            synchronized (pendingResultsLock) {
+                for (int index = 0; index < batch.size(); index++) {
+                    Response response = batch.get(index);
+                    pendingResults.record(keys[index], response.getStartTime(), response.getResponseTime(), response.isFailed(), response.getResponseCode(), failureMessageIds[index],
+                        correctedResponseTimes[index], expectedIntervals[index]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns storages of given key, resolving them on the first use. Only called by collection thread.
+     * @param keyId - Id from MetricKeys registry
+     * @return      - Storages of the key
+     */
+    private KeyStorages storagesFor(int keyId) {
+        if (keyId >= keyStorages.length) {
+            keyStorages = Arrays.copyOf(keyStorages, Math.max(keyId + 1, keyStorages.length * 2));
+        }
+
+        KeyStorages storages = keyStorages[keyId];
+        if (storages == null) {
+            String key = MetricKeys.get(keyId);
+            storages = new KeyStorages(
+                aggregatedResults.getOrCreateRequestLog(key),
+                rollingStatistics.computeIfAbsent(key, name -> new RollingStatistics()),
+                rawSamplesPerWindow > 0 ?
+                    rawSamplesReservoirs.computeIfAbsent(key, name -> new RawSamplesReservoir(name, rawSamplesPerWindow, maxRawSamplesWindows)) :
+                    null);
+            keyStorages[keyId] = storages;
+        }
+
+        return storages;
+    }
+
     public void startListening(String testId, String testDescription) {
         setRunUUID(UUID.randomUUID().toString());
         setTestId(testId);
         setTestDescription(testDescription);
+        dropLogResults();
+        resetSloVerdicts();
+        openJournal(runUUID);
     }
 
     private void tickResults() {
         TimeUtils.waitFor(TimeUtils.ONE_SECOND);
         printStatistics();
+        evaluateSloRules();
+        ResultsJournal currentJournal = journal;
+        if (currentJournal != null)
+            currentJournal.sync();
+        if (checkpointPath != null && activeCheckpointInterval > 0 && runTimeInSeconds % activeCheckpointInterval == 0)
+            writeCheckpoint();
         
         if (KeresController.getMode() == KeresMode.NODE)
             submitResultsToHub();
@@ -190,12 +481,34 @@ public class DataCollector {
         System.out.println("Stopping listener");
         monitorIsRunning = false;
         try { statusMonitor.join(); } catch (InterruptedException ignored) {}
+        // Everything that was reported has to be ingested before the results are checkpointed, reported or submitted
+        collectionThreadIsRunning = false;
+        try { resultsCollectionThread.join(); } catch (InterruptedException ignored) {}
+        printSloVerdicts();
+        // Dashboard is stopped before the report generation - so it tells the browser that the run is over
+        if (dashboardServer != null) {
+            dashboardServer.stop();
+            dashboardServer = null;
+        }
         if (KeresController.getMode() == KeresMode.STANDALONE) {
-            generateReport();
+            // Last checkpoint goes first - so running out of memory while generating the report doesn't lose the tail of the run
+            if (checkpointPath != null)
+                writeCheckpoint();
+            if (generateReport() != null)
+                deleteCheckpoint();
         } else if (KeresController.getMode() == KeresMode.NODE) {
             submitResultsToHub();
+            if (resultsStreamer != null) {
+                resultsStreamer.close(RESULTS_FLUSH_TIMEOUT);
+                resultsStreamer = null;
+            }
+        }
+        if (metricsServer != null) {
+            metricsServer.stop();
+            metricsServer = null;
         }
         
+        closeJournal();
         dropLogResults();
     }
 
@@ -206,20 +519,31 @@ public class DataCollector {
     public void stopListening(Path resultsFolder) {
         System.out.println("Stopping listener");
         generateReport(resultsFolder, false);
+        closeJournal();
         dropLogResults();
     }
 
-    public void generateReport() {
-        generateReport(Paths.get(resultsFolder), true);
+    public Path generateReport() {
+        return generateReport(Paths.get(resultsFolder), true);
     }
 
-    public void generateReport(Path resultsFolderRootPath, boolean createSubFolder) {
-        List<Long> timestamps = generateTimestampsList();
-        HashMap<String, ResultLog> averageResultsLog = generateAverageResultsMap(timestamps);
-        HashMap<String, FailureEntry> failuresLog = generateFailuresMap(timestamps);
-        ArrayList<ResultLog.LogEntry> currentUsersLog = generateActiveUsersGraph(timestamps);
+    /**
+     * Generates HTML report from the current results.
+     * Report is built as a set of tasks on a dedicated fork-join pool of reportParallelism threads - series of each request key, the summaries,
+     * active users graph, resource files, series chunk files, per-key files and raw samples file are all produced in parallel. The calling
+     * thread writes results.js meanwhile, starting with the sections that need no computation, and only waits for the computed sections
+     * once it gets to them.
+     * results.js only serves as an index - it holds the run totals, lightweight per-key summaries and the names of per-key files. Series and
+     * response times distributions of each key are written into it's own file, so the viewer only loads the keys that are expanded.
+     * @param resultsFolderRootPath - Folder to write the report into
+     * @param createSubFolder       - Whether to create a "{date}-{testId}" sub folder for the report
+     * @return                      - Report folder, or null if report generation has failed
+     */
+    public Path generateReport(Path resultsFolderRootPath, boolean createSubFolder) {
+        int seriesLevel = selectSeriesLevel();
+        List<Long> timestamps = generateTimestampsList(AggregatedRequestLog.RESOLUTIONS_MS[seriesLevel]);
 
-        try {
+        try (ForkJoinPool pool = new ForkJoinPool(Math.max(1, reportParallelism))) {
             Files.createDirectories(Paths.get(resultsFolder));
             Path targetPath;
             if (createSubFolder) {
@@ -229,57 +553,217 @@ public class DataCollector {
             } else {
                 targetPath = resultsFolderRootPath;
             }
-            
             Files.createDirectory(Paths.get(targetPath + "/res"));
-            // Copying over the reporter template and resources
-            for (String reporterFile : KeresFileUtils.reporterResourcesList) {
-                String resourceName = "report-viewer/" + reporterFile;
-                InputStream resourceStream = Thread.currentThread().getContextClassLoader().getResourceAsStream(resourceName);
-                KeresFileUtils.copyResource(resourceStream, targetPath + "/" + reporterFile);
-            }
-            PrintWriter resultsWriter = new PrintWriter(targetPath + "/results.js", "UTF-8");
-            resultsWriter.println("const test_id = '" + testId + "';");
-            resultsWriter.println("const test_description = '" + testDescription + "';");
-            resultsWriter.println("const timestamps = " + new JSONArray(timestamps).toString() + ";");
-            resultsWriter.println("const users_timeline = " + new JSONArray(currentUsersLog).toString() + ";");
-            resultsWriter.println("const requests_averages_data = " + new JSONObject(averageResultsLog).toString() + ";");
-            resultsWriter.println("const failures = " + new JSONObject(failuresLog).toString() + ";");
-            resultsWriter.println("const requests_log = " + new JSONObject(requestsLog).toString() + ";");
-            resultsWriter.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+
+            // Parallel streams, started from within the pool tasks, run on the same pool
+            CompletableFuture<HashMap<String, ResultLog>> averageResultsTask = CompletableFuture.supplyAsync(
+                () -> generateAverageResultsMap(timestamps, seriesLevel), pool);
+            double[] summaryPercentiles = getSummaryPercentiles();
+            CompletableFuture<LinkedHashMap<String, JSONObject>> summariesTask = CompletableFuture.supplyAsync(() -> generateSummaries(summaryPercentiles), pool);
+            CompletableFuture<String> summaryTotalTask = CompletableFuture.supplyAsync(() -> generateSummaryTotal(summaryPercentiles), pool);
+            CompletableFuture<String> requestsDistributionTask = CompletableFuture.supplyAsync(this::generateRequestsDistribution, pool);
+            CompletableFuture<List<String>> keyFilesTask = averageResultsTask.thenCombineAsync(summariesTask,
+                (averageResults, summaries) -> writeKeyFiles(targetPath, averageResults, summaries), pool);
+            CompletableFuture<Long> requestsLogTask = CompletableFuture.supplyAsync(() -> writeRequestsLogFile(targetPath), pool);
+            CompletableFuture<List<ResultLog.LogEntry>> usersPerSecondTask = CompletableFuture.supplyAsync(
+                () -> generateActiveUsersGraph(generateTimestampsList(AggregatedRequestLog.BUCKET_SIZE_MS)), pool);
+            CompletableFuture<List<ResultLog.LogEntry>> currentUsersTask = usersPerSecondTask.thenApplyAsync(
+                usersPerSecond -> seriesLevel == 0 ? usersPerSecond : rollUpUsersGraph(usersPerSecond, timestamps), pool);
+            CompletableFuture<JSONArray> seriesLevelsTask = usersPerSecondTask.thenApplyAsync(
+                usersPerSecond -> writeSeriesChunks(targetPath, seriesLevel, usersPerSecond), pool);
+            // Copying over the reporter template and resources. Pool threads don't necessarily share the context class loader of the caller
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            CompletableFuture<Void> resourcesTask = CompletableFuture.runAsync(() -> copyReporterResources(targetPath, classLoader), pool);
+
+            try (ResultsFileWriter resultsWriter = new ResultsFileWriter(Paths.get(targetPath + "/results.js"))) {
+                resultsWriter.writeConst("test_id", JSONObject.quote(testId));
+                resultsWriter.writeConst("test_description", JSONObject.quote(testDescription));
+                writeTimestamps(resultsWriter, timestamps);
+                resultsWriter.writeConst("series_resolution", String.valueOf(AggregatedRequestLog.RESOLUTIONS_MS[seriesLevel]));
+                resultsWriter.writeConst("run_time_frame", aggregatedResults.isEmpty() ?
+                    "[]" :
+                    new JSONArray()
+                        .put(aggregatedResults.getFirstTimeStamp())
+                        .put(aggregatedResults.getLastTimeStamp())
+                        .toString());
+                writeFailures(resultsWriter, generateFailuresMap());
+                writeFailureMessages(resultsWriter);
+                writeSloVerdicts(resultsWriter);
+                resultsWriter.writeConst("table_percentiles", new JSONArray(tablePercentiles).toString());
+                resultsWriter.beginConst("users_timeline").writeLogEntries(currentUsersTask.join()).endConst();
+                resultsWriter.writeConst("series_percentiles", new JSONArray(Arrays.stream(REPORT_PERCENTILES).mapToObj(AggregatedRequestLog::percentileKey).toList()).toString());
+                writeTotalsSeries(resultsWriter, timestamps, averageResultsTask.join());
+                writeSummary(resultsWriter, summariesTask.join());
+                resultsWriter.writeConst("requests_summary_total", summaryTotalTask.join());
+                resultsWriter.writeConst("requests_distribution", requestsDistributionTask.join());
+                writeKeyFilesIndex(resultsWriter, summariesTask.join().keySet(), keyFilesTask.join());
+                resultsWriter.writeConst("requests_log_file", JSONObject.quote(REQUESTS_LOG_FILE));
+                resultsWriter.writeConst("requests_log_samples", String.valueOf(requestsLogTask.join()));
+                resultsWriter.writeConst("series_levels", seriesLevelsTask.join().toString());
+            }
+            resourcesTask.join();
+
+            return targetPath;
+        } catch (IOException | CompletionException e) {
+            log.error("Failed to generate the report");
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+            return null;
+        }
+    }
+
+    private static void copyReporterResources(Path targetPath, ClassLoader classLoader) {
+        for (String reporterFile : KeresFileUtils.reporterResourcesList) {
+            String resourceName = "report-viewer/" + reporterFile;
+            InputStream resourceStream = classLoader.getResourceAsStream(resourceName);
+            KeresFileUtils.copyResource(resourceStream, targetPath + "/" + reporterFile);
         }
     }
 
     public void submitResultsToHub() {
-        synchronized (requestsLog) {
-            JSONObject request = new JSONObject();
-            request.put("requests_log", requestsLog);
-            request.put("users_timeline", Arrays.asList(new ResultLog.LogEntry(Instant.now().toEpochMilli(), KeresUser.getAllRunners().size())));
-
-            RunLogRequest runLogRequest = RunLogRequest.newBuilder()
-                .setProjectId(KeresGrpcClient.get().getProjectId())
-                .setNodeId(KeresGrpcClient.get().getNodeId())
-                .setRunUUID(runUUID)
-                .setLogContents(request.toString())
-                .build();
+        AggregatedResults batch;
+        synchronized (pendingResultsLock) {
+            batch = pendingResults;
+            pendingResults = new AggregatedResults(failureMessages);
+        }
 
-            try {
-                KeresGrpcClient.get().controlsBlockingStub.submitResults(runLogRequest);
-            } catch (Exception e) {
-                log.error(e);
-                log.error(ExceptionUtils.getStackTrace(e));
-                log.error("Message was: " + request.toString());
+        ResultsBatch.Builder resultsBatch = ResultsBatch.newBuilder();
+        HashMap<String, Integer> keyIndex = new HashMap<>();
+        if (activeNodeResultsMode == NodeResultsMode.RAW) {
+            readJournalDelta(resultsBatch, keyIndex);
+            resultsBatch.setSamplesOnly(true);
+        } else {
+            batch.toProto(resultsBatch, keyIndex);
+        }
+        // Only the messages hub has not seen yet are sent. Pending results and journal may refer to newer ones too, so they're taken afterwards
+        List<String> failureMessagesDelta = failureMessages.getMessages(submittedFailureMessages);
+        for (int index = 0; index < failureMessagesDelta.size(); index++) {
+            resultsBatch.putFailureMessages(submittedFailureMessages + index, failureMessagesDelta.get(index));
+        }
+        resultsBatch
+            .addUsersTimeStamps(Instant.now().toEpochMilli())
+            .addUsersCounts(KeresUser.getAllRunners().size());
+        for (SloVerdict verdict : sloVerdicts) {
+            resultsBatch.addSloVerdicts(verdict.toProto());
+        }
+
+        RunLogRequest runLogRequest = RunLogRequest.newBuilder()
+            .setProjectId(KeresGrpcClient.get().getProjectId())
+            .setNodeId(KeresGrpcClient.get().getNodeId())
+            .setRunUUID(runUUID)
+            .setSequence(++submittedBatchesCount)
+            .setResultsBatch(resultsBatch)
+            .build();
+
+        // Streamer delivers batches in order and re-sends the failed ones, so the messages delta counts as submitted right away
+        ResultsStreamer streamer = resultsStreamer;
+        if (streamer != null) {
+            streamer.submit(runLogRequest);
+            submittedFailureMessages += failureMessagesDelta.size();
+            return;
+        }
+
+        try {
+            KeresGrpcClient.get().controlsBlockingStub.submitResults(runLogRequest);
+            submittedFailureMessages += failureMessagesDelta.size();
+        } catch (Exception e) {
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+            log.error(String.format("Failed to submit results batch with %d buckets, %d failures and %d raw samples", 
+                resultsBatch.getBucketsCount(), resultsBatch.getFailuresCount(), resultsBatch.getRawSamples().getKeyIndicesCount()));
+        }
+    }
+
+    /**
+     * Hub side entry point for the results submitted by a node.
+     * Typed results batch is used if present, otherwise falls back to the JSON contents sent by older nodes.
+     * @param request - Results submission request
+     */
+    public synchronized void processNodeResults(RunLogRequest request) {
+        if (!request.hasResultsBatch()) {
+            processNodeResults(new JSONObject(request.getLogContents()));
+            return;
+        }
+
+        // Batches of a failed stream are re-sent by the node - the ones that were already processed are skipped
+        if (request.getSequence() > 0) {
+            long lastSequence = nodeBatchSequences.getOrDefault(request.getNodeId(), 0L);
+            if (request.getSequence() <= lastSequence) {
+                log.debug(String.format("Skipping results batch %d of node %s - it was already processed", request.getSequence(), request.getNodeId()));
+                return;
             }
+            nodeBatchSequences.put(request.getNodeId(), request.getSequence());
+        }
 
-            requestsLog.values().forEach(value -> value.clear());
+        ResultsBatch input = request.getResultsBatch();
+        IntUnaryOperator messageIdMapper = registerNodeFailureMessages(request.getNodeId(), input.getFailureMessagesMap());
+        aggregatedResults.merge(AggregatedResults.fromProto(input, failureMessages, messageIdMapper));
+        if (input.getSloVerdictsCount() > 0) {
+            List<SloVerdict> verdicts = new ArrayList<>();
+            for (int index = 0; index < input.getSloVerdictsCount(); index++) {
+                SloVerdict verdict = SloVerdict.fromProto(input.getSloVerdicts(index), request.getNodeId());
+                verdicts.add(verdict);
+                if (verdict.failsRun() && !runFailed) {
+                    log.warn(String.format("Node %s reported breached SLO rule '%s'. Run is marked as failed", request.getNodeId(), verdict.getRule()));
+                    runFailed = true;
+                }
+            }
+            nodeSloVerdicts.put(request.getNodeId(), verdicts);
+        }
+
+        RawSamples rawSamples = input.getRawSamples();
+        long startTime = 0;
+        for (int index = 0; index < rawSamples.getKeyIndicesCount(); index++) {
+            startTime += rawSamples.getStartTimeDeltas(index);
+            String key = input.getKeys(rawSamples.getKeyIndices(index));
+            long responseTime = rawSamples.getResponseTimes(index);
+            int responseCode = rawSamples.getResponseCodes(index);
+            boolean failed = rawSamples.getFailed(index);
+            int failureMessageId = failed ? messageIdMapper.applyAsInt(rawSamples.getMessageIds(index)) : FailureMessageDictionary.NO_MESSAGE;
+            if (input.getSamplesOnly()) {
+                aggregatedResults.record(key, startTime, responseTime, failed, responseCode, failureMessageId);
+            }
+            storeRawSample(key, startTime, responseTime, responseCode, failed, failureMessageId);
+        }
+
+        synchronized (usersOverTimeStatistics) {
+            for (int index = 0; index < input.getUsersTimeStampsCount(); index++) {
+                usersOverTimeStatistics.add(new LogEntry(input.getUsersTimeStamps(index), input.getUsersCounts(index)));
+            }
         }
     }
 
+    /**
+     * Registers failure messages delta, received from a node.
+     * Node failure message ids are local to the node - they are mapped into own ids, using the messages delta.
+     * @param nodeId    - Node id
+     * @param delta     - New messages of the node. Key is node's message id
+     * @return          - Mapper of node's message ids into own ones
+     */
+    private IntUnaryOperator registerNodeFailureMessages(String nodeId, Map<Integer, String> delta) {
+        HashMap<Integer, Integer> messageIds = nodeFailureMessageIds.computeIfAbsent(nodeId, id -> new HashMap<>());
+        delta.forEach((id, message) -> messageIds.put(id, failureMessages.idFor(message)));
+
+        return id -> messageIds.getOrDefault(id, FailureMessageDictionary.NO_MESSAGE);
+    }
+
     public synchronized void processNodeResults(JSONObject input) {
-        JSONObject reqLog = input.getJSONObject("requests_log");
         JSONArray usersLog = input.getJSONArray("users_timeline");
 
+        HashMap<Integer, String> messagesDelta = new HashMap<>();
+        JSONObject messagesJSON = input.optJSONObject("failure_messages", new JSONObject());
+        messagesJSON
+            .keySet()
+            .forEach(id -> messagesDelta.put(Integer.parseInt(id), messagesJSON.getString(id)));
+        IntUnaryOperator messageIdMapper = registerNodeFailureMessages(input.optString("node_id", ""), messagesDelta);
+
+        // Nodes of older versions only send raw samples - for them we build aggregates on hub side
+        boolean isAggregated = input.has("aggregated_log");
+        if (isAggregated) {
+            aggregatedResults.merge(AggregatedResults.fromJSON(input.getJSONObject("aggregated_log"), failureMessages, messageIdMapper));
+        }
+
+        JSONObject reqLog = input.optJSONObject("requests_log", new JSONObject());
         reqLog
             .keySet()
             .forEach(key -> {
@@ -293,20 +777,25 @@ public class DataCollector {
                     .forEach(keyEntry -> {
                         // Layer two - individual log entries
                         if (keyEntry instanceof JSONArray) {
+                            // Entry layout: start timestamp, finish timestamp, response time, failure flag, response code, failure message id
+                            // Older nodes send the failure message itself
                             JSONArray arr = (JSONArray) keyEntry;
-                            Object[] entry = new Object[] {
-                                arr.getLong(0),
-                                arr.getLong(1),
-                                arr.getLong(2),
-                                arr.getBoolean(3),
-                                arr.getInt(4),
-                                arr.getString(5)
-                            };
-
-                            if (!requestsLog.containsKey(key)) {
-                                requestsLog.put(key, new ArrayList<Object[]>());
+                            long startTime = arr.getLong(0);
+                            long responseTime = arr.getLong(2);
+                            boolean failed = arr.getBoolean(3);
+                            int responseCode = arr.getInt(4);
+                            int failureMessageId;
+                            if (!failed)
+                                failureMessageId = FailureMessageDictionary.NO_MESSAGE;
+                            else if (arr.get(5) instanceof Number)
+                                failureMessageId = messageIdMapper.applyAsInt(arr.getInt(5));
+                            else
+                                failureMessageId = failureMessages.idFor(arr.getString(5));
+
+                            if (!isAggregated) {
+                                aggregatedResults.record(key, startTime, responseTime, failed, responseCode, failureMessageId);
                             }
-                            requestsLog.get(key).add(entry);
+                            storeRawSample(key, startTime, responseTime, responseCode, failed, failureMessageId);
                         }
                     });
             });
@@ -315,7 +804,9 @@ public class DataCollector {
             .forEach(entry -> {
                 if (entry instanceof JSONObject) {
                     JSONObject obj = (JSONObject) entry;
-                    usersOverTimeStatistics.add(new LogEntry(obj.getLong("timeStamp"), obj.getInt("logValue")));
+                    synchronized (usersOverTimeStatistics) {
+                        usersOverTimeStatistics.add(new LogEntry(obj.getLong("timeStamp"), obj.getInt("logValue")));
+                    }
                 }
             });
     }
@@ -328,15 +819,28 @@ public class DataCollector {
         System.out.println("Runnning for: " + secondsToTimeString(runTimeInSeconds));
         System.out.println("Active virtual users - " + activeUsersCount);
         System.out.println("------------------------------------------------------------------------------------------");
-        int totalRequests = 0;
+        long totalRequests = 0;
+        long now = Instant.now().toEpochMilli();
+        RollingStatistics.Window[] totalWindows = new RollingStatistics.Window[LIVE_WINDOWS.length];
+        for (int index = 0; index < LIVE_WINDOWS.length; index++) {
+            totalWindows[index] = new RollingStatistics.Window(LIVE_WINDOWS[index]);
+        }
         
-        for (String key : accumulatedRequestsLog.keySet()) {
-            ArrayList<Object[]> entry = accumulatedRequestsLog.get(key);
-            totalRequests += entry.size();
+        for (AggregatedRequestLog entry : aggregatedResults.getRequestLogs().values()) {
+            long requestsCount = entry.getRequestsCount();
+            totalRequests += requestsCount;
                 try {
                     System.out.println(
                     String.format("%s - %d requests - %d failed", 
-                        key, entry.size(), entry.stream().filter(object -> (boolean) object[3] == true).count()));
+                        entry.getName(), requestsCount, entry.getFailuresCount()));
+                    RollingStatistics statistics = rollingStatistics.get(entry.getName());
+                    if (statistics != null) {
+                        RollingStatistics.Window[] windows = statistics.getWindows(now, LIVE_WINDOWS);
+                        for (int index = 0; index < windows.length; index++) {
+                            totalWindows[index].merge(windows[index]);
+                        }
+                        System.out.println(formatWindows(windows));
+                    }
                 } catch (Exception e) {
                     log.error(e);
                     log.error(ExceptionUtils.getStackTrace(e));
@@ -348,6 +852,12 @@ public class DataCollector {
         }
         System.out.println("------------------------------------------------------------------------------------------");
         System.out.println(String.format("TOTAL - %s requests", totalRequests));
+        System.out.println(formatWindows(totalWindows));
+        System.out.println(String.format("Results queue: depth %d/%d (peak %d), dropped %d", 
+            getQueueDepth(), resultsBuffer.getCapacity(), getQueueHighWaterMark(), getDroppedResponsesCount()));
+        if (MetricKeys.getOverflowedCount() > 0)
+            System.out.println(String.format("Request keys limit of %d is reached - %d lookups recorded under %s keys", 
+                MetricKeys.getMaxKeys(), MetricKeys.getOverflowedCount(), MetricKeys.OVERFLOW_NAME));
         System.out.println("------------------------------------------------------------------------------------------");
         long total = rt.totalMemory();
         long free = rt.freeMemory();
@@ -366,161 +876,1011 @@ public class DataCollector {
         }
     }
 
+    /**
+     * Formats rolling windows into a single line, i.e. "last 1s/10s/60s: 40.0/39.5/38.1 rps, 0.00/0.10/0.10% errors, p50 12/12/13 ms, ..."
+     * @param windows   - Window snapshots of a single key (or totals), in order of LIVE_WINDOWS
+     * @return          - Formatted line
+     */
+    private static String formatWindows(RollingStatistics.Window[] windows) {
+        StringJoiner names = new StringJoiner("/");
+        StringJoiner rps = new StringJoiner("/");
+        StringJoiner errors = new StringJoiner("/");
+        StringJoiner[] percentiles = new StringJoiner[LIVE_PERCENTILES.length];
+        for (int index = 0; index < LIVE_PERCENTILES.length; index++) {
+            percentiles[index] = new StringJoiner("/");
+        }
+
+        for (RollingStatistics.Window window : windows) {
+            names.add(window.getSeconds() + "s");
+            rps.add(String.format("%.1f", window.getRequestsPerSecond()));
+            errors.add(String.format("%.2f", window.getErrorRate()));
+            long[] values = window.getResponseTimes().getValuesAtPercentiles(LIVE_PERCENTILES);
+            for (int index = 0; index < values.length; index++) {
+                percentiles[index].add(String.valueOf(values[index]));
+            }
+        }
+
+        StringBuilder result = new StringBuilder(String.format("    last %s: %s rps, %s%% errors", names, rps, errors));
+        for (int index = 0; index < LIVE_PERCENTILES.length; index++) {
+            result.append(String.format(", p%s %s ms", AggregatedRequestLog.percentileKey(LIVE_PERCENTILES[index]), percentiles[index]));
+        }
+
+        return result.toString();
+    }
+
     // ##########################################################################################
-    // Service methods
+    // SLO rules
     // ##########################################################################################
 
+    private void resetSloVerdicts() {
+        List<SloRule> rules = List.copyOf(sloRules);
+        List<SloVerdict> verdicts = new ArrayList<>();
+        for (SloRule rule : rules) {
+            verdicts.add(new SloVerdict(rule.toString(), rule.getAction(), ""));
+        }
+        activeSloRules = rules;
+        sloVerdicts = verdicts;
+        nodeSloVerdicts.clear();
+        runFailed = false;
+    }
+
     /**
-     * Iterates over requests in the run, extracts the earliest and the latest start timestamps and creates a timestamp frame with 
-     * 1 second step
-     * @return List of Unix timestamps
+     * Evaluates each SLO rule over it's rolling window and applies rule's action on the first breach.
+     * Windows with less requests than rule's minimum are skipped.
      */
-    private List<Long> generateTimestampsList() {
-        List<Long> timestamps = new ArrayList<>();
-        // TODO: It should be possible to be done with streams. Revisit it later
-        Long firstStamp = 0L, lastStamp = 0L;
-        for (Entry<String, ArrayList<Object[]>> entry : requestsLog.entrySet()) {
-            Optional lowestEntry = entry.getValue().stream().min((obj1, obj2) -> Long.compare((long) obj1[0], (long) obj2[0]));
-            Optional highestEntry = entry.getValue().stream().max((obj1, obj2) -> Long.compare((long) obj1[0], (long) obj2[0]));
+    private void evaluateSloRules() {
+        List<SloRule> rules = activeSloRules;
+        List<SloVerdict> verdicts = sloVerdicts;
+        if (verdicts.isEmpty()) {
+            return;
+        }
 
-            if (!lowestEntry.isPresent() && !highestEntry.isPresent())
-                continue;
-            
-            long lowestEntryValue = (long)((Object[])lowestEntry.get())[0];
-            long highestEntryValue =(long)((Object[])highestEntry.get())[0];
-            if (firstStamp == 0L) {
-                firstStamp = lowestEntryValue;
+        long now = Instant.now().toEpochMilli();
+        // Totals are only built for the window sizes that are actually used
+        HashMap<Integer, RollingStatistics.Window> totals = new HashMap<>();
+        for (int index = 0; index < verdicts.size() && index < rules.size(); index++) {
+            SloRule rule = rules.get(index);
+            RollingStatistics.Window window;
+            if (rule.getKey() == null) {
+                window = totals.computeIfAbsent(rule.getWindowSeconds(), seconds -> {
+                    RollingStatistics.Window total = new RollingStatistics.Window(seconds);
+                    rollingStatistics.forEach((key, statistics) -> {
+                        if (!key.startsWith("(ACTION)")) {
+                            total.merge(statistics.getWindows(now, seconds)[0]);
+                        }
+                    });
+                    return total;
+                });
             } else {
-                if (firstStamp > lowestEntryValue) {
-                    firstStamp = lowestEntryValue;
-                }
+                RollingStatistics statistics = rollingStatistics.get(rule.getKey());
+                window = statistics == null ? null : statistics.getWindows(now, rule.getWindowSeconds())[0];
+            }
+            if (window == null || window.getRequestsCount() < rule.getMinRequests()) {
+                continue;
             }
 
-            if (lastStamp == 0L) {
-                lastStamp = highestEntryValue;
-            } else {
-                if (lastStamp < highestEntryValue) {
-                    lastStamp = highestEntryValue;
+            double value = rule.measure(window);
+            if (verdicts.get(index).record(rule, value, now)) {
+                onSloBreach(rule, value);
+            }
+        }
+    }
+
+    private void onSloBreach(SloRule rule, double value) {
+        String message = String.format("SLO rule '%s' is breached - measured value is %.2f", rule, value);
+        switch (rule.getAction()) {
+            case LOG:
+                log.warn(message);
+                break;
+            case FAIL_RUN:
+                log.error(message + ". Run is marked as failed");
+                runFailed = true;
+                break;
+            case ABORT:
+                log.error(message + ". Aborting the run");
+                runFailed = true;
+                KeresController.stopExecution();
+                break;
+        }
+    }
+
+    private void printSloVerdicts() {
+        if (sloVerdicts.isEmpty()) {
+            return;
+        }
+
+        System.out.println("------------------------------------------------------------------------------------------");
+        System.out.println("SLO verdicts - run " + (runFailed ? "FAILED" : "PASSED"));
+        for (SloVerdict verdict : sloVerdicts) {
+            System.out.println(String.format("    [%s] %s (%s) - %d of %d checks breached, worst value %.2f",
+                verdict.getChecksCount() == 0 ? "NO DATA" : verdict.isPassed() ? "PASSED" : "BREACHED", verdict.getRule(), verdict.getAction(),
+                verdict.getBreachesCount(), verdict.getChecksCount(), verdict.getWorstValue()));
+        }
+        System.out.println("------------------------------------------------------------------------------------------");
+    }
+
+    // ##########################################################################################
+    // Checkpoints
+    // ##########################################################################################
+
+    /**
+     * Takes a snapshot of the aggregated state - the same data that goes into the report, in the compact form of hub submissions.
+     * Sampled responses are included, raw samples are not (these are kept in the journal).
+     */
+    private ResultsCheckpoint buildCheckpoint() {
+        ResultsBatch.Builder results = ResultsBatch.newBuilder();
+        HashMap<String, Integer> keyIndex = new HashMap<>();
+        // Collection thread keeps updating the buckets - they are copied under the request log locks first
+        AggregatedResults snapshot = new AggregatedResults(failureMessages);
+        snapshot.merge(aggregatedResults);
+        snapshot.toProto(results, keyIndex);
+        List<String> messages = failureMessages.getMessages(0);
+        for (int index = 0; index < messages.size(); index++) {
+            results.putFailureMessages(index, messages.get(index));
+        }
+        synchronized (usersOverTimeStatistics) {
+            for (LogEntry entry : usersOverTimeStatistics) {
+                results
+                    .addUsersTimeStamps(entry.getTimeStamp())
+                    .addUsersCounts(entry.getLogValue());
+            }
+        }
+        RawSamples.Builder rawSamples = RawSamples.newBuilder();
+        long previousStartTime = 0;
+        for (RawSamplesReservoir reservoir : rawSamplesReservoirs.values()) {
+            int keyId = AggregatedResults.internKey(results, keyIndex, reservoir.getName());
+            for (RawSamplesReservoir.Sample sample : reservoir.getSamples()) {
+                rawSamples
+                    .addKeyIndices(keyId)
+                    .addStartTimeDeltas(sample.startTime - previousStartTime)
+                    .addResponseTimes(sample.responseTime)
+                    .addResponseCodes(sample.responseCode)
+                    .addFailed(sample.failed)
+                    .addMessageIds(sample.failureMessageId);
+                previousStartTime = sample.startTime;
+            }
+        }
+        results.setRawSamples(rawSamples);
+        for (SloVerdict verdict : sloVerdicts) {
+            results.addSloVerdicts(verdict.toProto());
+        }
+
+        return ResultsCheckpoint.newBuilder()
+            .setTestId(testId)
+            .setTestDescription(testDescription)
+            .setRunUUID(runUUID)
+            .setCreatedAt(Instant.now().toEpochMilli())
+            .setRunTimeSeconds(runTimeInSeconds)
+            .setRunFailed(runFailed)
+            .setResults(results)
+            .build();
+    }
+
+    private void writeCheckpoint() {
+        try {
+            CheckpointFile.write(checkpointPath, buildCheckpoint());
+        } catch (Exception e) {
+            log.error("Failed to write results checkpoint " + checkpointPath);
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    private void deleteCheckpoint() {
+        try {
+            CheckpointFile.delete(checkpointPath);
+        } catch (IOException e) {
+            log.warn("Failed to remove results checkpoint " + checkpointPath);
+        }
+        checkpointPath = null;
+    }
+
+    /**
+     * Replaces current results with the ones from a checkpoint.
+     * @param checkpoint - Checkpoint, written by a standalone runner
+     */
+    public synchronized void restoreCheckpoint(ResultsCheckpoint checkpoint) {
+        dropLogResults();
+        setTestId(checkpoint.getTestId());
+        setTestDescription(checkpoint.getTestDescription());
+        setRunUUID(checkpoint.getRunUUID());
+        runTimeInSeconds = (int) checkpoint.getRunTimeSeconds();
+        runFailed = checkpoint.getRunFailed();
+
+        ResultsBatch input = checkpoint.getResults();
+        HashMap<Integer, Integer> messageIds = new HashMap<>();
+        input.getFailureMessagesMap().forEach((id, message) -> messageIds.put(id, failureMessages.idFor(message)));
+        IntUnaryOperator messageIdMapper = id -> messageIds.getOrDefault(id, FailureMessageDictionary.NO_MESSAGE);
+        aggregatedResults.merge(AggregatedResults.fromProto(input, failureMessages, messageIdMapper));
+
+        RawSamples rawSamples = input.getRawSamples();
+        long startTime = 0;
+        for (int index = 0; index < rawSamples.getKeyIndicesCount(); index++) {
+            startTime += rawSamples.getStartTimeDeltas(index);
+            boolean failed = rawSamples.getFailed(index);
+            storeRawSample(input.getKeys(rawSamples.getKeyIndices(index)), startTime, rawSamples.getResponseTimes(index), rawSamples.getResponseCodes(index),
+                failed, failed ? messageIdMapper.applyAsInt(rawSamples.getMessageIds(index)) : FailureMessageDictionary.NO_MESSAGE);
+        }
+
+        synchronized (usersOverTimeStatistics) {
+            usersOverTimeStatistics.clear();
+            for (int index = 0; index < input.getUsersTimeStampsCount(); index++) {
+                usersOverTimeStatistics.add(new LogEntry(input.getUsersTimeStamps(index), input.getUsersCounts(index)));
+            }
+        }
+
+        List<SloVerdict> verdicts = new ArrayList<>();
+        for (int index = 0; index < input.getSloVerdictsCount(); index++) {
+            verdicts.add(SloVerdict.fromProto(input.getSloVerdicts(index), ""));
+        }
+        sloVerdicts = verdicts;
+        nodeSloVerdicts.clear();
+    }
+
+    /**
+     * Builds HTML report from a results checkpoint, left behind by a run that did not finish properly (i.e. the process was killed).
+     * Report covers the run up to the moment the checkpoint was taken.
+     * @param checkpoint    - Checkpoint file, or a folder with checkpoints (the latest one is used)
+     * @param resultsFolder - Folder to create the report in
+     * @return              - Report folder, or null if report generation has failed
+     */
+    public static Path recoverReport(Path checkpoint, String resultsFolder) throws IOException {
+        Path checkpointFile = CheckpointFile.resolve(checkpoint);
+        ResultsCheckpoint input = CheckpointFile.read(checkpointFile);
+        System.out.println(String.format("Recovering report of test '%s' from checkpoint %s, taken at %s (%s into the run)",
+            input.getTestId(), checkpointFile, Instant.ofEpochMilli(input.getCreatedAt()), secondsToTimeString((int) input.getRunTimeSeconds())));
+
+        DataCollector collector = new DataCollector();
+        collector.setResultsFolder(resultsFolder);
+        collector.setJournalEnabled(false);
+        collector.restoreCheckpoint(input);
+
+        return collector.generateReport();
+    }
+
+    // ##########################################################################################
+    // Results journal
+    // ##########################################################################################
+
+    /**
+     * @return - true if something reads the journal back - raw samples retention, RAW node results mode, or the journal is kept for later processing.
+     * Otherwise writing it would only cost disk I/O
+     */
+    private boolean journalRequired() {
+        return retainRawSamples || keepJournal || (KeresController.getMode() == KeresMode.NODE && nodeResultsMode == NodeResultsMode.RAW);
+    }
+
+    private void openJournal(String name) {
+        closeJournal();
+        submittedJournalPosition = 0;
+        if (!journalEnabled) {
+            if (retainRawSamples) {
+                log.warn("Raw samples retention requires results journal, which is disabled. Raw samples won't be available");
+            }
+            return;
+        }
+        if (!journalRequired()) {
+            return;
+        }
+
+        Path journalPath = Paths.get(resultsFolder, "journal", name.replaceAll(" ", "_"));
+        try {
+            ResultsJournal newJournal = new ResultsJournal(journalPath, journalSegmentSize, failureMessages);
+            synchronized (journalLock) {
+                journal = newJournal;
+            }
+        } catch (IOException e) {
+            log.error("Failed to create results journal in " + journalPath + ". Raw samples won't be persisted");
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    private void closeJournal() {
+        ResultsJournal currentJournal;
+        synchronized (journalLock) {
+            currentJournal = journal;
+            journal = null;
+        }
+        if (currentJournal == null) {
+            return;
+        }
+
+        if (keepJournal) {
+            currentJournal.close();
+            System.out.println("Results journal is kept at " + currentJournal.getDirectory());
+        } else {
+            currentJournal.delete();
+        }
+    }
+
+    /**
+     * Stores a raw sample - appends it to the journal and offers it to the key's reservoir.
+     */
+    private void storeRawSample(String key, long startTime, long responseTime, int responseCode, boolean failed, int failureMessageId) {
+        appendToJournal(key, startTime, responseTime, responseCode, failed, failureMessageId);
+        if (rawSamplesPerWindow > 0) {
+            rawSamplesReservoirs
+                .computeIfAbsent(key, name -> new RawSamplesReservoir(name, rawSamplesPerWindow, maxRawSamplesWindows))
+                    .record(startTime, responseTime, responseCode, failed, failureMessageId);
+        }
+    }
+
+    private void appendToJournal(String key, long startTime, long responseTime, int responseCode, boolean failed, int failureMessageId) {
+        ResultsJournal currentJournal = journal;
+        if (currentJournal == null) {
+            return;
+        }
+
+        try {
+            currentJournal.append(key, startTime, responseTime, responseCode, failed, failureMessageId);
+        } catch (IOException e) {
+            log.error("Failed to write into results journal " + currentJournal.getDirectory() + ". Journaling is stopped");
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+            synchronized (journalLock) {
+                currentJournal.close();
+                if (journal == currentJournal) {
+                    journal = null;
                 }
             }
         }
+    }
+
+    /**
+     * Adds journal records that were not yet submitted to the hub to a results batch.
+     * Holds journalLock for the duration of the read, so the journal can't be closed by a failed append midway.
+     * @param batch     - Batch builder
+     * @param keyIndex  - Index of the keys, already present in the batch
+     */
+    private void readJournalDelta(ResultsBatch.Builder batch, HashMap<String, Integer> keyIndex) {
+        RawSamples.Builder rawSamples = RawSamples.newBuilder();
+        long[] previousStartTime = new long[] { 0 };
+        synchronized (journalLock) {
+            ResultsJournal currentJournal = journal;
+            if (currentJournal == null) {
+                batch.setRawSamples(rawSamples);
+                return;
+            }
+            try {
+                submittedJournalPosition = currentJournal.read(submittedJournalPosition, (keyId, startTime, responseTime, responseCode, failed, failureMessageId) -> {
+                    rawSamples
+                        .addKeyIndices(AggregatedResults.internKey(batch, keyIndex, currentJournal.getKey(keyId)))
+                        .addStartTimeDeltas(startTime - previousStartTime[0])
+                        .addResponseTimes(responseTime)
+                        .addResponseCodes(responseCode)
+                        .addFailed(failed)
+                        .addMessageIds(failureMessageId);
+                    previousStartTime[0] = startTime;
+                });
+            } catch (IOException e) {
+                log.error(e);
+                log.error(ExceptionUtils.getStackTrace(e));
+            }
+        }
+        batch.setRawSamples(rawSamples);
+    }
 
-        // Adding 1 second prior and after the corner values to make sure we don't miss any data entries
-        for (long entry = firstStamp - 1000; entry < lastStamp + 1000; entry += 1000) {
+    // ##########################################################################################
+    // Ingestion metrics
+    // ##########################################################################################
+
+    /**
+     * @return - Amount of responses reported, but not yet processed by collection thread
+     */
+    public int getQueueDepth() {
+        return resultsBuffer.size();
+    }
+
+    /**
+     * @return - Highest ingestion buffer depth observed during current run
+     */
+    public long getQueueHighWaterMark() {
+        return resultsBuffer.getHighWaterMark();
+    }
+
+    /**
+     * @return - Amount of responses discarded due to full buffer (DROP overflow policy, or BLOCK once collection thread is stopped)
+     */
+    public long getDroppedResponsesCount() {
+        return droppedResponsesCount.sum();
+    }
+
+    private boolean isCollectionThreadAlive() {
+        Thread thread = resultsCollectionThread;
+        return thread != null && thread.isAlive();
+    }
+
+    // ##########################################################################################
+    // Service methods
+    // ##########################################################################################
+
+    /**
+     * @return - Index of the finest time series resolution, which fits the whole run into REPORT_SERIES_MAX_POINTS points
+     */
+    private int selectSeriesLevel() {
+        long duration = aggregatedResults.getLastTimeStamp() - aggregatedResults.getFirstTimeStamp();
+        int level = 0;
+        while (level < AggregatedRequestLog.RESOLUTIONS_MS.length - 1 && duration / AggregatedRequestLog.RESOLUTIONS_MS[level] > REPORT_SERIES_MAX_POINTS) {
+            level++;
+        }
+
+        return level;
+    }
+
+    /**
+     * Takes the earliest and the latest bucket time stamps of the run and creates a timestamp frame with given step.
+     * Since bucket T holds the requests started within (T - resolution, T] - frame starts 1 step prior to the first bucket.
+     * @param resolution    - Frame step in ms, one of AggregatedRequestLog.RESOLUTIONS_MS
+     * @return              - List of Unix timestamps
+     */
+    private List<Long> generateTimestampsList(long resolution) {
+        if (aggregatedResults.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        long firstStamp = AggregatedRequestLog.bucketTimeStampFor(aggregatedResults.getFirstTimeStamp(), resolution);
+        long lastStamp = AggregatedRequestLog.bucketTimeStampFor(aggregatedResults.getLastTimeStamp(), resolution);
+        List<Long> timestamps = new ArrayList<>((int) ((lastStamp - firstStamp) / resolution) + 2);
+        for (long entry = firstStamp - resolution; entry <= lastStamp; entry += resolution) {
             timestamps.add(entry);
         }
 
         return timestamps;
     }
 
-    private HashMap<String, ResultLog> generateAverageResultsMap(List<Long> timestamps) {
-        HashMap<String, ResultLog> results = new HashMap<>();
+    /**
+     * Builds time series for each request key. Keys are processed in parallel on the current fork-join pool.
+     * @param timestamps    - Timestamps frame, produced by generateTimestampsList()
+     * @param level         - Time series level (index in AggregatedRequestLog.RESOLUTIONS_MS) of the frame
+     * @return              - Map of result logs, key is a request key
+     */
+    private HashMap<String, ResultLog> generateAverageResultsMap(List<Long> timestamps, int level) {
+        return aggregatedResults
+            .getRequestLogs()
+            .values()
+            .parallelStream()
+                .map(requestLog -> generateResultLog(requestLog.getName(), requestLog.getBuckets(level), timestamps, REPORT_PERCENTILES))
+                .collect(Collectors.toMap(ResultLog::getName, resultLog -> resultLog, (first, second) -> first, HashMap::new));
+    }
+
+    /**
+     * Sweeps over the timestamps frame and key's buckets (both sorted) in a single pass.
+     * Frame may be a slice of the run - the sweep starts with the first bucket inside of it.
+     * NOTE: Requests and failures series hold the counts per bucket - for coarser resolutions these are not per-second values.
+     * @param name          - Request key
+     * @param buckets       - Key's buckets of the same resolution as the frame, sorted by time stamp
+     * @param timestamps    - Timestamps frame
+     * @param percentiles   - Response time percentiles to compute for each point, sorted in ascending order
+     * @return              - ResultLog with the series
+     */
+    private static ResultLog generateResultLog(String name, List<AggregatedBucket> buckets, List<Long> timestamps, double[] percentiles) {
+        ResultLog resultLog = new ResultLog(name);
+        int bucketIndex = timestamps.size() > 1 ? firstBucketFrom(buckets, timestamps.get(1)) : 0;
 
-        long previousStamp = 0;
-        for (int index = 0; index < timestamps.size(); index++) {
-            if (index == 0) {
-                previousStamp = timestamps.get(index);
-                continue;
+        // First timestamp only marks the start of the frame - there's no bucket for it
+        for (int index = 1; index < timestamps.size(); index++) {
+            long currentStamp = timestamps.get(index);
+            while (bucketIndex < buckets.size() && buckets.get(bucketIndex).getTimeStamp() < currentStamp) {
+                bucketIndex++;
+            }
+
+            if (bucketIndex < buckets.size() && buckets.get(bucketIndex).getTimeStamp() == currentStamp) {
+                AggregatedBucket bucket = buckets.get(bucketIndex);
+                resultLog.logRequest(
+                    (int) bucket.getRequestsCount(),
+                    bucket.getAverageResponseTime(),
+                    bucket.getRequestsCount(),
+                    bucket.getFailuresCount(),
+                    currentStamp);
+                resultLog.logPercentiles(bucket.getResponseTimePercentiles(percentiles), currentStamp);
             } else {
-                previousStamp = timestamps.get(index - 1);
+                resultLog.logRequest(0, 0, 0, 0, currentStamp);
+                resultLog.logPercentiles(new long[percentiles.length], currentStamp);
             }
+        }
 
-            Long currentStamp = timestamps.get(index);
-            final long prevStamp = previousStamp;
-            for (Entry<String, ArrayList<Object[]>> entry : requestsLog.entrySet()) {
-                List<Object[]> requests = entry
-                    .getValue()
-                    .stream()
-                        .filter(object -> (Long) object[0] > prevStamp && (Long) object[0] <= currentStamp).collect(Collectors.toList());
+        return resultLog;
+    }
 
-                long averageResponseTime = 0;
-                long requestsPerSecond = 0;
-                long failures = 0;
-                if (requests.size() > 0) {
-                    try {
-                        averageResponseTime = requests.stream().mapToLong(object -> (Long) object[2]).sum() / requests.size();
-                        requestsPerSecond = requests.size();
-                        failures = requests.stream().filter(object -> (Boolean) object[3]).count();
-                    } catch (Exception e) {
-                        log.error(e);
-                        log.error(ExceptionUtils.getStackTrace(e));
-                    }
-                }
+    /**
+     * @return - Index of the first bucket with time stamp not lower than given one
+     */
+    private static int firstBucketFrom(List<AggregatedBucket> buckets, long timeStamp) {
+        int low = 0;
+        int high = buckets.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buckets.get(middle).getTimeStamp() < timeStamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
 
-                if (!results.containsKey(entry.getKey())) {
-                    results.put(entry.getKey(), new ResultLog(entry.getKey()));
-                }
+        return low;
+    }
 
-                results.get(entry.getKey()).logRequest(requests.size(), averageResponseTime, requestsPerSecond, failures, currentStamp);
+    private HashMap<String, FailureEntry> generateFailuresMap() {
+        return new HashMap<>(aggregatedResults.getFailures());
+    }
+
+    // ##########################################################################################
+    // Results file sections
+    // ##########################################################################################
+
+    private void writeTimestamps(ResultsFileWriter writer, List<Long> timestamps) throws IOException {
+        writeTimestampsArray(writer.beginConst("timestamps"), timestamps).endConst();
+    }
+
+    private static ResultsFileWriter writeTimestampsArray(ResultsFileWriter writer, List<Long> timestamps) throws IOException {
+        writer.write("[");
+        for (int index = 0; index < timestamps.size(); index++) {
+            if (index > 0) {
+                writer.write(",");
             }
+            writer.writeNumber(timestamps.get(index));
         }
 
-        return results;
+        return writer.write("]");
     }
 
-    private HashMap<String, FailureEntry> generateFailuresMap(List<Long> timestamps) {
-        HashMap<String, FailureEntry> failures = new HashMap<>();
+    private static ResultsFileWriter writeAverageResultsObject(ResultsFileWriter writer, Map<String, ResultLog> averageResultsLog) throws IOException {
+        writer.write("{");
+        boolean first = true;
+        for (ResultLog resultLog : averageResultsLog.values()) {
+            writeResultLog(writer.writeKey(resultLog.getName(), first), resultLog);
+            first = false;
+        }
+
+        return writer.write("}");
+    }
 
-        for (Entry<String, ArrayList<Object[]>> entry : requestsLog.entrySet()) {
-            List<Object[]> failedRequests = entry
-                .getValue()
-                .stream()
-                    .filter(object -> (boolean) object[3] == true)
-                    .collect(Collectors.toList());
+    private static ResultsFileWriter writeResultLog(ResultsFileWriter writer, ResultLog resultLog) throws IOException {
+        writer.write("{");
+        writer.writeKey("name", true).writeQuoted(resultLog.getName());
+        writer.writeKey("requestsCount", false).writeNumber(resultLog.getRequestsCount());
+        writer.writeKey("failuresCount", false).writeNumber(resultLog.getFailuresCount());
+        writer.writeKey("responseTimesLog", false).writeLogEntries(resultLog.getResponseTimesLog());
+        writer.writeKey("requestsPerSecondLog", false).writeLogEntries(resultLog.getRequestsPerSecondLog());
+        writer.writeKey("failuresLog", false).writeLogEntries(resultLog.getFailuresLog());
+        writer.writeKey("percentileLogs", false).write("{");
+        for (int index = 0; index < resultLog.getPercentileLogs().size(); index++) {
+            writer
+                .writeKey(AggregatedRequestLog.percentileKey(REPORT_PERCENTILES[index]), index == 0)
+                .writeLogEntries(resultLog.getPercentileLogs().get(index));
+        }
+        writer.write("}");
 
-            for (Object[] object : failedRequests) {
-                int responseCode = (int) object[4];
-                String message = (String) object[5];
-                if (message != null)
-                    message = message.length() > 200 ? message.substring(0, 200) + "..." : message;
-                else
-                    message = "null";
-                String key = String.format("%s -- Code %d -- Cause: '%s'", entry.getKey(), responseCode, message);
+        return writer.write("}");
+    }
 
-                if (!failures.containsKey(key)) {
-                    failures.put(key, new FailureEntry(key, responseCode, (String) object[5]));
+    /**
+     * Sums up requests and failures series of all the keys - the totals of the time charts, since the viewer only loads the series
+     * of the expanded keys. Series of all the keys are built over the same timestamps frame, so they're summed up point by point.
+     */
+    private static void writeTotalsSeries(ResultsFileWriter writer, List<Long> timestamps, Map<String, ResultLog> averageResultsLog) throws IOException {
+        int pointsCount = Math.max(0, timestamps.size() - 1);
+        long[] requests = new long[pointsCount];
+        long[] failures = new long[pointsCount];
+        for (ResultLog resultLog : averageResultsLog.values()) {
+            for (int index = 0; index < pointsCount; index++) {
+                requests[index] += resultLog.getRequestsPerSecondLog().get(index).getLogValue();
+                failures[index] += resultLog.getFailuresLog().get(index).getLogValue();
+            }
+        }
+
+        List<ResultLog.LogEntry> requestsLog = new ArrayList<>(pointsCount);
+        List<ResultLog.LogEntry> failuresLog = new ArrayList<>(pointsCount);
+        for (int index = 0; index < pointsCount; index++) {
+            requestsLog.add(new ResultLog.LogEntry(timestamps.get(index + 1), requests[index]));
+            failuresLog.add(new ResultLog.LogEntry(timestamps.get(index + 1), failures[index]));
+        }
+        writer.beginConst("totals_series").write("{");
+        writer.writeKey("requestsPerSecondLog", true).writeLogEntries(requestsLog);
+        writer.writeKey("failuresLog", false).writeLogEntries(failuresLog);
+        writer.write("}").endConst();
+    }
+
+    /**
+     * Writes series and full summary (including the distributions) of each request key into it's own file. Files are written in parallel.
+     * Plain files hold a single register_key_data() call, compressed ones - the same object as plain JSON.
+     * @param targetPath        - Report folder
+     * @param averageResultsLog - Series of each key
+     * @param summaries         - Full summaries of each key
+     * @return                  - Names of the files, relative to the report folder, in order of the summaries
+     */
+    private List<String> writeKeyFiles(Path targetPath, Map<String, ResultLog> averageResultsLog, LinkedHashMap<String, JSONObject> summaries) {
+        try {
+            Files.createDirectories(targetPath.resolve(REPORT_KEYS_FOLDER));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<String> keys = new ArrayList<>(summaries.keySet());
+        List<String> fileNames = IntStream
+            .range(0, keys.size())
+                .mapToObj(index -> REPORT_KEYS_FOLDER + "/" + index + (compressReportKeyFiles ? ".json.gz" : ".js"))
+                .toList();
+        IntStream.range(0, keys.size()).parallel().forEach(index -> {
+            String key = keys.get(index);
+            try (ResultsFileWriter writer = new ResultsFileWriter(targetPath.resolve(fileNames.get(index)), compressReportKeyFiles)) {
+                if (!compressReportKeyFiles) {
+                    writer.write("register_key_data(");
                 }
+                writer.write("{");
+                writer.writeKey("name", true).writeQuoted(key);
+                // Key may have appeared after the series were built
+                if (averageResultsLog.containsKey(key)) {
+                    writeResultLog(writer.writeKey("series", false), averageResultsLog.get(key));
+                }
+                writer.writeKey("summary", false).write(summaries.get(key).toString());
+                writer.write("}");
+                if (!compressReportKeyFiles) {
+                    writer.write(");\n");
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
 
-                failures.get(key).logFailure();
+        return fileNames;
+    }
+
+    private void writeKeyFilesIndex(ResultsFileWriter writer, Collection<String> keys, List<String> fileNames) throws IOException {
+        writer.beginConst("key_files").write("{");
+        int index = 0;
+        for (String key : keys) {
+            writer.writeKey(key, index == 0).writeQuoted(fileNames.get(index));
+            index++;
+        }
+        writer.write("}").endConst();
+        writer.writeConst("key_files_compressed", String.valueOf(compressReportKeyFiles));
+    }
+
+    /**
+     * Writes time series of the resolutions finer than the embedded one into separate files, each holding up to REPORT_SERIES_CHUNK_POINTS
+     * points - so the viewer can load and draw them only for the selected time range. Each file is a single register_series_chunk() call.
+     * Levels, chunks of each level and keys of each chunk are all processed in parallel, so chunk files are written concurrently.
+     * @param targetPath        - Report folder
+     * @param seriesLevel       - Level of the series, embedded into the results file
+     * @param usersPerSecond    - Active users series with 1 second resolution
+     * @return                  - List of the written resolutions, for series_levels section of the results file
+     */
+    private JSONArray writeSeriesChunks(Path targetPath, int seriesLevel, List<ResultLog.LogEntry> usersPerSecond) {
+        Path seriesFolder = targetPath.resolve(REPORT_SERIES_FOLDER);
+        if (seriesLevel > 0) {
+            try {
+                Files.createDirectories(seriesFolder);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
         }
 
-        return failures;
+        return new JSONArray(IntStream
+            .range(0, seriesLevel)
+            .parallel()
+                .mapToObj(level -> writeSeriesLevel(seriesFolder, level, usersPerSecond))
+                .toList());
     }
 
-    private ArrayList<ResultLog.LogEntry> generateActiveUsersGraph(List<Long> timestamps) {
-        ArrayList<ResultLog.LogEntry> users = new ArrayList<>();
+    private JSONObject writeSeriesLevel(Path seriesFolder, int level, List<ResultLog.LogEntry> usersPerSecond) {
+        long resolution = AggregatedRequestLog.RESOLUTIONS_MS[level];
+        List<Long> timestamps = generateTimestampsList(resolution);
+        List<ResultLog.LogEntry> users = level == 0 ? usersPerSecond : rollUpUsersGraph(usersPerSecond, timestamps);
+        // Bucket lists are copied once per key, and then sliced by the chunks
+        HashMap<String, List<AggregatedBucket>> keyBuckets = new HashMap<>();
+        for (AggregatedRequestLog requestLog : aggregatedResults.getRequestLogs().values()) {
+            keyBuckets.put(requestLog.getName(), requestLog.getBuckets(level));
+        }
 
-        long previousStamp = 0;
-        long previousUsersCount = 0;
-        for (int index = 0; index < timestamps.size(); index++) {
-            if (index == 0) {
-                previousStamp = timestamps.get(index);
+        // First timestamp of each chunk only marks the start of it's frame - same as with the whole frame
+        int chunksCount = (Math.max(0, timestamps.size() - 1) + REPORT_SERIES_CHUNK_POINTS - 1) / REPORT_SERIES_CHUNK_POINTS;
+        IntStream.range(0, chunksCount).parallel().forEach(chunk -> {
+            int start = chunk * REPORT_SERIES_CHUNK_POINTS;
+            List<Long> chunkTimestamps = timestamps.subList(start, Math.min(timestamps.size(), start + REPORT_SERIES_CHUNK_POINTS + 1));
+            HashMap<String, ResultLog> chunkResults = keyBuckets
+                .entrySet()
+                .parallelStream()
+                    .map(entry -> generateResultLog(entry.getKey(), entry.getValue(), chunkTimestamps, REPORT_PERCENTILES))
+                    .collect(Collectors.toMap(ResultLog::getName, resultLog -> resultLog, (first, second) -> first, HashMap::new));
+
+            try (ResultsFileWriter chunkWriter = new ResultsFileWriter(seriesFolder.resolve(resolution + "-" + chunk + ".js"))) {
+                chunkWriter.write("register_series_chunk(").writeNumber(resolution).write(",").writeNumber(chunk).write(",{");
+                writeTimestampsArray(chunkWriter.writeKey("timestamps", true), chunkTimestamps);
+                chunkWriter.writeKey("users_timeline", false).writeLogEntries(users.subList(Math.min(start, users.size()), Math.min(users.size(), start + REPORT_SERIES_CHUNK_POINTS)));
+                writeAverageResultsObject(chunkWriter.writeKey("requests_averages_data", false), chunkResults);
+                chunkWriter.write("});\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        return new JSONObject()
+            .put("resolution", resolution)
+            .put("start", timestamps.isEmpty() ? 0 : timestamps.get(0))
+            .put("chunkPoints", REPORT_SERIES_CHUNK_POINTS)
+            .put("chunksCount", chunksCount);
+    }
+
+    private void writeFailures(ResultsFileWriter writer, Map<String, FailureEntry> failuresLog) throws IOException {
+        writer.beginConst("failures").write("{");
+        boolean first = true;
+        for (FailureEntry failure : failuresLog.values()) {
+            writer.writeKey(failure.getName(), first).write("{");
+            writer.writeKey("name", true).writeQuoted(failure.getName());
+            writer.writeKey("responseCode", false).writeNumber(failure.getResponseCode());
+            writer.writeKey("responseId", false).writeNumber(failure.getResponseId());
+            writer.writeKey("occurrencesCount", false).writeNumber(failure.getOccurrencesCount());
+            writer.write("}");
+            first = false;
+        }
+        writer.write("}").endConst();
+    }
+
+    /**
+     * Writes failure messages side table - an array, indexed by message id. Failures and raw samples only refer to the messages by id.
+     */
+    private void writeFailureMessages(ResultsFileWriter writer) throws IOException {
+        writer.beginConst("failure_messages").write("[");
+        List<String> messages = failureMessages.getMessages(0);
+        for (int index = 0; index < messages.size(); index++) {
+            if (index > 0) {
+                writer.write(",");
+            }
+            writer.writeQuoted(messages.get(index));
+        }
+        writer.write("]").endConst();
+    }
+
+    /**
+     * Writes verdicts of the SLO rules - own ones, followed by the ones received from the nodes.
+     */
+    private void writeSloVerdicts(ResultsFileWriter writer) throws IOException {
+        JSONArray verdicts = new JSONArray();
+        sloVerdicts.forEach(verdict -> verdicts.put(verdict.toJSON()));
+        nodeSloVerdicts.values().forEach(nodeVerdicts -> nodeVerdicts.forEach(verdict -> verdicts.put(verdict.toJSON())));
+        writer.writeConst("slo_verdicts", new JSONObject()
+            .put("failed", runFailed)
+            .put("verdicts", verdicts)
+            .toString());
+    }
+
+    /**
+     * Sets the percentiles of the report's response times table. These are precomputed for each key and the totals row, so the table
+     * is rendered without any calculations - other percentiles, picked in the viewer, are calculated from the distributions.
+     * @param percentiles - Exactly 5 percentile values, within [0, 100] range
+     */
+    public void setTablePercentiles(double... percentiles) {
+        if (percentiles.length != DEFAULT_TABLE_PERCENTILES.length) {
+            throw new IllegalArgumentException("Response times table takes exactly " + DEFAULT_TABLE_PERCENTILES.length + " percentiles, got " + percentiles.length);
+        }
+        for (double percentile : percentiles) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile value should be within [0, 100] range, got " + percentile);
+            }
+        }
+
+        tablePercentiles = percentiles.clone();
+    }
+
+    /**
+     * @return - Percentiles of the per-second series and the table ones, sorted in ascending order
+     */
+    private double[] getSummaryPercentiles() {
+        return DoubleStream
+            .concat(Arrays.stream(REPORT_PERCENTILES), Arrays.stream(tablePercentiles))
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    /**
+     * Serializes per-key run totals and response times distributions. Keys are processed in parallel.
+     * @param percentiles   - Percentiles to precompute, sorted in ascending order
+     * @return              - Map of summaries, key is a request key
+     */
+    private LinkedHashMap<String, JSONObject> generateSummaries(double[] percentiles) {
+        return aggregatedResults
+            .getRequestLogs()
+            .values()
+            .parallelStream()
+                .collect(Collectors.toMap(
+                    AggregatedRequestLog::getName,
+                    requestLog -> requestLog.toSummaryJSON(percentiles),
+                    (first, second) -> first,
+                    LinkedHashMap::new));
+    }
+
+    /**
+     * Serializes run totals of all the keys (including actions) - totals row of the response times table.
+     * @param percentiles   - Percentiles to precompute, sorted in ascending order
+     * @return              - Summary JSON string
+     */
+    private String generateSummaryTotal(double[] percentiles) {
+        AggregatedBucket total = new AggregatedBucket(0);
+        for (AggregatedRequestLog requestLog : aggregatedResults.getRequestLogs().values()) {
+            synchronized (requestLog) {
+                total.merge(requestLog.getTotals());
+            }
+        }
+
+        return AggregatedRequestLog.toSummaryJSON(total, percentiles).toString();
+    }
+
+    /**
+     * @return - Distribution of passed response times of all the keys (excluding actions), as [response time, count] pairs.
+     *           Used by the response times distribution chart, which can't wait for every key to be loaded
+     */
+    private String generateRequestsDistribution() {
+        LatencyHistogram passedResponseTimes = new LatencyHistogram();
+        for (AggregatedRequestLog requestLog : aggregatedResults.getRequestLogs().values()) {
+            if (requestLog.getName().startsWith("(ACTION)")) {
                 continue;
-            } else {
-                previousStamp = timestamps.get(index - 1);
             }
+            synchronized (requestLog) {
+                passedResponseTimes.add(requestLog.getTotals().getPassedResponseTimes());
+            }
+        }
 
-            Long currentStamp = timestamps.get(index);
-            final long prevStamp = previousStamp;
-            List<ResultLog.LogEntry> userRecords = usersOverTimeStatistics
-                .stream()
-                    .filter(record -> record.getTimeStamp() > prevStamp && (Long) record.getTimeStamp() <= currentStamp)
-                    .collect(Collectors.toList());
+        return passedResponseTimes.toValuesJSONArray().toString();
+    }
 
-            long usersCount = 0;
-            if (userRecords.size() > 0) {
-                try {
-                    // Can't go for-each route since we'd need final value - which we don't. Using regular for-loop
-                    for (ResultLog.LogEntry record : userRecords) {
-                        usersCount += record.getLogValue();
-                    }
-                } catch (Exception e) {
-                    log.error(e);
-                    log.error(ExceptionUtils.getStackTrace(e));
+    /**
+     * Writes per-key run totals and precomputed percentiles. Distributions are left out - they go into per-key files,
+     * and only the "corrected" flag tells whether the key has coordinated omission corrected ones.
+     * @param summaries - Summaries, produced by generateSummaries()
+     */
+    private void writeSummary(ResultsFileWriter writer, Map<String, JSONObject> summaries) throws IOException {
+        writer.beginConst("requests_summary").write("{");
+        boolean first = true;
+        for (Map.Entry<String, JSONObject> summary : summaries.entrySet()) {
+            JSONObject lightSummary = new JSONObject();
+            for (String field : summary.getValue().keySet()) {
+                if (!AggregatedRequestLog.SUMMARY_DISTRIBUTION_KEYS.contains(field)) {
+                    lightSummary.put(field, summary.getValue().get(field));
                 }
             }
-            // Sometimes we don't hit the correct timing with stream filter, so we end up with a 0-value
+            if (summary.getValue().has("correctedResponseTimes")) {
+                lightSummary.put("corrected", true);
+            }
+            writer.writeKey(summary.getKey(), first).write(lightSummary.toString());
+            first = false;
+        }
+        writer.write("}").endConst();
+    }
+
+    /**
+     * Writes requests_log section into a separate file of the report.
+     * @param targetPath    - Report folder
+     * @return              - Amount of written samples
+     */
+    private long writeRequestsLogFile(Path targetPath) {
+        try (ResultsFileWriter writer = new ResultsFileWriter(targetPath.resolve(REQUESTS_LOG_FILE))) {
+            return writeRequestsLog(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes raw samples (if retained) in a single sequential pass over the journal.
+     * Since journal records of different keys are interleaved - the section is declared with empty arrays first, and then filled
+     * by push() statements, each holding a chunk of up to RAW_SAMPLES_CHUNK_SIZE entries of a single key.
+     * If raw samples are not retained - sampled responses are written instead.
+     * Entry layout: start timestamp, finish timestamp, response time, failure flag, response code, failure message id (-1 if none).
+     */
+    private long writeRequestsLog(ResultsFileWriter writer) throws IOException {
+        writer.beginConst("requests_log").write("{");
+        if (!retainRawSamples || journal == null) {
+            long samplesCount = writeSampledRequestsLog(writer);
+            writer.write("}").endConst();
+            return samplesCount;
+        }
+
+        List<String> keys = journal.getKeys();
+        for (int index = 0; index < keys.size(); index++) {
+            writer.writeKey(keys.get(index), index == 0).write("[]");
+        }
+        writer.write("}").endConst();
+
+        HashMap<Integer, StringBuilder> chunks = new HashMap<>();
+        HashMap<Integer, Integer> chunkSizes = new HashMap<>();
+        long[] samplesCount = new long[1];
+        journal.read(0, (keyId, startTime, responseTime, responseCode, failed, failureMessageId) -> {
+            samplesCount[0]++;
+            StringBuilder chunk = chunks.computeIfAbsent(keyId, id -> new StringBuilder());
+            int chunkSize = chunkSizes.merge(keyId, 1, Integer::sum);
+            if (chunkSize > 1) {
+                chunk.append(",");
+            }
+            chunk
+                .append("[")
+                .append(startTime).append(",")
+                .append(startTime + responseTime).append(",")
+                .append(responseTime).append(",")
+                .append(failed).append(",")
+                .append(responseCode).append(",")
+                .append(failureMessageId)
+                .append("]");
+
+            if (chunkSize >= RAW_SAMPLES_CHUNK_SIZE) {
+                writeRequestsLogChunk(writer, keyId, chunk);
+                chunkSizes.put(keyId, 0);
+            }
+        });
+        for (Map.Entry<Integer, StringBuilder> chunk : chunks.entrySet()) {
+            if (chunkSizes.get(chunk.getKey()) > 0) {
+                writeRequestsLogChunk(writer, chunk.getKey(), chunk.getValue());
+            }
+        }
+
+        return samplesCount[0];
+    }
+
+    private long writeSampledRequestsLog(ResultsFileWriter writer) throws IOException {
+        boolean first = true;
+        long samplesCount = 0;
+        StringBuilder entries = new StringBuilder();
+        for (RawSamplesReservoir reservoir : rawSamplesReservoirs.values()) {
+            entries.setLength(0);
+            for (RawSamplesReservoir.Sample sample : reservoir.getSamples()) {
+                samplesCount++;
+                if (entries.length() > 0) {
+                    entries.append(",");
+                }
+                entries
+                    .append("[")
+                    .append(sample.startTime).append(",")
+                    .append(sample.startTime + sample.responseTime).append(",")
+                    .append(sample.responseTime).append(",")
+                    .append(sample.failed).append(",")
+                    .append(sample.responseCode).append(",")
+                    .append(sample.failureMessageId)
+                    .append("]");
+            }
+            writer.writeKey(reservoir.getName(), first).write("[").write(entries.toString()).write("]");
+            first = false;
+        }
+
+        return samplesCount;
+    }
+
+    private void writeRequestsLogChunk(ResultsFileWriter writer, int keyId, StringBuilder chunk) throws IOException {
+        writer.write("requests_log[").writeQuoted(journal.getKey(keyId)).write("].push(").write(chunk.toString()).write(");\n");
+        chunk.setLength(0);
+    }
+
+    /**
+     * Sums up active users records within each second of the frame. Records are sorted once and swept along with the timestamps.
+     * @param timestamps    - Timestamps frame with 1 second step
+     * @return              - Active users series
+     */
+    private ArrayList<ResultLog.LogEntry> generateActiveUsersGraph(List<Long> timestamps) {
+        ArrayList<ResultLog.LogEntry> users = new ArrayList<>(timestamps.size());
+        ArrayList<ResultLog.LogEntry> records;
+        synchronized (usersOverTimeStatistics) {
+            records = new ArrayList<>(usersOverTimeStatistics);
+        }
+        records.sort(Comparator.comparingLong(ResultLog.LogEntry::getTimeStamp));
+
+        int recordIndex = 0;
+        long previousUsersCount = 0;
+        for (int index = 1; index < timestamps.size(); index++) {
+            long previousStamp = timestamps.get(index - 1);
+            long currentStamp = timestamps.get(index);
+
+            // Skipping records that precede the current second
+            while (recordIndex < records.size() && records.get(recordIndex).getTimeStamp() <= previousStamp) {
+                recordIndex++;
+            }
+            long usersCount = 0;
+            while (recordIndex < records.size() && records.get(recordIndex).getTimeStamp() <= currentStamp) {
+                usersCount += records.get(recordIndex).getLogValue();
+                recordIndex++;
+            }
+
+            // Sometimes we don't hit the correct timing with monitor tick, so we end up with a 0-value
             // In this case we will assume that the amount of users was the same as the one in the previous tick
             if (usersCount == 0 && previousUsersCount != 0)
                 usersCount = previousUsersCount;
@@ -533,6 +1893,30 @@ public class DataCollector {
         return users;
     }
 
+    /**
+     * Averages per-second active users series within each step of a coarser frame.
+     * @param usersPerSecond    - Series, produced by generateActiveUsersGraph()
+     * @param timestamps        - Coarser timestamps frame
+     * @return                  - Active users series of the frame
+     */
+    private static List<ResultLog.LogEntry> rollUpUsersGraph(List<ResultLog.LogEntry> usersPerSecond, List<Long> timestamps) {
+        List<ResultLog.LogEntry> users = new ArrayList<>(timestamps.size());
+        int entryIndex = 0;
+        for (int index = 1; index < timestamps.size(); index++) {
+            long currentStamp = timestamps.get(index);
+            long usersSum = 0;
+            long entriesCount = 0;
+            while (entryIndex < usersPerSecond.size() && usersPerSecond.get(entryIndex).getTimeStamp() <= currentStamp) {
+                usersSum += usersPerSecond.get(entryIndex).getLogValue();
+                entriesCount++;
+                entryIndex++;
+            }
+            users.add(new ResultLog.LogEntry(currentStamp, entriesCount == 0 ? 0 : Math.round((double) usersSum / entriesCount)));
+        }
+
+        return users;
+    }
+
     private static String secondsToTimeString(int timeInSeconds) {
         int seconds = 0; int minutes = 0; int hours = 0;
         while (timeInSeconds > 60) {
@@ -550,4 +1934,19 @@ public class DataCollector {
                              minutes >= 10 ? String.valueOf(minutes) : "0" + String.valueOf(minutes), 
                              seconds >= 10 ? String.valueOf(seconds) : "0" + String.valueOf(seconds));
     }
+
+    /**
+     * Per-key storages, cached by collection thread. Same instances as the ones in the keyed maps.
+     */
+    private static class KeyStorages {
+        private final AggregatedRequestLog      requestLog;
+        private final RollingStatistics         rollingStatistics;
+        private final RawSamplesReservoir       rawSamplesReservoir;
+
+        private KeyStorages(AggregatedRequestLog requestLog, RollingStatistics rollingStatistics, RawSamplesReservoir rawSamplesReservoir) {
+            this.requestLog = requestLog;
+            this.rollingStatistics = rollingStatistics;
+            this.rawSamplesReservoir = rawSamplesReservoir;
+        }
+    }
 }
@@ -6,13 +6,14 @@ import lombok.Getter;
 public class FailureEntry {
     private String name;
     private int responseCode;
-    private String response;
+    // Id of the response content in FailureMessageDictionary
+    private int responseId;
     private long occurrencesCount;
 
-    public FailureEntry(String name, int responseCode, String responseContent) {
+    public FailureEntry(String name, int responseCode, int responseId) {
         this.name           = name;
         this.responseCode   = responseCode;
-        this.response       = responseContent;
+        this.responseId     = responseId;
         occurrencesCount    = 0;
     }
 
@@ -0,0 +1,119 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Interned storage of failure messages (response bodies and failure causes).
+ * During an outage most of the failed samples carry the very same error page - so instead of keeping a copy per sample,
+ * messages are normalized and stored once, and samples, failure entries and hub submissions only carry an int id.
+ * Ids are dense and assigned in order of appearance, which allows sending only the new messages as a delta.
+ */
+public class FailureMessageDictionary {
+    public static final int                             NO_MESSAGE          = -1;
+    // Anything longer is truncated - error pages rarely need more than that to be recognized
+    public static final int                             MAX_MESSAGE_LENGTH  = 4096;
+    private static final Pattern                        SPACES_PATTERN      = Pattern.compile("[ \\t\\x0B\\f]+");
+
+    private final ConcurrentHashMap<String, Integer>    ids                 = new ConcurrentHashMap<>();
+    private final ArrayList<String>                     messages            = new ArrayList<>();
+
+    /**
+     * Returns an id of given message, registering it if it was not seen before.
+     * @param message   - Raw failure message
+     * @return          - Message id
+     */
+    public int idFor(String message) {
+        String normalized = normalize(message);
+        Integer id = ids.get(normalized);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (messages) {
+            return ids.computeIfAbsent(normalized, value -> {
+                messages.add(value);
+                return messages.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * @param id    - Message id
+     * @return      - Normalized message, or empty string if id is NO_MESSAGE or unknown
+     */
+    public String get(int id) {
+        synchronized (messages) {
+            return id < 0 || id >= messages.size() ? "" : messages.get(id);
+        }
+    }
+
+    public int size() {
+        synchronized (messages) {
+            return messages.size();
+        }
+    }
+
+    /**
+     * @param fromId    - First id to include
+     * @return          - Messages with ids starting from fromId, in id order
+     */
+    public List<String> getMessages(int fromId) {
+        synchronized (messages) {
+            return fromId >= messages.size() ? new ArrayList<>() : new ArrayList<>(messages.subList(Math.max(0, fromId), messages.size()));
+        }
+    }
+
+    /**
+     * Builds a delta for hub submission.
+     * @param fromId    - First id to include
+     * @return          - JSONObject, where key is a message id and value is the message
+     */
+    public JSONObject toJSON(int fromId) {
+        JSONObject result = new JSONObject();
+        List<String> delta = getMessages(fromId);
+        for (int index = 0; index < delta.size(); index++) {
+            result.put(String.valueOf(fromId + index), delta.get(index));
+        }
+
+        return result;
+    }
+
+    /**
+     * @return - All messages as an array, indexed by id. Used as a side table by report viewer
+     */
+    public JSONArray toJSONArray() {
+        return new JSONArray(getMessages(0));
+    }
+
+    public void clear() {
+        synchronized (messages) {
+            ids.clear();
+            messages.clear();
+        }
+    }
+
+    /**
+     * Brings a message to it's canonical form, so the same failure reported in slightly different ways is stored once.
+     * Trims it, unifies line breaks, collapses repeating spaces and truncates it to MAX_MESSAGE_LENGTH.
+     * @param message   - Raw message
+     * @return          - Normalized message
+     */
+    public static String normalize(String message) {
+        if (message == null || message.isEmpty()) {
+            return "";
+        }
+
+        String result = SPACES_PATTERN
+            .matcher(message.replace("\r\n", "\n").replace('\r', '\n'))
+            .replaceAll(" ")
+            .strip();
+
+        return result.length() > MAX_MESSAGE_LENGTH ? result.substring(0, MAX_MESSAGE_LENGTH) + "..." : result;
+    }
+}
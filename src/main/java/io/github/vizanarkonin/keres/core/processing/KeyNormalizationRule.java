@@ -0,0 +1,55 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites a request name before it's turned into a request key - i.e. templates dynamic parts of URLs, so "/users/42/orders"
+ * and "/users/43/orders" are grouped under the same "/users/{id}/orders" key. Rules are applied by MetricKeys, in order of registration.
+ * Built-in rules only touch whole path segments, so names which are not URLs are left as is:
+ * <pre>
+ * KeresController.setRequestKeyNormalizationRules(KeyNormalizationRule.UUID_SEGMENTS, KeyNormalizationRule.NUMERIC_SEGMENTS);
+ * KeresController.addRequestKeyNormalizationRule(KeyNormalizationRule.replace("token=[^&amp;]+", "token={token}"));
+ * </pre>
+ */
+@FunctionalInterface
+public interface KeyNormalizationRule {
+    // "/items/3fa85f64-5717-4562-b3fc-2c963f66afa6" -> "/items/{uuid}"
+    public static final KeyNormalizationRule    UUID_SEGMENTS       = pathSegments("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}", "{uuid}");
+    // "/users/42/orders/7" -> "/users/{id}/orders/{id}"
+    public static final KeyNormalizationRule    NUMERIC_SEGMENTS    = pathSegments("\\d+", "{id}");
+    // "/search?q=shoes" -> "/search"
+    public static final KeyNormalizationRule    QUERY_STRING        = name -> {
+        int index = name.indexOf('?');
+        return index < 0 ? name : name.substring(0, index);
+    };
+
+    /**
+     * @param name  - Request name (or the result of the previous rule)
+     * @return      - Normalized name
+     */
+    String apply(String name);
+
+    /**
+     * @param regex         - Regular expression to look for
+     * @param replacement   - Replacement of each match. May refer to the groups, same as String.replaceAll()
+     * @return              - Rule, replacing every match of the expression
+     */
+    public static KeyNormalizationRule replace(String regex, String replacement) {
+        Pattern pattern = Pattern.compile(regex);
+
+        return name -> pattern.matcher(name).replaceAll(replacement);
+    }
+
+    /**
+     * @param segmentRegex  - Regular expression, matching the whole path segment
+     * @param placeholder   - Replacement of the segment
+     * @return              - Rule, replacing each path segment that matches the expression. Names without slashes are skipped without matching
+     */
+    public static KeyNormalizationRule pathSegments(String segmentRegex, String placeholder) {
+        Pattern pattern = Pattern.compile("(?<=/)(?:" + segmentRegex + ")(?=[/?#;]|$)");
+        String replacement = Matcher.quoteReplacement(placeholder);
+
+        return name -> name.indexOf('/') < 0 ? name : pattern.matcher(name).replaceAll(replacement);
+    }
+}
@@ -0,0 +1,345 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import org.json.JSONArray;
+
+import io.github.vizanarkonin.keres.core.grpc.Histogram;
+
+/**
+ * Fixed-size log-linear histogram of response times (in milliseconds).
+ * Values below 2^PRECISION_BITS are recorded exactly. Larger values are grouped by their power of two, and each group is split into
+ * 2^PRECISION_BITS linear sub-buckets - so any value can be restored with a relative error of at most 1/2^(PRECISION_BITS + 1).
+ * Groups are allocated lazily, so a histogram only pays for the value ranges it has actually seen.
+ * NOTE: This type is not thread-safe - owners are expected to synchronize access on their own.
+ */
+public class LatencyHistogram {
+    public static final int     PRECISION_BITS  = 6;
+    private static final int    SUB_BUCKETS     = 1 << PRECISION_BITS;
+    private static final int    MAX_MAGNITUDE   = 40;
+    private static final int    GROUPS_COUNT    = MAX_MAGNITUDE - PRECISION_BITS + 1;
+    // Anything above this value (~34 years in ms) is clamped into the last bucket
+    public static final long    HIGHEST_VALUE   = (1L << MAX_MAGNITUDE) - 1;
+
+    private final long[][]      groups          = new long[GROUPS_COUNT][];
+    private long                totalCount      = 0;
+    private long                totalSum        = 0;
+    private long                minValue        = Long.MAX_VALUE;
+    private long                maxValue        = 0;
+
+    public void recordValue(long value) {
+        recordValue(value, 1);
+    }
+
+    public void recordValue(long value, long count) {
+        if (count <= 0) {
+            return;
+        }
+        if (value < 0) {
+            value = 0;
+        }
+
+        addAtIndex(indexOf(value), count);
+        totalSum += value * count;
+        minValue = Math.min(minValue, value);
+        maxValue = Math.max(maxValue, value);
+    }
+
+    /**
+     * Adds all the counts from another histogram to this one.
+     * Merging is associative and lossless, which makes it safe to combine histograms from different sources in any order.
+     * @param other - Histogram to merge in
+     */
+    public void add(LatencyHistogram other) {
+        if (other == null || other.totalCount == 0) {
+            return;
+        }
+
+        for (int group = 0; group < GROUPS_COUNT; group++) {
+            long[] counts = other.groups[group];
+            if (counts == null) {
+                continue;
+            }
+            for (int sub = 0; sub < SUB_BUCKETS; sub++) {
+                if (counts[sub] > 0) {
+                    addAtIndex((group << PRECISION_BITS) + sub, counts[sub]);
+                }
+            }
+        }
+        totalSum += other.totalSum;
+        minValue = Math.min(minValue, other.minValue);
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.add(this);
+
+        return copy;
+    }
+
+    public void reset() {
+        for (int group = 0; group < GROUPS_COUNT; group++) {
+            groups[group] = null;
+        }
+        totalCount = 0;
+        totalSum = 0;
+        minValue = Long.MAX_VALUE;
+        maxValue = 0;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getTotalSum() {
+        return totalSum;
+    }
+
+    public long getMinValue() {
+        return totalCount == 0 ? 0 : minValue;
+    }
+
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    public long getMean() {
+        return totalCount == 0 ? 0 : totalSum / totalCount;
+    }
+
+    /**
+     * Returns the value at given percentile. Result is the middle of the matching bucket, clamped by the real min and max values.
+     * @param percentile    - Percentile, in range of 0 to 100
+     * @return              - Value at given percentile, or 0 if histogram is empty
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        if (percentile <= 0) {
+            return getMinValue();
+        }
+        if (percentile >= 100) {
+            return maxValue;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int group = 0; group < GROUPS_COUNT; group++) {
+            long[] counts = groups[group];
+            if (counts == null) {
+                continue;
+            }
+            for (int sub = 0; sub < SUB_BUCKETS; sub++) {
+                seen += counts[sub];
+                if (seen >= rank) {
+                    long value = representativeValueAt((group << PRECISION_BITS) + sub);
+                    return Math.max(getMinValue(), Math.min(maxValue, value));
+                }
+            }
+        }
+
+        return maxValue;
+    }
+
+    /**
+     * Returns the values at several percentiles in a single pass over the buckets.
+     * @param percentiles   - Percentiles, in range of 0 to 100, sorted in ascending order
+     * @return              - Values at given percentiles, in the same order. Zeros if histogram is empty
+     */
+    public long[] getValuesAtPercentiles(double[] percentiles) {
+        long[] result = new long[percentiles.length];
+        if (totalCount == 0) {
+            return result;
+        }
+
+        int index = 0;
+        // Edge cases are resolved without the sweep, just like in getValueAtPercentile()
+        while (index < percentiles.length && percentiles[index] <= 0) {
+            result[index++] = getMinValue();
+        }
+        long seen = 0;
+        for (int group = 0; group < GROUPS_COUNT && index < percentiles.length && percentiles[index] < 100; group++) {
+            long[] counts = groups[group];
+            if (counts == null) {
+                continue;
+            }
+            for (int sub = 0; sub < SUB_BUCKETS && index < percentiles.length; sub++) {
+                seen += counts[sub];
+                while (index < percentiles.length && percentiles[index] < 100 && seen >= Math.max(1, (long) Math.ceil(percentiles[index] / 100.0 * totalCount))) {
+                    long value = representativeValueAt((group << PRECISION_BITS) + sub);
+                    result[index++] = Math.max(getMinValue(), Math.min(maxValue, value));
+                }
+            }
+        }
+        while (index < percentiles.length) {
+            result[index++] = maxValue;
+        }
+
+        return result;
+    }
+
+    /**
+     * Iterates over all non-empty buckets in ascending order of values.
+     * @param consumer - Consumer, receiving bucket index and it's count
+     */
+    public void forEachBucket(BucketConsumer consumer) {
+        for (int group = 0; group < GROUPS_COUNT; group++) {
+            long[] counts = groups[group];
+            if (counts == null) {
+                continue;
+            }
+            for (int sub = 0; sub < SUB_BUCKETS; sub++) {
+                if (counts[sub] > 0) {
+                    consumer.accept((group << PRECISION_BITS) + sub, counts[sub]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Serializes non-empty buckets as [index, count] pairs. Used for lossless transfer between node and hub.
+     * Min, max and sum values are serialized separately by the owner.
+     * @return - JSONArray with bucket pairs
+     */
+    public JSONArray toJSONArray() {
+        JSONArray result = new JSONArray();
+        forEachBucket((index, count) -> result.put(new JSONArray().put(index).put(count)));
+
+        return result;
+    }
+
+    /**
+     * Serializes non-empty buckets as [value, count] pairs - used by the report viewer, which has no knowledge of the bucket layout.
+     * @return - JSONArray with value pairs
+     */
+    public JSONArray toValuesJSONArray() {
+        JSONArray result = new JSONArray();
+        forEachBucket((index, count) -> result.put(new JSONArray().put(representativeValueAt(index)).put(count)));
+
+        return result;
+    }
+
+    /**
+     * Restores a histogram from it's serialized form. Reverse of toJSONArray().
+     * @param buckets   - [index, count] pairs
+     * @param sum       - Sum of all recorded values
+     * @param min       - Lowest recorded value
+     * @param max       - Highest recorded value
+     * @return          - Restored histogram
+     */
+    public static LatencyHistogram fromJSONArray(JSONArray buckets, long sum, long min, long max) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int index = 0; index < buckets.length(); index++) {
+            JSONArray pair = buckets.getJSONArray(index);
+            histogram.addAtIndex(pair.getInt(0), pair.getLong(1));
+        }
+        if (histogram.totalCount > 0) {
+            histogram.totalSum = sum;
+            histogram.minValue = min;
+            histogram.maxValue = max;
+        }
+
+        return histogram;
+    }
+
+    /**
+     * Serializes histogram into it's protobuf form. Bucket indices are delta-encoded, so sparse histograms stay compact.
+     * @return - Histogram message
+     */
+    public Histogram toProto() {
+        Histogram.Builder builder = Histogram.newBuilder()
+            .setSum(totalSum)
+            .setMin(getMinValue())
+            .setMax(maxValue);
+        int[] previousIndex = new int[] { 0 };
+        forEachBucket((index, count) -> {
+            builder.addIndexDeltas(index - previousIndex[0]).addCounts(count);
+            previousIndex[0] = index;
+        });
+
+        return builder.build();
+    }
+
+    /**
+     * Restores a histogram from it's protobuf form. Reverse of toProto().
+     * @param input - Histogram message
+     * @return      - Restored histogram
+     */
+    public static LatencyHistogram fromProto(Histogram input) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int index = 0;
+        for (int position = 0; position < input.getIndexDeltasCount(); position++) {
+            index += input.getIndexDeltas(position);
+            histogram.addAtIndex(index, input.getCounts(position));
+        }
+        if (histogram.totalCount > 0) {
+            histogram.totalSum = input.getSum();
+            histogram.minValue = input.getMin();
+            histogram.maxValue = input.getMax();
+        }
+
+        return histogram;
+    }
+
+    // ##########################################################################################
+    // Bucket layout
+    // ##########################################################################################
+
+    public static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return value < 0 ? 0 : (int) value;
+        }
+        if (value > HIGHEST_VALUE) {
+            value = HIGHEST_VALUE;
+        }
+
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - PRECISION_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+
+        return ((shift + 1) << PRECISION_BITS) + subBucket;
+    }
+
+    public static long lowestValueAt(int index) {
+        int group = index >>> PRECISION_BITS;
+        int subBucket = index & (SUB_BUCKETS - 1);
+        if (group == 0) {
+            return subBucket;
+        }
+
+        return ((long) (SUB_BUCKETS + subBucket)) << (group - 1);
+    }
+
+    public static long bucketWidthAt(int index) {
+        int group = index >>> PRECISION_BITS;
+
+        return group == 0 ? 1 : 1L << (group - 1);
+    }
+
+    public static long highestValueAt(int index) {
+        return lowestValueAt(index) + bucketWidthAt(index) - 1;
+    }
+
+    public static long representativeValueAt(int index) {
+        return lowestValueAt(index) + bucketWidthAt(index) / 2;
+    }
+
+    private void addAtIndex(int index, long count) {
+        int group = index >>> PRECISION_BITS;
+        if (group >= GROUPS_COUNT) {
+            group = GROUPS_COUNT - 1;
+            index = (group << PRECISION_BITS) + SUB_BUCKETS - 1;
+        }
+        if (groups[group] == null) {
+            groups[group] = new long[SUB_BUCKETS];
+        }
+
+        groups[group][index & (SUB_BUCKETS - 1)] += count;
+        totalCount += count;
+    }
+
+    @FunctionalInterface
+    public static interface BucketConsumer {
+        void accept(int index, long count);
+    }
+}
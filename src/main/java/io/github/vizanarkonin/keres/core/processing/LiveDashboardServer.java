@@ -0,0 +1,365 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.github.vizanarkonin.keres.core.executors.KeresUser;
+
+/**
+ * Embedded HTTP server with a live dashboard of the run in progress - charts of throughput, errors, response times and active users.
+ * Once a second the last complete second of each key's rolling statistics is turned into a delta event and pushed to all connected
+ * browsers over server-sent events (/events). Deltas are built from pre-aggregated state, same as console statistics, so
+ * connected dashboards add no work to the ingestion path. Dashboard page itself re-uses report viewer's resources.
+ * Only used in standalone mode - i.e. "http://localhost:9465/".
+ */
+public class LiveDashboardServer {
+    private static final Logger                 log                     = LogManager.getLogger("LiveDashboardServer");
+    public static final String                  EVENTS_PATH             = "/events";
+    private static final String                 PAGE_RESOURCE           = "report-viewer/live.html";
+    private static final String                 RESOURCES_FOLDER        = "report-viewer/res/";
+    // Amount of the latest deltas, replayed to a newly connected dashboard - so it doesn't start with empty charts
+    public static final int                     HISTORY_SIZE            = 600;
+    // Events, queued for a single dashboard. Dashboards that fall this far behind (i.e. a suspended laptop) are dropped
+    private static final int                    STREAM_QUEUE_SIZE       = 30;
+    // Time stop() waits for the dashboards to receive the "finished" event, before their connections are cut
+    private static final long                   STOP_TIMEOUT_MS         = 1000;
+    private static final String                 FINISHED_EVENT          = "event: finished\ndata: {}\n\n";
+
+    private final DataCollector                 collector;
+    private final String                        host;
+    private final int                           port;
+    private final ArrayDeque<String>            history                 = new ArrayDeque<>();
+    private final List<EventStream>             streams                 = new CopyOnWriteArrayList<>();
+    private HttpServer                          server;
+    private ExecutorService                     executor;
+    private ScheduledExecutorService            publisher;
+    private long                                lastPublishedSecond     = -1;
+
+    /**
+     * @param collector - Collector to show the statistics of
+     * @param host      - Address to bind to, i.e. "127.0.0.1" to only serve local browsers, or "0.0.0.0" for all interfaces
+     * @param port      - Port to listen on
+     */
+    public LiveDashboardServer(DataCollector collector, String host, int port) {
+        this.collector = collector;
+        this.host = host;
+        this.port = port;
+    }
+
+    public LiveDashboardServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext("/", this::handleResource);
+        server.createContext(EVENTS_PATH, this::handleEvents);
+        // Requests are rare and cheap - event streams are only registered here, and written to by their own writer threads
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LiveDashboardServer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+        publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LiveDashboardPublisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Deltas are published a bit after the second is complete - responses finished at the end of it may still be queued
+        long delay = 1000 - Instant.now().toEpochMilli() % 1000 + 250;
+        publisher.scheduleAtFixedRate(this::publish, delay, 1000, TimeUnit.MILLISECONDS);
+        log.info("Serving live dashboard on http://" + host + ":" + server.getAddress().getPort() + "/");
+
+        return this;
+    }
+
+    /**
+     * Notifies connected dashboards that the run is finished and stops the server.
+     * Takes up to STOP_TIMEOUT_MS - dashboards that haven't received the notification by then are disconnected.
+     */
+    public void stop() {
+        if (server != null) {
+            publisher.shutdownNow();
+            try { publisher.awaitTermination(1, TimeUnit.SECONDS); } catch (InterruptedException ignored) {}
+            synchronized (history) {
+                streams.forEach(stream -> stream.finish(FINISHED_EVENT));
+            }
+            long deadline = System.currentTimeMillis() + STOP_TIMEOUT_MS;
+            for (EventStream stream : streams) {
+                stream.awaitFinished(deadline);
+            }
+            streams.clear();
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * @return - Port the server listens on. Differs from the requested one if it was 0
+     */
+    public int getPort() {
+        return server == null ? port : server.getAddress().getPort();
+    }
+
+    // ##########################################################################################
+    // Handlers
+    // ##########################################################################################
+
+    private void handleResource(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            String resourceName = path.equals("/") || path.equals("/index.html") ?
+                PAGE_RESOURCE :
+                path.startsWith("/res/") && !path.contains("..") ? RESOURCES_FOLDER + path.substring("/res/".length()) : null;
+            InputStream resource = resourceName == null ? null : getClass().getClassLoader().getResourceAsStream(resourceName);
+            if (resource == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            byte[] body;
+            try (resource) {
+                body = resource.readAllBytes();
+            }
+            exchange.getResponseHeaders().set("Content-Type", contentTypeOf(resourceName));
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        } catch (Exception e) {
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Opens an event stream. Exchange is kept open - the stream is written to by it's own writer thread, and closed once the client
+     * disconnects, falls too far behind or the run is finished.
+     */
+    private void handleEvents(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        EventStream stream = new EventStream(exchange);
+        // History is queued under the same lock the publisher uses - so no delta is skipped or sent twice. Nothing is written to the socket here
+        synchronized (history) {
+            // Starts with a comment line, so the response is flushed to the client even with no history yet
+            StringBuilder replay = new StringBuilder(": connected\n\n");
+            history.forEach(replay::append);
+            stream.offer(replay.toString());
+            streams.add(stream);
+        }
+        stream.start();
+    }
+
+    // ##########################################################################################
+    // Publishing
+    // ##########################################################################################
+
+    private void publish() {
+        try {
+            long now = Instant.now().toEpochMilli();
+            long second = Math.floorDiv(now, 1000) - 1;
+            if (second == lastPublishedSecond) {
+                return;
+            }
+            lastPublishedSecond = second;
+
+            String event = "id: " + second + "\ndata: " + buildDelta(now, second * 1000).toString() + "\n\n";
+            synchronized (history) {
+                history.addLast(event);
+                if (history.size() > HISTORY_SIZE) {
+                    history.removeFirst();
+                }
+                // Events are only queued - a stalled dashboard can't hold up the others
+                for (EventStream stream : streams) {
+                    if (!stream.offer(event)) {
+                        log.warn("Live dashboard client has fallen " + STREAM_QUEUE_SIZE + " events behind - disconnecting it");
+                        stream.abort();
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to publish live dashboard update");
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    /**
+     * Builds a delta of the last complete second - counters and response time percentiles of each key with any responses, and the totals.
+     * @param now       - Current timestamp
+     * @param timeStamp - Timestamp of the second the delta covers
+     * @return          - Delta, i.e. {"timeStamp":..., "users":..., "total":{...}, "keys":{"name":{...}}}
+     */
+    JSONObject buildDelta(long now, long timeStamp) {
+        RollingStatistics.Window total = new RollingStatistics.Window(1);
+        JSONObject keys = new JSONObject();
+        for (Map.Entry<String, RollingStatistics> entry : collector.getRollingStatistics().entrySet()) {
+            RollingStatistics.Window window = entry.getValue().getWindows(now, 1)[0];
+            if (window.getRequestsCount() == 0) {
+                continue;
+            }
+            keys.put(entry.getKey(), windowJSON(window));
+            // Actions cover the same requests once again
+            if (!entry.getKey().startsWith("(ACTION)")) {
+                total.merge(window);
+            }
+        }
+
+        return new JSONObject()
+            .put("timeStamp", timeStamp)
+            .put("users", KeresUser.getAllRunners().size())
+            .put("percentiles", new JSONArray(Arrays.stream(DataCollector.LIVE_PERCENTILES).mapToObj(AggregatedRequestLog::percentileKey).toList()))
+            .put("total", windowJSON(total))
+            .put("keys", keys)
+            .put("queueDepth", collector.getQueueDepth())
+            .put("dropped", collector.getDroppedResponsesCount());
+    }
+
+    private static JSONObject windowJSON(RollingStatistics.Window window) {
+        LatencyHistogram responseTimes = window.getResponseTimes();
+        JSONObject percentiles = new JSONObject();
+        if (window.getRequestsCount() > 0) {
+            long[] values = responseTimes.getValuesAtPercentiles(DataCollector.LIVE_PERCENTILES);
+            for (int index = 0; index < values.length; index++) {
+                percentiles.put(AggregatedRequestLog.percentileKey(DataCollector.LIVE_PERCENTILES[index]), values[index]);
+            }
+        }
+
+        return new JSONObject()
+            .put("requests", window.getRequestsCount())
+            .put("failures", window.getFailuresCount())
+            .put("average", responseTimes.getMean())
+            .put("percentiles", percentiles);
+    }
+
+    private static String contentTypeOf(String resourceName) {
+        if (resourceName.endsWith(".html"))     return "text/html; charset=utf-8";
+        if (resourceName.endsWith(".js"))       return "text/javascript; charset=utf-8";
+        if (resourceName.endsWith(".css"))      return "text/css; charset=utf-8";
+        if (resourceName.endsWith(".png"))      return "image/png";
+        if (resourceName.endsWith(".gif"))      return "image/gif";
+
+        return "application/octet-stream";
+    }
+
+    /**
+     * Single connected dashboard. Events are put into a bounded queue, which is written into the socket by stream's own writer thread.
+     */
+    private class EventStream {
+        private final HttpExchange                  exchange;
+        private final OutputStream                  output;
+        private final ArrayBlockingQueue<String>    queue       = new ArrayBlockingQueue<>(STREAM_QUEUE_SIZE);
+        private final Thread                        writer;
+        private volatile boolean                    finishing   = false;
+
+        private EventStream(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.output = exchange.getResponseBody();
+            this.writer = new Thread(this::write, "LiveDashboardStream");
+            this.writer.setDaemon(true);
+        }
+
+        private void start() {
+            writer.start();
+        }
+
+        /**
+         * @return - Whether the event was queued. False if the queue is full
+         */
+        private boolean offer(String event) {
+            return queue.offer(event);
+        }
+
+        /**
+         * Queues the last event. Writer thread exits once the queue is written.
+         */
+        private void finish(String event) {
+            queue.offer(event);
+            finishing = true;
+        }
+
+        /**
+         * Waits for the writer thread to exit, and disconnects the client if it doesn't by the deadline.
+         * @param deadline - Timestamp to wait until
+         */
+        private void awaitFinished(long deadline) {
+            try {
+                writer.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException ignored) {}
+            if (writer.isAlive()) {
+                abort();
+            }
+        }
+
+        /**
+         * Disconnects the client. Interrupting the writer closes the socket, even if it's blocked on a write.
+         */
+        private void abort() {
+            streams.remove(this);
+            writer.interrupt();
+        }
+
+        private void write() {
+            try {
+                while (true) {
+                    String event = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (event == null) {
+                        if (finishing && queue.isEmpty()) {
+                            break;
+                        }
+                        continue;
+                    }
+                    output.write(event.getBytes(StandardCharsets.UTF_8));
+                    output.flush();
+                }
+            } catch (IOException e) {
+                // Client has disconnected, or the stream was aborted while writing
+            } catch (InterruptedException e) {
+                // Stream was aborted while waiting. Interrupt status is kept, so closing it doesn't block on a stalled socket either
+                Thread.currentThread().interrupt();
+            } finally {
+                streams.remove(this);
+                try { output.close(); } catch (IOException ignored) {}
+                exchange.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Process-wide registry of request keys - "({method}){name}" strings results are grouped by.
+ * Requests and actions resolve their key id when they are built, and responses carry that id - so collection thread
+ * doesn't need to build the key string and hash it for every sample, and can keep per-key state in arrays instead.
+ * Requests are usually built per call, so lookups are on the user threads' hot path: raw names are cached ahead of the normalization,
+ * and the id to key lookup doesn't take a lock.
+ * Ids are dense, assigned in order of appearance and never released.
+ * Cardinality is guarded - request names can be normalized with KeyNormalizationRule-s before the lookup (none are set by default,
+ * so existing key names don't change), and once the amount of keys reaches maxKeys, names that are not registered yet are all recorded
+ * under a single overflow key of their method.
+ */
+public class MetricKeys {
+    private static final Logger                                                             log                 = LogManager.getLogger("MetricKeys");
+    public static final int                                                                 NO_KEY              = -1;
+    public static final int                                                                 DEFAULT_MAX_KEYS    = 5000;
+    // Name of the overflow key, i.e. "(GET)(other requests)"
+    public static final String                                                              OVERFLOW_NAME       = "(other requests)";
+    // Maximum amount of cached raw names. Past it, names are normalized on every lookup
+    public static final int                                                                 MAX_RAW_NAMES       = 20000;
+
+    // Key is a request method, value maps normalized request names into ids. Nested maps avoid building a key string for the lookup
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, Integer>>     ids                 = new ConcurrentHashMap<>();
+    // Same as above, but for the names as they were requested. Names resolved into an overflow key are not cached
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, Integer>>     rawIds              = new ConcurrentHashMap<>();
+    private static final AtomicInteger                                                      rawIdsCount         = new AtomicInteger();
+    private static final Object                                                             lock                = new Object();
+    // Copied on write - keys are only added until the set of requests settles, and then only read (for every JFR event)
+    private static volatile String[]                                                        keys                = new String[0];
+    private static final List<KeyNormalizationRule>                                         normalizationRules  = new CopyOnWriteArrayList<>();
+    // 0 or less disables the limit
+    private static volatile int                                                             maxKeys             = DEFAULT_MAX_KEYS;
+    private static volatile boolean                                                         limitReached        = false;
+    // Amount of lookups, resolved into an overflow key
+    private static final LongAdder                                                          overflowedCount     = new LongAdder();
+
+    private MetricKeys() {}
+
+    /**
+     * Returns an id of given request key, registering it if it was not seen before.
+     * @param method    - Request method (or ACTION for actions)
+     * @param name      - Request name. Normalized before the lookup
+     * @return          - Key id. Id of method's overflow key if the name is new and the keys limit is reached
+     */
+    public static int idFor(String method, String name) {
+        ConcurrentHashMap<String, Integer> rawNames = rawIds.get(method);
+        Integer id = rawNames == null ? null : rawNames.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        id = resolve(method, normalize(name));
+        if (!isOverflowKey(id) && rawIdsCount.get() < MAX_RAW_NAMES) {
+            if (rawIds.computeIfAbsent(method, value -> new ConcurrentHashMap<>()).putIfAbsent(name, id) == null) {
+                rawIdsCount.incrementAndGet();
+            }
+        }
+
+        return id;
+    }
+
+    private static int resolve(String method, String normalizedName) {
+        ConcurrentHashMap<String, Integer> names = ids.computeIfAbsent(method, value -> new ConcurrentHashMap<>());
+        Integer id = names.get(normalizedName);
+        if (id != null) {
+            return id;
+        }
+        // Past the limit every new name goes into the overflow key - no need to take the lock each time
+        if (limitReached) {
+            id = names.get(OVERFLOW_NAME);
+            if (id != null) {
+                overflowedCount.increment();
+                return id;
+            }
+        }
+
+        synchronized (lock) {
+            id = names.get(normalizedName);
+            if (id != null) {
+                return id;
+            }
+            int limit = maxKeys;
+            if (limit > 0 && keys.length >= limit) {
+                if (!limitReached) {
+                    limitReached = true;
+                    log.warn("Request keys limit of " + limit + " is reached - new request names are recorded as (" + method + ")" + OVERFLOW_NAME +
+                        " and alike. Request names are likely built from dynamic values - consider adding KeyNormalizationRule-s, or raising the limit");
+                }
+                overflowedCount.increment();
+                normalizedName = OVERFLOW_NAME;
+            }
+
+            return names.computeIfAbsent(normalizedName, value -> {
+                String[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+                newKeys[newKeys.length - 1] = "(" + method + ")" + value;
+                keys = newKeys;
+                return newKeys.length - 1;
+            });
+        }
+    }
+
+    private static boolean isOverflowKey(int id) {
+        return get(id).endsWith(")" + OVERFLOW_NAME);
+    }
+
+    /**
+     * @param id    - Key id
+     * @return      - Request key in "({method}){name}" format
+     */
+    public static String get(int id) {
+        return keys[id];
+    }
+
+    public static int size() {
+        return keys.length;
+    }
+
+    /**
+     * @param name  - Request name
+     * @return      - Name with all normalization rules applied
+     */
+    public static String normalize(String name) {
+        for (KeyNormalizationRule rule : normalizationRules) {
+            name = rule.apply(name);
+        }
+
+        return name;
+    }
+
+    /**
+     * Replaces normalization rules. Only affects the keys registered afterwards - so it should be called before any request is defined.
+     * @param rules - Rules to apply, in order. Empty to keep request names as is
+     */
+    public static void setNormalizationRules(KeyNormalizationRule... rules) {
+        normalizationRules.clear();
+        normalizationRules.addAll(List.of(rules));
+        clearRawNamesCache();
+    }
+
+    public static void addNormalizationRule(KeyNormalizationRule rule) {
+        normalizationRules.add(rule);
+        clearRawNamesCache();
+    }
+
+    // Cached raw names were resolved with the previous rules
+    private static void clearRawNamesCache() {
+        synchronized (lock) {
+            rawIds.clear();
+            rawIdsCount.set(0);
+        }
+    }
+
+    public static List<KeyNormalizationRule> getNormalizationRules() {
+        return List.copyOf(normalizationRules);
+    }
+
+    /**
+     * Sets the maximum amount of registered keys. Overflow keys (one per request method) are registered on top of it.
+     * @param limit - Keys limit, or 0 to disable it
+     */
+    public static void setMaxKeys(int limit) {
+        synchronized (lock) {
+            maxKeys = limit;
+            limitReached = limit > 0 && keys.length >= limit;
+        }
+    }
+
+    public static int getMaxKeys() {
+        return maxKeys;
+    }
+
+    /**
+     * @return - Amount of lookups resolved into an overflow key since the start of the process
+     */
+    public static long getOverflowedCount() {
+        return overflowedCount.sum();
+    }
+}
@@ -0,0 +1,259 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.github.vizanarkonin.keres.core.executors.KeresUser;
+
+/**
+ * Embedded HTTP endpoint, serving live metrics of a DataCollector in OpenMetrics text format (Prometheus-compatible).
+ * Everything is read from pre-aggregated state - run totals, rolling windows and ingestion counters - so a scrape never touches raw samples
+ * and costs O(request keys).
+ * Can be checked with a plain GET request, i.e. "curl http://localhost:9464/metrics".
+ */
+public class MetricsServer {
+    private static final Logger                 log                     = LogManager.getLogger("MetricsServer");
+    public static final String                  PATH                    = "/metrics";
+    public static final String                  CONTENT_TYPE            = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    // Histogram bucket bounds in milliseconds - fixed, so series of different runs and nodes can be aggregated in queries
+    private static final long[]                 HISTOGRAM_BOUNDS        = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000 };
+
+    private final DataCollector                 collector;
+    private final String                        host;
+    private final int                           port;
+    private HttpServer                          server;
+    private ExecutorService                     executor;
+
+    /**
+     * @param collector - Collector to expose the metrics of
+     * @param host      - Address to bind to, i.e. "127.0.0.1" for local scrapes only, or "0.0.0.0" for all interfaces
+     * @param port      - Port to listen on
+     */
+    public MetricsServer(DataCollector collector, String host, int port) {
+        this.collector = collector;
+        this.host = host;
+        this.port = port;
+    }
+
+    public MetricsServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext(PATH, this::handle);
+        // Scrapes are rare and cheap - a single thread is enough, and it never competes with load generation
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MetricsServer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+        log.info("Serving metrics on http://" + host + ":" + server.getAddress().getPort() + PATH);
+
+        return this;
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * @return - Port the server listens on. Differs from the requested one if it was 0
+     */
+    public int getPort() {
+        return server == null ? port : server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        } catch (Exception e) {
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // ##########################################################################################
+    // Rendering
+    // ##########################################################################################
+
+    /**
+     * @return - Current metrics in OpenMetrics text format
+     */
+    public String render() {
+        StringBuilder output = new StringBuilder();
+        Map<String, AggregatedRequestLog> requestLogs = collector.getAggregatedResults().getRequestLogs();
+
+        family(output, "keres_requests", "counter", "Requests made, per request key");
+        requestLogs.values().forEach(requestLog -> sample(output, "keres_requests_total", requestLog.getRequestsCount(), "key", requestLog.getName()));
+        family(output, "keres_failures", "counter", "Failed requests, per request key");
+        requestLogs.values().forEach(requestLog -> sample(output, "keres_failures_total", requestLog.getFailuresCount(), "key", requestLog.getName()));
+
+        family(output, "keres_response_time_milliseconds", "histogram", "Response times of the whole run, per request key");
+        output.append("# UNIT keres_response_time_milliseconds milliseconds\n");
+        for (AggregatedRequestLog requestLog : requestLogs.values()) {
+            writeHistogram(output, requestLog.getName(), requestLog.getResponseTimes());
+        }
+
+        writeLiveWindows(output);
+
+        family(output, "keres_active_users", "gauge", "Currently running virtual users");
+        sample(output, "keres_active_users", KeresUser.getAllRunners().size());
+        family(output, "keres_results_queue_depth", "gauge", "Responses reported, but not yet processed by the collector");
+        sample(output, "keres_results_queue_depth", collector.getQueueDepth());
+        family(output, "keres_results_queue_peak", "gauge", "Highest results queue depth of the current run");
+        sample(output, "keres_results_queue_peak", collector.getQueueHighWaterMark());
+        family(output, "keres_results_dropped", "counter", "Responses discarded due to full results queue");
+        sample(output, "keres_results_dropped_total", collector.getDroppedResponsesCount());
+
+        writeJvmMetrics(output);
+        output.append("# EOF\n");
+
+        return output.toString();
+    }
+
+    private void writeHistogram(StringBuilder output, String key, LatencyHistogram histogram) {
+        long[] counts = new long[HISTOGRAM_BOUNDS.length];
+        histogram.forEachBucket((index, count) -> {
+            // Bucket counts towards a bound only if all of it's values are within it - so no sample above a bound is ever counted under it
+            long value = LatencyHistogram.highestValueAt(index);
+            for (int bound = 0; bound < HISTOGRAM_BOUNDS.length; bound++) {
+                if (value <= HISTOGRAM_BOUNDS[bound]) {
+                    counts[bound] += count;
+                    break;
+                }
+            }
+        });
+
+        long cumulative = 0;
+        for (int bound = 0; bound < HISTOGRAM_BOUNDS.length; bound++) {
+            cumulative += counts[bound];
+            sample(output, "keres_response_time_milliseconds_bucket", cumulative, "key", key, "le", String.valueOf((double) HISTOGRAM_BOUNDS[bound]));
+        }
+        sample(output, "keres_response_time_milliseconds_bucket", histogram.getTotalCount(), "key", key, "le", "+Inf");
+        sample(output, "keres_response_time_milliseconds_count", histogram.getTotalCount(), "key", key);
+        sample(output, "keres_response_time_milliseconds_sum", histogram.getTotalSum(), "key", key);
+    }
+
+    private void writeLiveWindows(StringBuilder output) {
+        long now = Instant.now().toEpochMilli();
+        StringBuilder rps = new StringBuilder();
+        StringBuilder errors = new StringBuilder();
+        StringBuilder percentiles = new StringBuilder();
+        collector.getRollingStatistics().forEach((key, statistics) -> {
+            for (RollingStatistics.Window window : statistics.getWindows(now, DataCollector.LIVE_WINDOWS)) {
+                String windowName = window.getSeconds() + "s";
+                sample(rps, "keres_live_requests_per_second", window.getRequestsPerSecond(), "key", key, "window", windowName);
+                sample(errors, "keres_live_error_ratio", window.getErrorRate() / 100, "key", key, "window", windowName);
+                long[] values = window.getResponseTimes().getValuesAtPercentiles(DataCollector.LIVE_PERCENTILES);
+                for (int index = 0; index < values.length; index++) {
+                    sample(percentiles, "keres_live_response_time_milliseconds", values[index],
+                        "key", key, "window", windowName, "percentile", AggregatedRequestLog.percentileKey(DataCollector.LIVE_PERCENTILES[index]));
+                }
+            }
+        });
+
+        family(output, "keres_live_requests_per_second", "gauge", "Requests per second over the last window, per request key");
+        output.append(rps);
+        family(output, "keres_live_error_ratio", "gauge", "Share of failed requests over the last window, per request key");
+        output.append(errors);
+        family(output, "keres_live_response_time_milliseconds", "gauge", "Response time percentiles over the last window, per request key");
+        output.append("# UNIT keres_live_response_time_milliseconds milliseconds\n");
+        output.append(percentiles);
+    }
+
+    private static void writeJvmMetrics(StringBuilder output) {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+        family(output, "keres_jvm_memory_used_bytes", "gauge", "Used JVM memory");
+        output.append("# UNIT keres_jvm_memory_used_bytes bytes\n");
+        sample(output, "keres_jvm_memory_used_bytes", heap.getUsed(), "area", "heap");
+        sample(output, "keres_jvm_memory_used_bytes", nonHeap.getUsed(), "area", "nonheap");
+        family(output, "keres_jvm_memory_max_bytes", "gauge", "Maximum JVM heap size");
+        output.append("# UNIT keres_jvm_memory_max_bytes bytes\n");
+        sample(output, "keres_jvm_memory_max_bytes", heap.getMax(), "area", "heap");
+
+        family(output, "keres_jvm_threads", "gauge", "Live JVM platform threads");
+        sample(output, "keres_jvm_threads", ManagementFactory.getThreadMXBean().getThreadCount());
+
+        family(output, "keres_jvm_gc_collections", "counter", "Garbage collections, per collector");
+        StringBuilder gcTime = new StringBuilder();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sample(output, "keres_jvm_gc_collections_total", Math.max(0, collector.getCollectionCount()), "gc", collector.getName());
+            sample(gcTime, "keres_jvm_gc_time_seconds_total", Math.max(0, collector.getCollectionTime()) / 1000.0, "gc", collector.getName());
+        }
+        family(output, "keres_jvm_gc_time_seconds", "counter", "Time spent in garbage collection, per collector");
+        output.append("# UNIT keres_jvm_gc_time_seconds seconds\n");
+        output.append(gcTime);
+
+        family(output, "keres_jvm_uptime_seconds", "gauge", "JVM uptime");
+        output.append("# UNIT keres_jvm_uptime_seconds seconds\n");
+        sample(output, "keres_jvm_uptime_seconds", ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+    }
+
+    // ##########################################################################################
+    // Format helpers
+    // ##########################################################################################
+
+    private static void family(StringBuilder output, String name, String type, String help) {
+        output.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        output.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    /**
+     * Appends a single sample line.
+     * @param output    - Output
+     * @param name      - Sample name
+     * @param value     - Sample value
+     * @param labels    - Label names and values, alternating
+     */
+    private static void sample(StringBuilder output, String name, Number value, String... labels) {
+        output.append(name);
+        if (labels.length > 0) {
+            output.append('{');
+            for (int index = 0; index < labels.length; index += 2) {
+                if (index > 0) {
+                    output.append(',');
+                }
+                output.append(labels[index]).append("=\"").append(escape(labels[index + 1])).append('"');
+            }
+            output.append('}');
+        }
+        output.append(' ').append(value).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
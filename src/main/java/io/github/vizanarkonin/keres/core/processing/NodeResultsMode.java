@@ -0,0 +1,27 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+/**
+ * Defines what a node submits to the hub every second.
+ */
+public enum NodeResultsMode {
+    /**
+     * Per-second aggregates of each request key - counters, failures by response code and mergeable latency histograms.
+     * Hub ingress depends on the amount of request keys only, not on the amount of requests made.
+     */
+    AGGREGATED("aggregated"),
+    /**
+     * Every raw sample, read back from the node's results journal. Hub aggregates them on it's own and keeps them in it's journal.
+     * Hub ingress grows with the node's RPS - use it when raw samples are required in the hub's report.
+     */
+    RAW("raw");
+
+    final String value;
+
+    NodeResultsMode(String value) {
+        this.value = value;
+    }
+
+    public String toString() {
+        return value;
+    }
+}
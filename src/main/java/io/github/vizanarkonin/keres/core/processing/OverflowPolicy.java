@@ -0,0 +1,26 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+/**
+ * Defines what DataCollector does with a response when it's ingestion buffer is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * Reporting thread waits until collection thread frees up a slot. No results are lost, but load generation slows down.
+     * Once collection thread is stopped nothing frees up the slots anymore - responses that don't fit are dropped instead.
+     */
+    BLOCK("block"),
+    /**
+     * Response is discarded and counted as dropped. Load generation is never affected, but results become incomplete.
+     */
+    DROP("drop");
+
+    final String value;
+
+    OverflowPolicy(String value) {
+        this.value = value;
+    }
+
+    public String toString() {
+        return value;
+    }
+}
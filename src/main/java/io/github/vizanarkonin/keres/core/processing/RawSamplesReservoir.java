@@ -0,0 +1,162 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bounded-memory sample of raw responses of a single request key, used to feed requests_log section of the report.
+ * Run time is split into windows, and each window keeps a uniform random sample of up to samplesPerWindow responses (reservoir
+ * sampling, Algorithm R) - so both steady periods and short spikes are represented.
+ * Windows start at 1 second span. Once there are more than maxWindows of them - span is doubled and adjacent windows are merged,
+ * so memory footprint (and report size) stays bounded for runs of any length.
+ * Aggregates are not affected - they are always built from the complete data.
+ */
+public class RawSamplesReservoir {
+    public static final int                 DEFAULT_SAMPLES_PER_WINDOW  = 50;
+    public static final int                 DEFAULT_MAX_WINDOWS         = 120;
+
+    private final String                    name;
+    private final int                       samplesPerWindow;
+    private final int                       maxWindows;
+    private long                            windowSpanMs                = AggregatedRequestLog.BUCKET_SIZE_MS;
+    private final TreeMap<Long, Window>     windows                     = new TreeMap<>();
+
+    /**
+     * @param name              - Request key
+     * @param samplesPerWindow  - Maximum amount of samples kept for each window
+     * @param maxWindows        - Maximum amount of windows. Once exceeded - windows span is doubled
+     */
+    public RawSamplesReservoir(String name, int samplesPerWindow, int maxWindows) {
+        this.name = name;
+        this.samplesPerWindow = Math.max(1, samplesPerWindow);
+        this.maxWindows = Math.max(1, maxWindows);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized void record(long startTime, long responseTime, int responseCode, boolean failed, int failureMessageId) {
+        windows
+            .computeIfAbsent(Math.floorDiv(startTime, windowSpanMs) * windowSpanMs, timeStamp -> new Window(samplesPerWindow))
+                .offer(new Sample(startTime, responseTime, responseCode, failed, failureMessageId));
+
+        while (windows.size() > maxWindows) {
+            doubleWindowSpan();
+        }
+    }
+
+    /**
+     * @return - Amount of responses offered to the reservoir
+     */
+    public synchronized long getSeenCount() {
+        long result = 0;
+        for (Window window : windows.values()) {
+            result += window.seenCount;
+        }
+
+        return result;
+    }
+
+    /**
+     * @return - Kept samples, sorted by start time
+     */
+    public synchronized List<Sample> getSamples() {
+        ArrayList<Sample> result = new ArrayList<>();
+        for (Window window : windows.values()) {
+            int start = result.size();
+            result.addAll(window.samples);
+            result.subList(start, result.size()).sort((first, second) -> Long.compare(first.startTime, second.startTime));
+        }
+
+        return result;
+    }
+
+    private void doubleWindowSpan() {
+        windowSpanMs *= 2;
+        TreeMap<Long, Window> merged = new TreeMap<>();
+        for (Map.Entry<Long, Window> entry : windows.entrySet()) {
+            long timeStamp = Math.floorDiv(entry.getKey(), windowSpanMs) * windowSpanMs;
+            Window existing = merged.get(timeStamp);
+            merged.put(timeStamp, existing == null ? entry.getValue() : existing.merge(entry.getValue()));
+        }
+        windows.clear();
+        windows.putAll(merged);
+    }
+
+    /**
+     * Single raw response. Same layout as journal records
+     */
+    public static class Sample {
+        public final long       startTime;
+        public final long       responseTime;
+        public final int        responseCode;
+        public final boolean    failed;
+        public final int        failureMessageId;
+
+        public Sample(long startTime, long responseTime, int responseCode, boolean failed, int failureMessageId) {
+            this.startTime = startTime;
+            this.responseTime = responseTime;
+            this.responseCode = responseCode;
+            this.failed = failed;
+            this.failureMessageId = failureMessageId;
+        }
+    }
+
+    private static class Window {
+        private final int                   capacity;
+        private final ArrayList<Sample>     samples;
+        private long                        seenCount   = 0;
+
+        private Window(int capacity) {
+            this.capacity = capacity;
+            samples = new ArrayList<>(capacity);
+        }
+
+        /**
+         * Algorithm R - n-th response replaces a random kept sample with probability capacity/n
+         */
+        private void offer(Sample sample) {
+            seenCount++;
+            if (samples.size() < capacity) {
+                samples.add(sample);
+                return;
+            }
+
+            long index = ThreadLocalRandom.current().nextLong(seenCount);
+            if (index < samples.size()) {
+                samples.set((int) index, sample);
+            }
+        }
+
+        /**
+         * Merges two uniform samples into one. Each pick is taken from either side with probability, proportional to the amount of
+         * responses it still represents - so the result stays (approximately) uniform over both windows.
+         */
+        private Window merge(Window other) {
+            Window result = new Window(capacity);
+            result.seenCount = seenCount + other.seenCount;
+            ArrayList<Sample> first = new ArrayList<>(samples);
+            ArrayList<Sample> second = new ArrayList<>(other.samples);
+            double firstWeight = samples.isEmpty() ? 0 : (double) seenCount / samples.size();
+            double secondWeight = other.samples.isEmpty() ? 0 : (double) other.seenCount / other.samples.size();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            while (result.samples.size() < capacity && (!first.isEmpty() || !second.isEmpty())) {
+                double firstRemaining = first.size() * firstWeight;
+                double secondRemaining = second.size() * secondWeight;
+                ArrayList<Sample> source = random.nextDouble() * (firstRemaining + secondRemaining) < firstRemaining ? first : second;
+                int index = random.nextInt(source.size());
+                // Swap-remove - order is restored on read
+                result.samples.add(source.get(index));
+                source.set(index, source.get(source.size() - 1));
+                source.remove(source.size() - 1);
+            }
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import io.github.vizanarkonin.keres.core.utils.Response;
+
+/**
+ * Bounded lock-free multi-producer/single-consumer ring buffer for responses.
+ * Any amount of user threads may offer responses concurrently, while a single collection thread drains them in batches.
+ * Each slot carries a sequence number, which tells producers and the consumer whether the slot is free or holds a published element -
+ * so neither side ever takes a lock, and the only contended operation is a CAS on the producer position.
+ * NOTE: drain methods must only ever be called from a single thread.
+ */
+public class ResponseRingBuffer {
+    private static final int    SPINS_BEFORE_PARK   = 64;
+    private static final long   PARK_TIME_NS        = 50_000;
+
+    private final int           capacity;
+    private final int           mask;
+    private final Response[]    slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong    producerPosition    = new AtomicLong();
+    private volatile long       consumerPosition    = 0;
+    private volatile long       highWaterMark       = 0;
+
+    /**
+     * @param capacity - Buffer capacity. Rounded up to the nearest power of two
+     */
+    public ResponseRingBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new RuntimeException("Ring buffer capacity should be at least 2, got " + capacity);
+        }
+
+        this.capacity = capacity > (1 << 30) ? 1 << 30 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.slots = new Response[this.capacity];
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int index = 0; index < this.capacity; index++) {
+            sequences.set(index, index);
+        }
+    }
+
+    /**
+     * Tries to publish a response without waiting.
+     * @param response  - Response to publish
+     * @return          - true if response was published, false if buffer is full
+     */
+    public boolean offer(Response response) {
+        long position = producerPosition.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (producerPosition.compareAndSet(position, position + 1)) {
+                    slots[index] = response;
+                    // Publishing the slot - consumer won't read it until the sequence is moved forward
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = producerPosition.get();
+            } else if (difference < 0) {
+                // Slot still holds an element from the previous lap - buffer is full
+                return false;
+            } else {
+                // Another producer took this position - catching up
+                position = producerPosition.get();
+            }
+        }
+    }
+
+    /**
+     * Publishes a response, waiting for a free slot if buffer is full.
+     * Spins for a short while and then parks - which keeps virtual threads from pinning their carriers.
+     * @param response - Response to publish
+     */
+    public void put(Response response) {
+        put(response, () -> true);
+    }
+
+    /**
+     * Same as above, but gives up once the condition no longer holds - i.e. when there's no consumer left to free up a slot.
+     * Condition is only checked between the parks.
+     * @param response      - Response to publish
+     * @param keepWaiting   - Condition to keep waiting on
+     * @return              - true if response was published, false if waiting was given up
+     */
+    public boolean put(Response response, BooleanSupplier keepWaiting) {
+        int attempts = 0;
+        while (!offer(response)) {
+            if (++attempts < SPINS_BEFORE_PARK) {
+                Thread.onSpinWait();
+            } else if (keepWaiting.getAsBoolean()) {
+                LockSupport.parkNanos(PARK_TIME_NS);
+            } else {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Drains up to maxElements published responses, passing them to consumer in publishing order.
+     * Single consumer only.
+     * @param consumer      - Consumer to pass the responses to
+     * @param maxElements   - Maximum amount of responses to drain in this call
+     * @return              - Amount of drained responses
+     */
+    public int drain(Consumer<Response> consumer, int maxElements) {
+        long position = consumerPosition;
+        long depth = producerPosition.get() - position;
+        if (depth > highWaterMark) {
+            highWaterMark = Math.min(depth, capacity);
+        }
+
+        int drained = 0;
+        while (drained < maxElements) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                // Either empty, or the producer has claimed the slot but not yet published it
+                break;
+            }
+
+            Response response = slots[index];
+            slots[index] = null;
+            // Releasing the slot for the next lap
+            sequences.set(index, position + capacity);
+            position++;
+            drained++;
+            consumer.accept(response);
+        }
+        consumerPosition = position;
+
+        return drained;
+    }
+
+    /**
+     * @return - Approximate amount of responses waiting in the buffer
+     */
+    public int size() {
+        long size = producerPosition.get() - consumerPosition;
+
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return - Highest buffer depth observed by the consumer since creation or the last reset
+     */
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public void resetHighWaterMark() {
+        highWaterMark = 0;
+    }
+}
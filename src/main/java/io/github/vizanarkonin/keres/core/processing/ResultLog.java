@@ -13,6 +13,8 @@ public class ResultLog {
     private transient List<LogEntry> requestsPerSecondLog;
     private long failuresCount;
     private transient List<LogEntry> failuresLog;
+    // Response time percentiles series, in the order of requested percentiles
+    private transient List<List<LogEntry>> percentileLogs;
 
     public ResultLog(String name) {
         this.name = name;
@@ -20,6 +22,7 @@ public class ResultLog {
         responseTimesLog = new ArrayList<>();
         requestsPerSecondLog = new ArrayList<>();
         failuresLog = new ArrayList<>();
+        percentileLogs = new ArrayList<>();
     }
 
     public ResultLog logRequest(int requestsCount, long averageResponseTime, long currentRPS, long currentFailures, long timeStamp) {
@@ -32,6 +35,17 @@ public class ResultLog {
         return this;
     }
 
+    public ResultLog logPercentiles(long[] values, long timeStamp) {
+        while (percentileLogs.size() < values.length) {
+            percentileLogs.add(new ArrayList<>());
+        }
+        for (int index = 0; index < values.length; index++) {
+            percentileLogs.get(index).add(new LogEntry(timeStamp, values[index]));
+        }
+
+        return this;
+    }
+
     public List<LogEntry> getResponseTimesLog() {
         return responseTimesLog;
     }
@@ -44,6 +58,10 @@ public class ResultLog {
         return failuresLog;
     }
 
+    public List<List<LogEntry>> getPercentileLogs() {
+        return percentileLogs;
+    }
+
     @Getter
     public static class LogEntry {
         private long timeStamp;
@@ -0,0 +1,151 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.JSONObject;
+
+/**
+ * Streaming writer for report results file.
+ * Writes JS constants straight into a buffered FileChannel piece by piece, so serializing the results never requires
+ * the whole JSON document (or it's object tree) to be held in memory.
+ * Output stays plain JSON, so report viewer reads it the same way as before. Optionally, output can be gzip-compressed.
+ */
+public class ResultsFileWriter implements Closeable {
+    private static final int        BUFFER_SIZE     = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer        buffer          = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    // Lone surrogates (i.e. a failure message, truncated in the middle of an emoji) are replaced instead of failing the whole report
+    private final CharsetEncoder    encoder         = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    public ResultsFileWriter(Path path) throws IOException {
+        this(path, false);
+    }
+
+    /**
+     * @param path          - Output file
+     * @param compressed    - Whether to gzip the output
+     */
+    public ResultsFileWriter(Path path, boolean compressed) throws IOException {
+        channel = compressed ?
+            Channels.newChannel(new GZIPOutputStream(Files.newOutputStream(path), BUFFER_SIZE)) :
+            FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    // ##########################################################################################
+    // Structure
+    // ##########################################################################################
+
+    /**
+     * Starts a "const {name} = " declaration. Value is expected to be written right after.
+     * @param name - Constant name
+     */
+    public ResultsFileWriter beginConst(String name) throws IOException {
+        return write("const ").write(name).write(" = ");
+    }
+
+    public ResultsFileWriter endConst() throws IOException {
+        return write(";\n");
+    }
+
+    /**
+     * Writes a whole "const {name} = {value};" line. Value is expected to be a valid JSON literal.
+     * @param name  - Constant name
+     * @param value - JSON literal
+     */
+    public ResultsFileWriter writeConst(String name, String value) throws IOException {
+        return beginConst(name).write(value).endConst();
+    }
+
+    /**
+     * Writes a JSON object key, prefixed with a comma if it's not the first one.
+     * @param key   - Key name
+     * @param first - Whether it's the first key of the object
+     */
+    public ResultsFileWriter writeKey(String key, boolean first) throws IOException {
+        if (!first) {
+            write(",");
+        }
+
+        return writeQuoted(key).write(":");
+    }
+
+    public ResultsFileWriter writeQuoted(String value) throws IOException {
+        return write(JSONObject.quote(value));
+    }
+
+    public ResultsFileWriter writeNumber(long value) throws IOException {
+        return write(Long.toString(value));
+    }
+
+    /**
+     * Writes a list of log entries as an array of {"timeStamp": x, "logValue": y} objects.
+     * @param entries - Entries to write
+     */
+    public ResultsFileWriter writeLogEntries(List<ResultLog.LogEntry> entries) throws IOException {
+        write("[");
+        for (int index = 0; index < entries.size(); index++) {
+            ResultLog.LogEntry entry = entries.get(index);
+            if (index > 0) {
+                write(",");
+            }
+            write("{\"timeStamp\":").writeNumber(entry.getTimeStamp()).write(",\"logValue\":").writeNumber(entry.getLogValue()).write("}");
+        }
+
+        return write("]");
+    }
+
+    // ##########################################################################################
+    // Output
+    // ##########################################################################################
+
+    public ResultsFileWriter write(String value) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(value);
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, false);
+            if (result.isOverflow()) {
+                flush();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+
+        return this;
+    }
+
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Append-only binary journal of raw samples.
+ * Every sample is stored as a fixed-width record in memory-mapped segment files, which roll over once they reach the size limit.
+ * Request keys and failure messages are stored once in side dictionaries, and records only refer to them by id.
+ * Failure message ids are the ones of the FailureMessageDictionary used by the collector - journal only persists it's entries.
+ * Since the data is written into the page cache as it comes - killing the process does not lose it, and the heap only
+ * has to hold the aggregates.
+ *
+ * Record layout (little-endian is not enforced - journal is meant to be read on the machine that wrote it):
+ * 0  - int     - key id + 1 (0 marks the end of written data)
+ * 4  - int     - flags (bit 0 - failed)
+ * 8  - long    - request start timestamp
+ * 16 - long    - response time
+ * 24 - int     - response code
+ * 28 - int     - failure message id, -1 if there's none
+ */
+public class ResultsJournal implements Closeable {
+    private static final Logger                 log                     = LogManager.getLogger("ResultsJournal");
+    public static final int                     RECORD_SIZE             = 32;
+    public static final long                    DEFAULT_SEGMENT_SIZE    = 64L * 1024 * 1024;
+    public static final String                  KEYS_FILE               = "keys.dict";
+    public static final String                  FAILURE_MESSAGES_FILE   = "failure-messages.dict";
+    private static final int                    FLAG_FAILED             = 1;
+
+    private final Path                          directory;
+    private final long                          recordsPerSegment;
+    private final HashMap<String, Integer>      keyIds                  = new HashMap<>();
+    private final ArrayList<String>             keys                    = new ArrayList<>();
+    private final FailureMessageDictionary      failureMessages;
+    // Amount of failure messages already persisted in the dictionary file
+    private int                                 writtenFailureMessages  = 0;
+    private BufferedWriter                      keysWriter;
+    private BufferedWriter                      failureMessagesWriter;
+    private MappedByteBuffer                    currentSegment;
+    private volatile long                       recordsCount            = 0;
+    private boolean                             closed                  = false;
+
+    /**
+     * Creates a new journal in given directory.
+     * @param directory         - Journal directory. Created if missing
+     * @param segmentSize       - Segment file size limit in bytes. Rounded down to the record size
+     * @param failureMessages   - Dictionary, which failure message ids refer to
+     */
+    public ResultsJournal(Path directory, long segmentSize, FailureMessageDictionary failureMessages) throws IOException {
+        this.directory = directory;
+        this.failureMessages = failureMessages;
+        // Single mapping can not exceed 2GB, hence the limit of 1GB per segment
+        this.recordsPerSegment = Math.max(1, Math.min(segmentSize, 1L << 30) / RECORD_SIZE);
+
+        Files.createDirectories(directory);
+        keysWriter = Files.newBufferedWriter(directory.resolve(KEYS_FILE), StandardCharsets.UTF_8);
+        failureMessagesWriter = Files.newBufferedWriter(directory.resolve(FAILURE_MESSAGES_FILE), StandardCharsets.UTF_8);
+    }
+
+    private ResultsJournal(Path directory) {
+        this.directory = directory;
+        this.failureMessages = new FailureMessageDictionary();
+        this.recordsPerSegment = 0;
+        this.closed = true;
+    }
+
+    /**
+     * Opens an existing journal for reading - i.e. to recover the results of a run that was interrupted.
+     * Records count is restored by scanning the segments up to the first empty record.
+     * @param directory - Journal directory
+     * @return          - Read-only journal instance
+     */
+    public static ResultsJournal open(Path directory) throws IOException {
+        ResultsJournal journal = new ResultsJournal(directory);
+        readDictionary(directory.resolve(KEYS_FILE), journal.keys, journal.keyIds);
+        ArrayList<String> messages = new ArrayList<>();
+        readDictionary(directory.resolve(FAILURE_MESSAGES_FILE), messages, new HashMap<>());
+        // Messages are stored normalized, so registering them in order restores the same ids
+        messages.forEach(journal.failureMessages::idFor);
+
+        long count = 0;
+        for (Path segment : journal.listSegments()) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int records = (int) (channel.size() / RECORD_SIZE);
+                int index = 0;
+                while (index < records && buffer.getInt(index * RECORD_SIZE) != 0) {
+                    index++;
+                }
+                count += index;
+                if (index < records) {
+                    break;
+                }
+            }
+        }
+        journal.recordsCount = count;
+
+        return journal;
+    }
+
+    // ##########################################################################################
+    // Writing
+    // ##########################################################################################
+
+    /**
+     * Appends a record.
+     * @param failureMessageId - Id of the failure message in the collector's dictionary, or FailureMessageDictionary.NO_MESSAGE
+     */
+    public synchronized void append(String key, long startTime, long responseTime, int responseCode, boolean failed, int failureMessageId) throws IOException {
+        if (closed) {
+            throw new RuntimeException("Journal " + directory + " is closed");
+        }
+
+        int keyId = keyIdFor(key);
+        if (failureMessageId >= writtenFailureMessages) {
+            persistFailureMessages(failureMessageId);
+        }
+        long index = recordsCount;
+        if (index % recordsPerSegment == 0) {
+            rollSegment(index / recordsPerSegment);
+        }
+
+        int offset = (int) ((index % recordsPerSegment) * RECORD_SIZE);
+        currentSegment.putInt(offset + 4, failed ? FLAG_FAILED : 0);
+        currentSegment.putLong(offset + 8, startTime);
+        currentSegment.putLong(offset + 16, responseTime);
+        currentSegment.putInt(offset + 24, responseCode);
+        currentSegment.putInt(offset + 28, failureMessageId);
+        // Key id goes last - it marks the record as written
+        currentSegment.putInt(offset, keyId + 1);
+        recordsCount = index + 1;
+    }
+
+    /**
+     * Flushes written records and dictionaries to the storage device.
+     */
+    public synchronized void sync() {
+        if (closed) {
+            return;
+        }
+
+        try {
+            if (currentSegment != null) {
+                currentSegment.force();
+            }
+            keysWriter.flush();
+            failureMessagesWriter.flush();
+        } catch (IOException e) {
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        sync();
+        closed = true;
+        currentSegment = null;
+        try {
+            keysWriter.close();
+            failureMessagesWriter.close();
+        } catch (IOException e) {
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    /**
+     * Closes the journal and removes it's files.
+     */
+    public void delete() {
+        close();
+        try {
+            FileUtils.deleteDirectory(directory.toFile());
+        } catch (IOException e) {
+            log.error("Failed to delete results journal " + directory);
+            log.error(e);
+            log.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    // ##########################################################################################
+    // Reading
+    // ##########################################################################################
+
+    /**
+     * Sequentially reads records, starting with given index.
+     * Only records written before the call are read - concurrent appends are picked up by the next call.
+     * @param fromIndex - Index of the first record to read
+     * @param consumer  - Records consumer
+     * @return          - Index of the record following the last one read
+     */
+    public long read(long fromIndex, RecordConsumer consumer) throws IOException {
+        long toIndex = recordsCount;
+        long index = fromIndex;
+        List<Path> segments = listSegments();
+        long perSegment = recordsPerSegment > 0 ? recordsPerSegment : segmentCapacity(segments);
+
+        while (index < toIndex) {
+            int segmentIndex = (int) (index / perSegment);
+            try (FileChannel channel = FileChannel.open(segmentPath(segmentIndex), StandardOpenOption.READ)) {
+                long segmentEnd = Math.min(toIndex, (segmentIndex + 1) * perSegment);
+                long from = (index % perSegment) * RECORD_SIZE;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, (segmentEnd - index) * RECORD_SIZE);
+                for (int offset = 0; index < segmentEnd; index++, offset += RECORD_SIZE) {
+                    consumer.accept(
+                        buffer.getInt(offset) - 1,
+                        buffer.getLong(offset + 8),
+                        buffer.getLong(offset + 16),
+                        buffer.getInt(offset + 24),
+                        (buffer.getInt(offset + 4) & FLAG_FAILED) != 0,
+                        buffer.getInt(offset + 28));
+                }
+            }
+        }
+
+        return index;
+    }
+
+    public long getRecordsCount() {
+        return recordsCount;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public synchronized String getKey(int keyId) {
+        return keys.get(keyId);
+    }
+
+    public synchronized List<String> getKeys() {
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * @param failureMessageId  - Failure message id, as stored in the record
+     * @return                  - Failure message, or empty string if id is -1
+     */
+    public String getFailureMessage(int failureMessageId) {
+        return failureMessages.get(failureMessageId);
+    }
+
+    // ##########################################################################################
+    // Service methods
+    // ##########################################################################################
+
+    private int keyIdFor(String key) throws IOException {
+        Integer id = keyIds.get(key);
+        if (id == null) {
+            id = keys.size();
+            keys.add(key);
+            keyIds.put(key, id);
+            writeDictionaryEntry(keysWriter, key);
+        }
+
+        return id;
+    }
+
+    // Ids are dense, so all the messages up to the given id are already registered in the dictionary
+    private void persistFailureMessages(int upToId) throws IOException {
+        while (writtenFailureMessages <= upToId) {
+            writeDictionaryEntry(failureMessagesWriter, failureMessages.get(writtenFailureMessages));
+            writtenFailureMessages++;
+        }
+    }
+
+    private void rollSegment(long segmentIndex) throws IOException {
+        if (currentSegment != null) {
+            currentSegment.force();
+        }
+        // Mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(segmentPath(segmentIndex), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            currentSegment = channel.map(FileChannel.MapMode.READ_WRITE, 0, recordsPerSegment * RECORD_SIZE);
+        }
+    }
+
+    private Path segmentPath(long segmentIndex) {
+        return directory.resolve(String.format("segment-%05d.bin", segmentIndex));
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(file -> file.getFileName().toString().startsWith("segment-"))
+                .sorted(Comparator.comparing(Path::toString))
+                .toList();
+        }
+    }
+
+    private static long segmentCapacity(List<Path> segments) throws IOException {
+        return segments.isEmpty() ? 1 : Math.max(1, Files.size(segments.get(0)) / RECORD_SIZE);
+    }
+
+    // Entries are stored as JSON strings, one per line - messages may contain line breaks
+    private static void writeDictionaryEntry(BufferedWriter writer, String value) throws IOException {
+        writer.write(JSONObject.quote(value));
+        writer.newLine();
+        writer.flush();
+    }
+
+    private static void readDictionary(Path file, List<String> values, HashMap<String, Integer> ids) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String value = (String) new JSONTokener(line).nextValue();
+            ids.put(value, values.size());
+            values.add(value);
+        }
+    }
+
+    @FunctionalInterface
+    public static interface RecordConsumer {
+        void accept(int keyId, long startTime, long responseTime, int responseCode, boolean failed, int failureMessageId) throws IOException;
+    }
+}
@@ -0,0 +1,124 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import lombok.Getter;
+
+/**
+ * Live statistics of a single request key over the last MAX_WINDOW_SECONDS seconds.
+ * Responses are recorded at ingest time into a ring of per-second slots (counters and a latency histogram), keyed by the second
+ * the response was received in. Slots are re-used once they fall out of the window, so memory footprint and snapshot cost
+ * don't depend on the run duration.
+ * Windows only include complete seconds - i.e. a 10 seconds window at 12:00:30.500 covers [12:00:20, 12:00:30).
+ */
+public class RollingStatistics {
+    public static final int             MAX_WINDOW_SECONDS  = 60;
+
+    private final long[]                slotSeconds         = new long[MAX_WINDOW_SECONDS];
+    private final long[]                requestsCounts      = new long[MAX_WINDOW_SECONDS];
+    private final long[]                failuresCounts      = new long[MAX_WINDOW_SECONDS];
+    private final LatencyHistogram[]    responseTimes       = new LatencyHistogram[MAX_WINDOW_SECONDS];
+
+    public RollingStatistics() {
+        for (int index = 0; index < MAX_WINDOW_SECONDS; index++) {
+            slotSeconds[index] = -1;
+            responseTimes[index] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @param finishTime    - Response finish timestamp
+     * @param responseTime  - Response time
+     * @param failed        - Whether the response has failed
+     */
+    public synchronized void record(long finishTime, long responseTime, boolean failed) {
+        long second = Math.floorDiv(finishTime, 1000);
+        int slot = (int) Math.floorMod(second, (long) MAX_WINDOW_SECONDS);
+        if (slotSeconds[slot] != second) {
+            // Late response, which has already fallen out of the window
+            if (slotSeconds[slot] > second) {
+                return;
+            }
+            slotSeconds[slot] = second;
+            requestsCounts[slot] = 0;
+            failuresCounts[slot] = 0;
+            responseTimes[slot].reset();
+        }
+
+        requestsCounts[slot]++;
+        if (failed) {
+            failuresCounts[slot]++;
+        }
+        responseTimes[slot].recordValue(responseTime);
+    }
+
+    /**
+     * Builds snapshots of several windows in a single pass over the slots - from the newest one to the oldest.
+     * @param now       - Current timestamp
+     * @param seconds   - Window sizes in seconds, sorted in ascending order. Capped by MAX_WINDOW_SECONDS
+     * @return          - Window snapshots, in the same order
+     */
+    public Window[] getWindows(long now, int... seconds) {
+        Window[] result = new Window[seconds.length];
+        Window current = new Window(0);
+        long currentSecond = Math.floorDiv(now, 1000);
+        int windowIndex = 0;
+
+        synchronized (this) {
+            for (int age = 1; age <= MAX_WINDOW_SECONDS && windowIndex < seconds.length; age++) {
+                long second = currentSecond - age;
+                int slot = (int) Math.floorMod(second, (long) MAX_WINDOW_SECONDS);
+                if (slotSeconds[slot] == second) {
+                    current.requestsCount += requestsCounts[slot];
+                    current.failuresCount += failuresCounts[slot];
+                    current.responseTimes.add(responseTimes[slot]);
+                }
+                while (windowIndex < seconds.length && Math.min(seconds[windowIndex], MAX_WINDOW_SECONDS) == age) {
+                    result[windowIndex++] = current.copy(age);
+                }
+            }
+        }
+        while (windowIndex < seconds.length) {
+            result[windowIndex++] = current.copy(MAX_WINDOW_SECONDS);
+        }
+
+        return result;
+    }
+
+    /**
+     * Snapshot of a single window. Windows of different keys can be merged to get the totals.
+     */
+    @Getter
+    public static class Window {
+        private final int                   seconds;
+        private long                        requestsCount   = 0;
+        private long                        failuresCount   = 0;
+        private final LatencyHistogram      responseTimes   = new LatencyHistogram();
+
+        public Window(int seconds) {
+            this.seconds = seconds;
+        }
+
+        public void merge(Window other) {
+            requestsCount += other.requestsCount;
+            failuresCount += other.failuresCount;
+            responseTimes.add(other.responseTimes);
+        }
+
+        public double getRequestsPerSecond() {
+            return seconds == 0 ? 0 : (double) requestsCount / seconds;
+        }
+
+        /**
+         * @return - Share of failed responses, in percents
+         */
+        public double getErrorRate() {
+            return requestsCount == 0 ? 0 : failuresCount * 100.0 / requestsCount;
+        }
+
+        private Window copy(int seconds) {
+            Window result = new Window(seconds);
+            result.merge(this);
+
+            return result;
+        }
+    }
+}
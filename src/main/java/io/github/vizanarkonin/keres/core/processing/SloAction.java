@@ -0,0 +1,29 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+/**
+ * Defines what happens once an SLO rule is breached.
+ */
+public enum SloAction {
+    /**
+     * Breach is logged and reported, run carries on and is not affected
+     */
+    LOG("log"),
+    /**
+     * Breach is logged and the run is marked as failed, but carries on until it's finished
+     */
+    FAIL_RUN("fail_run"),
+    /**
+     * Run is marked as failed and stopped right away with KeresController.stopExecution()
+     */
+    ABORT("abort");
+
+    final String value;
+
+    SloAction(String value) {
+        this.value = value;
+    }
+
+    public String toString() {
+        return value;
+    }
+}
@@ -0,0 +1,237 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.Getter;
+
+/**
+ * Declarative service level objective, evaluated every second over the live (rolling) statistics of the run.
+ * Can either be built fluently:
+ * <pre>
+ * SloRule.percentile(95).of("(GET)checkout").lessThan(400).over(60).onBreach(SloAction.ABORT);
+ * SloRule.errorRate().lessThan(2);
+ * </pre>
+ * or parsed from a text definition with the same meaning:
+ * <pre>
+ * SloRule.parse("p95 of (GET)checkout &lt; 400ms over 60s").onBreach(SloAction.ABORT);
+ * SloRule.parse("error rate &lt; 2%");
+ * </pre>
+ * Rules without a request key are evaluated over all requests, excluding actions (they already consist of requests).
+ */
+@Getter
+public class SloRule {
+    public static final int                 DEFAULT_WINDOW_SECONDS  = 60;
+    // Windows with less requests than that are not evaluated - a single slow request right after the start shouldn't abort the run
+    public static final int                 DEFAULT_MIN_REQUESTS    = 10;
+    private static final Pattern            DEFINITION_PATTERN      = Pattern.compile(
+        "^\\s*(p(\\d+(?:\\.\\d+)?)|error\\s*rate|rps|avg|average)\\s+(?:of\\s+(.+?)\\s+)?(<=|>=|<|>)\\s*(\\d+(?:\\.\\d+)?)\\s*(?:ms|%)?\\s*(?:over\\s+(\\d+)\\s*s)?\\s*$",
+        Pattern.CASE_INSENSITIVE);
+
+    private final Metric                    metric;
+    private final double                    percentile;
+    // Request key to evaluate, or null for all requests
+    private String                          key                     = null;
+    private String                          operator                = "<";
+    private double                          threshold               = 0;
+    private int                             windowSeconds           = DEFAULT_WINDOW_SECONDS;
+    private long                            minRequests             = DEFAULT_MIN_REQUESTS;
+    private SloAction                       action                  = SloAction.LOG;
+
+    private SloRule(Metric metric, double percentile) {
+        this.metric = metric;
+        this.percentile = percentile;
+    }
+
+    /**
+     * @param percentile    - Response time percentile, i.e. 95 or 99.9
+     * @return              - Rule, limiting given response time percentile (in milliseconds)
+     */
+    public static SloRule percentile(double percentile) {
+        return new SloRule(Metric.PERCENTILE, percentile);
+    }
+
+    /**
+     * @return - Rule, limiting the average response time (in milliseconds)
+     */
+    public static SloRule averageResponseTime() {
+        return new SloRule(Metric.AVERAGE, 0);
+    }
+
+    /**
+     * @return - Rule, limiting the share of failed requests (in percents)
+     */
+    public static SloRule errorRate() {
+        return new SloRule(Metric.ERROR_RATE, 0);
+    }
+
+    /**
+     * @return - Rule, limiting the amount of requests per second. Usually used with greaterThan()
+     */
+    public static SloRule throughput() {
+        return new SloRule(Metric.THROUGHPUT, 0);
+    }
+
+    /**
+     * Parses a text rule definition - "{metric} [of {request key}] {operator} {threshold}[ms|%] [over {seconds}s]".
+     * Metric is one of "p{N}", "avg", "error rate" or "rps", operator is one of &lt;, &lt;=, &gt;, &gt;=.
+     * @param definition    - Rule definition, i.e. "p95 of (GET)checkout &lt; 400ms over 60s"
+     * @return              - Rule with LOG action
+     */
+    public static SloRule parse(String definition) {
+        Matcher matcher = DEFINITION_PATTERN.matcher(definition);
+        if (!matcher.matches()) {
+            throw new RuntimeException("Invalid SLO rule definition: '" + definition + "'");
+        }
+
+        String metricName = matcher.group(1).toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        SloRule rule;
+        if (matcher.group(2) != null) {
+            rule = percentile(Double.parseDouble(matcher.group(2)));
+        } else if (metricName.equals("error rate") || metricName.equals("errorrate")) {
+            rule = errorRate();
+        } else if (metricName.equals("rps")) {
+            rule = throughput();
+        } else {
+            rule = averageResponseTime();
+        }
+        rule.key = matcher.group(3);
+        rule.operator = matcher.group(4);
+        rule.threshold = Double.parseDouble(matcher.group(5));
+        if (matcher.group(6) != null) {
+            rule.over(Integer.parseInt(matcher.group(6)));
+        }
+
+        return rule;
+    }
+
+    /**
+     * @param key   - Request key in "({method}){name}" format, i.e. "(GET)checkout"
+     */
+    public SloRule of(String key) {
+        this.key = key;
+        return this;
+    }
+
+    public SloRule lessThan(double threshold) {
+        this.operator = "<";
+        this.threshold = threshold;
+        return this;
+    }
+
+    public SloRule greaterThan(double threshold) {
+        this.operator = ">";
+        this.threshold = threshold;
+        return this;
+    }
+
+    /**
+     * @param seconds   - Rolling window to evaluate the rule over. Capped by RollingStatistics.MAX_WINDOW_SECONDS
+     */
+    public SloRule over(int seconds) {
+        this.windowSeconds = Math.max(1, Math.min(seconds, RollingStatistics.MAX_WINDOW_SECONDS));
+        return this;
+    }
+
+    /**
+     * @param count - Minimum amount of requests in the window for the rule to be evaluated
+     */
+    public SloRule minRequests(long count) {
+        this.minRequests = Math.max(1, count);
+        return this;
+    }
+
+    public SloRule onBreach(SloAction action) {
+        this.action = action;
+        return this;
+    }
+
+    /**
+     * @param window    - Window snapshot of the rule's key (or totals)
+     * @return          - Measured value of the rule's metric
+     */
+    public double measure(RollingStatistics.Window window) {
+        switch (metric) {
+            case PERCENTILE:
+                return window.getResponseTimes().getValueAtPercentile(percentile);
+            case AVERAGE:
+                return window.getResponseTimes().getMean();
+            case ERROR_RATE:
+                return window.getErrorRate();
+            case THROUGHPUT:
+                return window.getRequestsPerSecond();
+            default:
+                throw new RuntimeException("Unsupported SLO metric " + metric);
+        }
+    }
+
+    /**
+     * @param value - Measured value
+     * @return      - Whether the value meets the objective
+     */
+    public boolean isMet(double value) {
+        switch (operator) {
+            case "<":
+                return value < threshold;
+            case "<=":
+                return value <= threshold;
+            case ">":
+                return value > threshold;
+            case ">=":
+                return value >= threshold;
+            default:
+                throw new RuntimeException("Unsupported SLO operator " + operator);
+        }
+    }
+
+    /**
+     * @param first     - First value
+     * @param second    - Second value
+     * @return          - The one further away from meeting the objective
+     */
+    public double worstOf(double first, double second) {
+        return operator.startsWith("<") ? Math.max(first, second) : Math.min(first, second);
+    }
+
+    /**
+     * @return - Rule definition in the same format parse() accepts
+     */
+    @Override
+    public String toString() {
+        String metricName;
+        String unit;
+        switch (metric) {
+            case PERCENTILE:
+                metricName = "p" + AggregatedRequestLog.percentileKey(percentile);
+                unit = "ms";
+                break;
+            case AVERAGE:
+                metricName = "avg";
+                unit = "ms";
+                break;
+            case ERROR_RATE:
+                metricName = "error rate";
+                unit = "%";
+                break;
+            default:
+                metricName = "rps";
+                unit = "";
+        }
+
+        return String.format("%s%s %s %s%s over %ds",
+            metricName,
+            key == null ? "" : " of " + key,
+            operator,
+            AggregatedRequestLog.percentileKey(threshold),
+            unit,
+            windowSeconds);
+    }
+
+    public static enum Metric {
+        PERCENTILE,     // Response time percentile, ms
+        AVERAGE,        // Average response time, ms
+        ERROR_RATE,     // Share of failed requests, %
+        THROUGHPUT      // Requests per second
+    }
+}
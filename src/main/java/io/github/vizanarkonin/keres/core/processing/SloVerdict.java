@@ -0,0 +1,100 @@
+package io.github.vizanarkonin.keres.core.processing;
+
+import org.json.JSONObject;
+
+import io.github.vizanarkonin.keres.core.grpc.SloVerdictEntry;
+import lombok.Getter;
+
+/**
+ * Evaluation state of a single SLO rule within the run. Rule is considered passed if it was never breached.
+ * Hub receives verdicts from the nodes as is - since it doesn't hold the live statistics, it doesn't evaluate the rules on it's own.
+ */
+@Getter
+public class SloVerdict {
+    private final String        rule;
+    private final SloAction     action;
+    // Id of the node the verdict was received from. Empty for own verdicts
+    private final String        nodeId;
+    private long                checksCount         = 0;
+    private long                breachesCount       = 0;
+    private long                firstBreachTime     = 0;
+    private double              lastValue           = 0;
+    private double              worstValue          = 0;
+
+    public SloVerdict(String rule, SloAction action, String nodeId) {
+        this.rule = rule;
+        this.action = action;
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * Records a single evaluation of the rule.
+     * @param rule      - Rule, verdict belongs to
+     * @param value     - Measured value
+     * @param timeStamp - Evaluation timestamp
+     * @return          - true if the rule was breached for the first time
+     */
+    public synchronized boolean record(SloRule rule, double value, long timeStamp) {
+        worstValue = checksCount == 0 ? value : rule.worstOf(worstValue, value);
+        lastValue = value;
+        checksCount++;
+        if (rule.isMet(value)) {
+            return false;
+        }
+
+        breachesCount++;
+        if (breachesCount == 1) {
+            firstBreachTime = timeStamp;
+            return true;
+        }
+
+        return false;
+    }
+
+    public synchronized boolean isPassed() {
+        return breachesCount == 0;
+    }
+
+    /**
+     * @return - Whether the verdict fails the run - i.e. the rule was breached and it's action is not just logging
+     */
+    public synchronized boolean failsRun() {
+        return breachesCount > 0 && action != SloAction.LOG;
+    }
+
+    public synchronized JSONObject toJSON() {
+        return new JSONObject()
+            .put("rule", rule)
+            .put("action", action.toString())
+            .put("node", nodeId)
+            .put("passed", isPassed())
+            .put("checksCount", checksCount)
+            .put("breachesCount", breachesCount)
+            .put("firstBreachTime", firstBreachTime)
+            .put("lastValue", lastValue)
+            .put("worstValue", worstValue);
+    }
+
+    public synchronized SloVerdictEntry toProto() {
+        return SloVerdictEntry.newBuilder()
+            .setRule(rule)
+            .setAction(action.name())
+            .setChecksCount(checksCount)
+            .setBreachesCount(breachesCount)
+            .setFirstBreachTime(firstBreachTime)
+            .setLastValue(lastValue)
+            .setWorstValue(worstValue)
+            .build();
+    }
+
+    public static SloVerdict fromProto(SloVerdictEntry input, String nodeId) {
+        SloVerdict result = new SloVerdict(input.getRule(), SloAction.valueOf(input.getAction()), nodeId);
+        result.checksCount = input.getChecksCount();
+        result.breachesCount = input.getBreachesCount();
+        result.firstBreachTime = input.getFirstBreachTime();
+        result.lastValue = input.getLastValue();
+        result.worstValue = input.getWorstValue();
+
+        return result;
+    }
+}
@@ -1,5 +1,6 @@
 package io.github.vizanarkonin.keres.core.utils;
 
+import io.github.vizanarkonin.keres.core.processing.MetricKeys;
 import lombok.Getter;
 
 /**
@@ -20,6 +21,10 @@ public class Response {
     private boolean isFailed = false;
     private boolean isSystemFailure = false;
     private String failureCause = "";
+    // How late (in ms) the request was started, compared to it's intended start time. -1 if request was not scheduled (closed-loop user)
+    private long scheduleDelay = -1;
+    // Id of the request key in MetricKeys registry, resolved by the request definition. NO_KEY if it's not resolved yet
+    private int metricKeyId = MetricKeys.NO_KEY;
 
     public Response setResponseCode(int responseCode) {
         this.responseCode = responseCode;
@@ -33,11 +38,13 @@ public class Response {
 
     public Response setRequestMethod(String requestMethod) {
         this.requestMethod = requestMethod;
+        this.metricKeyId = MetricKeys.NO_KEY;
         return this;
     }
 
     public Response setRequestName(String requestName) {
         this.requestName = requestName;
+        this.metricKeyId = MetricKeys.NO_KEY;
         return this;
     }
 
@@ -84,4 +91,20 @@ public class Response {
 
         return this;
     }
+
+    /**
+     * Sets pre-resolved request key id. Must be set after request method and name, since changing them resets it.
+     * @param value - Id from MetricKeys registry
+     */
+    public Response setMetricKeyId(int value) {
+        this.metricKeyId = value;
+
+        return this;
+    }
+
+    public Response setScheduleDelay(long value) {
+        this.scheduleDelay = value;
+
+        return this;
+    }
 }
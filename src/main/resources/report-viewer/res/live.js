@@ -0,0 +1,136 @@
+// Live dashboard of the run in progress. Server pushes a delta of the last complete second each second (see LiveDashboardServer),
+// and replays the latest ones on connect. Charts only keep the last LIVE_MAX_POINTS seconds
+const LIVE_MAX_POINTS = 600;
+var live_rps_chart = null;
+var live_response_times_chart = null;
+var live_errors_chart = null;
+var live_users_chart = null;
+var live_last_timestamp = -1;
+
+function initLiveDashboard() {
+    live_rps_chart = createLiveChart("liveRpsChart", ["Requests", "Failures"]);
+    live_errors_chart = createLiveChart("liveErrorsChart", ["Errors"]);
+    live_users_chart = createLiveChart("liveUsersChart", ["Users"]);
+
+    const events = new EventSource("events");
+    const status = document.getElementById("liveStatus");
+    events.onopen = () => status.innerText = "Connected";
+    events.onerror = () => status.innerText = "Reconnecting...";
+    events.onmessage = (event) => applyLiveDelta(JSON.parse(event.data));
+    events.addEventListener("finished", () => {
+        events.close();
+        status.innerText = "Run is finished";
+    });
+}
+
+function createLiveChart(canvasId, labels) {
+    const datasets = labels.map((label, index) => ({
+        label: label,
+        data: [],
+        fill: false,
+        borderColor: chartColors[index % chartColors.length],
+        backgroundColor: chartColors[index % chartColors.length],
+        borderWidth: 2,
+        pointRadius: 0
+    }));
+
+    return new Chart(
+        document.getElementById(canvasId),
+        {
+            type: "line",
+            data: {
+                datasets: datasets
+            },
+            options: {
+                maintainAspectRatio: false,
+                responsive: true,
+                animation: false,
+                interaction: {
+                    mode: 'index',
+                    axis: 'x',
+                    intersect: false
+                },
+                scales: {
+                    x: {
+                        type: 'time',
+                        time: {
+                            unit: 'second',
+                            displayFormats: {
+                                second: 'HH.mm.ss'
+                            },
+                            tooltipFormat: 'yyyy.MM.DD : HH.mm.ss'
+                        }
+                    },
+                    y: {
+                        beginAtZero: true
+                    }
+                }
+            }
+        }
+    );
+}
+
+// Response time datasets depend on the percentiles, sent by the server - so the chart is created with the first delta
+function createLiveResponseTimesChart(percentiles) {
+    return createLiveChart("liveResponseTimesChart", ["Average"].concat(percentiles.map((percentile) => `p${percentile}`)));
+}
+
+function applyLiveDelta(delta) {
+    // Replayed history may overlap with the deltas received before reconnect
+    if (delta.timeStamp <= live_last_timestamp) {
+        return;
+    }
+    live_last_timestamp = delta.timeStamp;
+
+    const total = delta.total;
+    if (live_response_times_chart === null) {
+        live_response_times_chart = createLiveResponseTimesChart(delta.percentiles);
+    }
+
+    pushLivePoints(live_rps_chart, delta.timeStamp, [total.requests, total.failures]);
+    pushLivePoints(live_errors_chart, delta.timeStamp, [total.requests === 0 ? 0 : total.failures * 100 / total.requests]);
+    pushLivePoints(live_users_chart, delta.timeStamp, [delta.users]);
+    // Seconds without responses have no response times - they're left as gaps
+    pushLivePoints(live_response_times_chart, delta.timeStamp, total.requests === 0 ?
+        new Array(delta.percentiles.length + 1).fill(null) :
+        [total.average].concat(delta.percentiles.map((key) => total.percentiles[key])));
+
+    populateLiveKeysTable(delta);
+}
+
+function pushLivePoints(chart, timeStamp, values) {
+    values.forEach((value, index) => {
+        const data = chart.data.datasets[index].data;
+        data.push({x: timeStamp, y: value});
+        if (data.length > LIVE_MAX_POINTS) {
+            data.shift();
+        }
+    });
+    chart.update("none");
+}
+
+function populateLiveKeysTable(delta) {
+    const percentileKeys = delta.percentiles;
+    document.getElementById("liveKeysTableHead").innerHTML = `<tr>
+        <th>Name</th><th>Requests</th><th>Failures</th><th>Average (ms)</th>
+        ${percentileKeys.map((key) => `<th>p${key} (ms)</th>`).join("")}
+    </tr>`;
+
+    const rows = Object.entries(delta.keys).map(([name, value]) => getLiveKeysRow(name, value, percentileKeys));
+    rows.push(getLiveKeysRow("Total", delta.total, percentileKeys, true));
+    document.getElementById("liveKeysTableBody").innerHTML = rows.join("");
+}
+
+function getLiveKeysRow(name, value, percentileKeys, bold = false) {
+    return `<tr${bold ? ' style="font-weight: bold;"' : ''}>
+               <td>${escapeLiveHtml(name)}</td>
+               <td>${value.requests}</td>
+               <td>${value.failures}</td>
+               <td>${value.requests === 0 ? "-" : value.average}</td>
+               ${percentileKeys.map((key) => `<td>${value.percentiles[key] === undefined ? "-" : value.percentiles[key]}</td>`).join("")}
+           </tr>`;
+}
+
+function escapeLiveHtml(text) {
+    return text.replace(/&/g, "&amp;").replace(/</g, "&lt;").replace(/>/g, "&gt;");
+}
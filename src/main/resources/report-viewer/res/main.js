@@ -6,6 +6,10 @@ var second_percentile_value = 60;
 var third_percentile_value = 75;
 var fourth_percentile_value = 85;
 var fifth_percentile_value = 95;
+// Either "average" or one of the precomputed percentiles keys
+var response_times_metric = "average";
+// Either "measured" or "corrected" (coordinated omission corrected response times, if the run has them)
+var response_times_source = "measured";
 
 var response_times_distribution_chart = null;
 var request_distribution_chart = null;
@@ -13,8 +17,28 @@ var response_times_chart = null;
 var rps_chart = null;
 var failures_chart = null;
 var users_chart = null;
+var response_times_scatter_chart = null;
 var failure_entries = new Map();
 
+// Time series, drawn on the time charts. Embedded ones by default, replaced with the finer resolution ones (if the report has them) on zoom
+var view_series = null;
+// Maximum amount of points per drawn series, same as the one used by report generator
+const SERIES_MAX_POINTS = 1800;
+// Series chunks (series/{resolution}-{index}.js files), key is "{resolution}-{index}"
+var loaded_series_chunks = new Map();
+var pending_series_chunks = new Map();
+var series_update_timeout = null;
+var series_update_id = 0;
+
+// Series and full summaries (with the distributions) of each key are kept in separate files (key_files), loaded once the key is expanded.
+// Reports of older versions embed all of it into results file
+const KEYS_EXPANDED_BY_DEFAULT = 10;
+var key_series = {};
+var key_summaries = {};
+var pending_key_data = new Map();
+// Keys, drawn on the time charts
+var expanded_keys = new Set();
+
 const chartColors = [
     'rgba(255, 159, 64, 0.8)',      // Soft orange
     'rgba(0, 139, 139, 0.8)',       // Dark cyan
@@ -40,6 +64,14 @@ function setThresholdValues(low, high) {
     document.getElementById("slowThresholdValue").value = slow_threshold;
 }
 
+// Table percentiles of the run (if the report has them) replace the defaults
+function initPercentileValues() {
+    if (typeof table_percentiles !== "undefined" && table_percentiles.length === 5) {
+        [first_percentile_value, second_percentile_value, third_percentile_value, fourth_percentile_value, fifth_percentile_value] = table_percentiles;
+    }
+    setPercentileValues(first_percentile_value, second_percentile_value, third_percentile_value, fourth_percentile_value, fifth_percentile_value);
+}
+
 function setPercentileValues(first, second, third, fourth, fifth) {
     first_percentile_value = first;
     second_percentile_value = second;
@@ -76,13 +108,32 @@ function updatePercentiles() {
     )
 
     populateResponseTimesTable();
+    // Percentiles that are not precomputed are calculated from the distributions, which come with the key data
+    const precomputed = typeof requests_summary_total === "undefined" ? {} : requests_summary_total.percentiles;
+    const percentiles = [first_percentile_value, second_percentile_value, third_percentile_value, fourth_percentile_value, fifth_percentile_value];
+    if (typeof key_files !== "undefined" && percentiles.some((p) => precomputed[String(Number(p))] === undefined)) {
+        Promise.all(Object.keys(requests_summary).map(loadKeyData))
+            .then(populateResponseTimesTable)
+            .catch((error) => console.error(error));
+    }
 }
 
 function drawResponseTimesSection() {
+    drawResponseTimesChart();
+    populateResponseTimesTable();
+}
+
+function drawResponseTimesChart() {
     if (response_times_chart !== null) {
         response_times_chart.destroy();
     }
-    response_times_chart = drawGraph(document.getElementById("response_times_chart"), "responseTimesLog", "Response time, ms", {
+    const valuesArray = response_times_metric === "average" ? 
+        "responseTimesLog" : 
+        (value) => value.percentileLogs[response_times_metric] || [];
+    const metricName = response_times_metric === "average" ? 
+        "Response time, ms" : 
+        `Response time, p${response_times_metric}, ms`;
+    response_times_chart = drawGraph(document.getElementById("response_times_chart"), valuesArray, metricName, {
         line1: {
             label: {
                 content: 'Fast',
@@ -110,15 +161,68 @@ function drawResponseTimesSection() {
     },
     "response_times_chart_legend",
     false);
+}
+
+function populateResponseTimesMetrics() {
+    const select = document.getElementById("responseTimesMetric");
+    let options = [`<option value="average">Average</option>`];
+    // Summary may have more percentiles than the series - only the ones with series can be charted
+    let percentiles = [];
+    if (typeof series_percentiles !== "undefined") {
+        percentiles = series_percentiles;
+    } else {
+        const series = Object.values(requests_averages_data)[0];
+        percentiles = series !== undefined && series.percentileLogs !== undefined ? Object.keys(series.percentileLogs) : [];
+    }
+    for (const percentile of percentiles.slice().sort((a, b) => a - b)) {
+        options.push(`<option value="${percentile}">p${percentile}</option>`);
+    }
+    select.innerHTML = options.join("");
+    select.value = response_times_metric;
+}
+
+function populateResponseTimesSources() {
+    const hasCorrections = Object.values(requests_summary).some(hasCorrectionsOf);
+    document.getElementById("responseTimesSourceContainer").style.display = hasCorrections ? "flex" : "none";
+    document.getElementById("responseTimesSource").value = response_times_source;
+}
+
+function updateResponseTimesSource() {
+    response_times_source = document.getElementById("responseTimesSource").value;
     populateResponseTimesTable();
 }
 
+// Summaries without the distributions only have a flag
+function hasCorrectionsOf(value) {
+    return value.correctedResponseTimes !== undefined || value.corrected === true;
+}
+
+// Returns [distribution, min, max, precomputed percentiles] of response times of given summary entry, according to selected source.
+// Distribution is undefined if the summary has none. Keys without corrections have the same measured and corrected response times
+function getResponseTimesOf(value) {
+    if (response_times_source === "corrected" && hasCorrectionsOf(value)) {
+        const distribution = value.correctedResponseTimes;
+        const min = value.correctedMinResponseTime !== undefined ? 
+            value.correctedMinResponseTime : 
+            (distribution.length > 0 ? distribution[0][0] : 0);
+        return [distribution, min, value.correctedMaxResponseTime, value.correctedPercentiles];
+    }
+
+    return [value.responseTimes, value.minResponseTime, value.maxResponseTime, value.percentiles];
+}
+
+function updateResponseTimesMetric() {
+    response_times_metric = document.getElementById("responseTimesMetric").value;
+    drawResponseTimesChart();
+}
+
+// Requests and failures series of coarser resolutions hold the counts per bucket - they're drawn as per-second rates
 function drawRPSGraph() {
-    rps_chart = drawGraph(document.getElementById("rps_chart"), "requestsPerSecondLog", "Responses per second", {}, "rps_chart_legend");
+    rps_chart = drawGraph(document.getElementById("rps_chart"), "requestsPerSecondLog", "Responses per second", {}, "rps_chart_legend", true, getViewSeries().resolution / 1000);
 }
 
 function drawFailuresGraph() {
-    failures_chart = drawGraph(document.getElementById("failures_chart"), "failuresLog", "Failures", {}, "failures_chart_legend");
+    failures_chart = drawGraph(document.getElementById("failures_chart"), "failuresLog", "Failures per second", {}, "failures_chart_legend", true, getViewSeries().resolution / 1000);
 }
 
 function drawResponseTimesDistributionChart() {
@@ -126,16 +230,31 @@ function drawResponseTimesDistributionChart() {
     let normal_responses = 0;
     let slow_responses = 0;
     let total_failures = 0;
+    // Each entry is a [response time, count] pair of passed responses
+    const countResponses = (distribution) => {
+        for (const [responseTime, count] of distribution) {
+            if (responseTime <= fast_threshold) {
+                fast_responses += count;
+            } else if (responseTime <= slow_threshold) {
+                normal_responses += count;
+            } else {
+                slow_responses += count;
+            }
+        }
+    };
 
-    for (const [key, value] of Object.entries(requests_log)) {
+    // Merged distribution of all the keys is precomputed. Reports of older versions only have per-key ones
+    if (typeof requests_distribution !== "undefined") {
+        countResponses(requests_distribution);
+    }
+    for (const [key, value] of Object.entries(requests_summary)) {
         if (key.startsWith("(ACTION)")) {
             continue;
         }
-
-        fast_responses += value.filter(res => res[2] <= fast_threshold && res[3] !== true).length;
-        normal_responses += value.filter(res => res[2] > fast_threshold && res[2] <= slow_threshold && res[3] !== true).length;
-        slow_responses += value.filter(res => res[2] > slow_threshold && res[3] !== true).length;
-        total_failures += value.filter(res => res[3] === true).length
+        if (typeof requests_distribution === "undefined") {
+            countResponses(value.passedResponseTimes);
+        }
+        total_failures += value.failuresCount;
     }
 
     let datasets = [
@@ -200,14 +319,14 @@ function drawRequestsDistributionChart() {
         }
     ];
 
-    for (const [key, value] of Object.entries(requests_log)) {
+    for (const [key, value] of Object.entries(requests_summary)) {
         if (key.startsWith("(ACTION)")) {
             continue;
         }
         
         labels.push(key);
-        datasets[0].data.push(value.filter(entry => entry[3] === false).length);
-        datasets[1].data.push(value.filter(entry => entry[3] === true).length);
+        datasets[0].data.push(value.requestsCount - value.failuresCount);
+        datasets[1].data.push(value.failuresCount);
     }
 
     if (request_distribution_chart !== null) {
@@ -240,13 +359,25 @@ function drawRequestsDistributionChart() {
     request_distribution_chart = drawBarChart(document.getElementById("requests_distribution_bar_chart"), datasets, labels, datalabels);
 }
 
-function drawGraph(canvas, valuesArray, metricName, annotations, legendContainerElemendId, includeTotals = true) {
+function drawGraph(canvas, valuesArray, metricName, annotations, legendContainerElemendId, includeTotals = true, divider = 1) {
     let datasets = [];
+    const series = getViewSeries();
 
     // Create a map for totals with initial zero values for each timestamp
-    const totalsMap = new Map(timestamps.map(t => [t, 0]));
+    const totalsMap = new Map(series.timestamps.map(t => [t, 0]));
+    // Embedded series only include the loaded keys - their totals are precomputed
+    const totals = series.totals !== undefined && typeof valuesArray === "string" ? series.totals[valuesArray] : undefined;
+    if (totals !== undefined) {
+        for (const entry of totals) {
+            totalsMap.set(entry.timeStamp, entry.logValue / divider);
+        }
+    }
 
-    for (const [key, value] of Object.entries(requests_averages_data)) {
+    for (const [key, value] of Object.entries(series.requests_averages_data)) {
+        const expanded = expanded_keys.has(key);
+        if (!expanded && totals !== undefined) {
+            continue;
+        }
         let color = chartColors[datasets.length % chartColors.length];
         let values_data_set = {
             label: key,
@@ -256,18 +387,24 @@ function drawGraph(canvas, valuesArray, metricName, annotations, legendContainer
             backgroundColor: color
         };
 
+        // Values array is either a property name, or an accessor function for nested series
+        const entries = typeof valuesArray === "function" ? valuesArray(value) : value[valuesArray];
         // Create a lookup map for this dataset's entries
-        const entryMap = new Map(value[valuesArray].map(entry => [entry.timeStamp, entry.logValue]));
+        const entryMap = new Map(entries.map(entry => [entry.timeStamp, entry.logValue]));
 
-        for (const timestamp of timestamps) {
-            const logValue = entryMap.get(timestamp) || 0;
+        for (const timestamp of series.timestamps) {
+            const logValue = (entryMap.get(timestamp) || 0) / divider;
             values_data_set.data.push({x: timestamp, y: logValue});
             
             // Accumulate to totals
-            totalsMap.set(timestamp, totalsMap.get(timestamp) + logValue);
+            if (totals === undefined) {
+                totalsMap.set(timestamp, totalsMap.get(timestamp) + logValue);
+            }
         }
         
-        datasets.push(values_data_set);
+        if (expanded) {
+            datasets.push(values_data_set);
+        }
     }
 
     // Add the Totals dataset
@@ -286,6 +423,124 @@ function drawGraph(canvas, valuesArray, metricName, annotations, legendContainer
     return createChart(canvas, datasets, metricName, annotations, legendContainerElemendId);
 }
 
+// Raw (or sampled) responses are kept in a separate file, which is only loaded on demand - it may be large.
+// Section is hidden if the report has no samples
+function initResponseTimesScatterSection() {
+    const section = document.getElementById("responseTimesScatterSection");
+    // Reports of older versions embed the samples into results file
+    if (typeof requests_log !== "undefined") {
+        document.getElementById("responseTimesScatterLoader").style.display = "none";
+        drawResponseTimesScatterChart();
+        return;
+    }
+    if (typeof requests_log_samples === "undefined" || requests_log_samples === 0) {
+        section.style.display = "none";
+        return;
+    }
+    section.style.display = "block";
+    document.getElementById("responseTimesScatterInfo").innerText = `${requests_log_samples} responses`;
+}
+
+function loadResponseTimesScatterChart() {
+    const button = document.getElementById("loadSampledResponses");
+    button.disabled = true;
+    button.innerText = "Loading...";
+    const script = document.createElement("script");
+    script.src = requests_log_file;
+    script.onload = () => {
+        document.getElementById("responseTimesScatterLoader").style.display = "none";
+        drawResponseTimesScatterChart();
+    };
+    script.onerror = () => {
+        button.innerText = `Failed to load ${requests_log_file}`;
+    };
+    document.head.appendChild(script);
+}
+
+// Draws sampled raw responses (requests_log section) - one point per response, failed ones are drawn in red
+function drawResponseTimesScatterChart() {
+    const section = document.getElementById("responseTimesScatterSection");
+    const entries = Object.entries(requests_log).filter(([key, samples]) => samples.length > 0);
+    if (entries.length === 0) {
+        section.style.display = "none";
+        return;
+    }
+    section.style.display = "block";
+
+    let datasets = [];
+    let failed = [];
+    for (const [key, samples] of entries) {
+        const color = chartColors[datasets.length % chartColors.length];
+        let passed = [];
+        // Entry layout: start timestamp, finish timestamp, response time, failure flag, response code, failure message id
+        for (const sample of samples) {
+            (sample[3] ? failed : passed).push({x: sample[0], y: sample[2]});
+        }
+        datasets.push({
+            label: key,
+            data: passed,
+            borderColor: color,
+            backgroundColor: color,
+            pointRadius: 2
+        });
+    }
+    if (failed.length > 0) {
+        datasets.push({
+            label: "Failed",
+            data: failed,
+            borderColor: "rgba(220, 53, 69, 0.9)",
+            backgroundColor: "rgba(220, 53, 69, 0.9)",
+            pointRadius: 3
+        });
+    }
+
+    response_times_scatter_chart = new Chart(
+        document.getElementById("response_times_scatter_chart"),
+        {
+            type: "scatter",
+            data: {
+                datasets: datasets
+            },
+            options: {
+                maintainAspectRatio: false,
+                responsive: true,
+                plugins: {
+                    datalabels: {
+                        display: false
+                    },
+                    subtitle: {
+                        display: true,
+                        text: "Random sample of responses - aggregates above are built from all of them"
+                    }
+                },
+                scales: {
+                    x: {
+                        type: 'time',
+                        time: {
+                            unit: 'second',
+                            displayFormats: {
+                                second: 'yyyy.MM.DD : HH.mm.ss'
+                            },
+                            tooltipFormat: 'yyyy.MM.DD : HH.mm.ss'
+                        },
+                        title: {
+                            display: true,
+                            text: 'Start time'
+                        }
+                    },
+                    y: {
+                        type: 'linear',
+                        title: {
+                            display: true,
+                            text: 'Response time, ms'
+                        }
+                    }
+                }
+            }
+        }
+    );
+}
+
 function drawUsersGraph() {
     let dataset = {
         label: "Active users",
@@ -295,13 +550,10 @@ function drawUsersGraph() {
         backgroundColor: chartColors[0]
     };
 
-    for (timestamp of timestamps) {
-        let entry = users_timeline.find((entry) => entry.timeStamp === timestamp);
-        if (entry === undefined) {
-            dataset.data.push({x: timestamp, y: 0});
-        } else {
-            dataset.data.push({x: entry.timeStamp, y: entry.logValue});
-        }
+    const series = getViewSeries();
+    const entryMap = new Map(series.users_timeline.map(entry => [entry.timeStamp, entry.logValue]));
+    for (const timestamp of series.timestamps) {
+        dataset.data.push({x: timestamp, y: entryMap.get(timestamp) || 0});
     }
 
     let datasets = [];
@@ -312,110 +564,139 @@ function drawUsersGraph() {
 
 function populateResponseTimesTable() {
     const tableBody = document.getElementById("response_times_table_rows");
-    tableBody.innerHTML = "";
     let rows = [];
-    
-    let total_min_values = [];
-    let total_p1_values = [];
-    let total_p2_values = [];
-    let total_p3_values = [];
-    let total_p4_values = [];
-    let total_p5_values = [];
-    let total_max_values = [];
-    let total_avg_values = [];
-    
-    let total_requests = 0;
-    let total_failures = 0;
-    let endpoint_count = 0;
 
-    for (const [key, value] of Object.entries(requests_averages_data)) {
-        endpoint_count++;
-        
-        const responseTimes = value.responseTimesLog
-            .filter(entry => entry.logValue > 0)
-            .map(entry => entry.logValue);
-        
-        responseTimes.sort((a, b) => a - b);
-        
-        const count = responseTimes.length;
-        const total_response_time = responseTimes.reduce((sum, val) => sum + val, 0);
-        
-        const getPercentile = (p) => count > 0 ? 
-            responseTimes[Math.floor((count / 100) * p)] : 
-            0;
-            
-        const p1 = getPercentile(first_percentile_value);
-        const p2 = getPercentile(second_percentile_value);
-        const p3 = getPercentile(third_percentile_value);
-        const p4 = getPercentile(fourth_percentile_value);
-        const p5 = getPercentile(fifth_percentile_value);
-        
-        const failures = value.failuresLog
-            .filter(entry => entry.logValue > 0)
-            .map(entry => entry.logValue);
-            
-        const total_failure_count = failures.reduce((sum, val) => sum + val, 0);
-        const request_count = requests_log[key]?.length || 0;
-        const failure_percentage = request_count > 0 ? 
-            Math.floor((total_failure_count / request_count) * 100) : 
-            0;
-        
-        if (count > 0) {
-            total_min_values.push(responseTimes[0]);
-            total_p1_values.push(p1);
-            total_p2_values.push(p2);
-            total_p3_values.push(p3);
-            total_p4_values.push(p4);
-            total_p5_values.push(p5);
-            total_max_values.push(responseTimes[count - 1]);
-            total_avg_values.push(Math.floor(total_response_time / count));
+    Object.entries(requests_summary).forEach(([key, value], index) => {
+        // Full summary (with the distributions) is used once the key is loaded
+        rows.push(getResponseTimesRow(key, key_summaries[key] || value, false, index));
+    });
+
+    if (rows.length > 0) {
+        // Reports of older versions have no precomputed totals - these are merged from the keys
+        const total = typeof requests_summary_total === "undefined" ? mergeSummaries(Object.values(requests_summary)) : requests_summary_total;
+        rows.push(getResponseTimesRow("Total", total, true));
+    }
+
+    tableBody.innerHTML = rows.join("");
+}
+
+// Key rows (the ones with index) can be expanded - key's data is loaded and it's series are drawn on the time charts
+function getResponseTimesRow(name, value, bold = false, index = null) {
+    const request_count = value.requestsCount;
+    const failure_count = value.failuresCount;
+    const failure_percentage = request_count > 0 ? 
+        Math.floor((failure_count / request_count) * 100) : 
+        0;
+    const [distribution, min_response_time, max_response_time, percentiles] = getResponseTimesOf(value);
+    let distribution_count = null;
+    const getPercentile = (p) => {
+        // Table percentiles of the run are precomputed - any other ones are calculated from the distribution
+        const precomputed = percentiles !== undefined ? percentiles[String(Number(p))] : undefined;
+        if (precomputed !== undefined) {
+            return precomputed;
         }
-        
-        total_requests += request_count;
-        total_failures += total_failure_count;
-        
-        rows.push(
-            `<tr>
-               <td>${key}</td>
-               <td>${responseTimes[0] || 0}</td>
-               <td>${p1}</td>
-               <td>${p2}</td>
-               <td>${p3}</td>
-               <td>${p4}</td>
-               <td>${p5}</td>
-               <td>${count > 0 ? responseTimes[count - 1] : 0}</td>
-               <td>${count > 0 ? Math.floor(total_response_time / count) : 0}</td>
+        // Key data is not loaded yet
+        if (distribution === undefined) {
+            return "-";
+        }
+        if (distribution_count === null) {
+            // Corrected distribution includes synthetic samples, so it's total count may exceed the requests count
+            distribution_count = distribution.reduce((sum, entry) => sum + entry[1], 0);
+        }
+
+        return getPercentileFromDistribution(distribution, distribution_count, p, min_response_time, max_response_time);
+    };
+
+    const toggle = index === null ? 
+        "" : 
+        `<button class="btn btn-sm btn-link p-0 me-1" title="Show on the charts" onclick="toggleKey(${index});">${expanded_keys.has(name) ? "&#9662;" : "&#9656;"}</button>`;
+
+    return `<tr${bold ? ' style="font-weight: bold;"' : ''}>
+               <td>${toggle}${name}</td>
+               <td>${request_count > 0 ? min_response_time : 0}</td>
+               <td>${getPercentile(first_percentile_value)}</td>
+               <td>${getPercentile(second_percentile_value)}</td>
+               <td>${getPercentile(third_percentile_value)}</td>
+               <td>${getPercentile(fourth_percentile_value)}</td>
+               <td>${getPercentile(fifth_percentile_value)}</td>
+               <td>${max_response_time}</td>
+               <td>${value.averageResponseTime}</td>
                <td>${request_count}</td>
-               <td>${total_failure_count}</td>
+               <td>${failure_count}</td>
                <td>${failure_percentage}%</td>
-            </tr>`
-        );
+            </tr>`;
+}
+
+// Merges summaries of all the keys into a totals one. Distributions are merged, so totals percentiles are real ones - not averages
+function mergeSummaries(summaries) {
+    const hasCorrections = summaries.some((value) => value.correctedResponseTimes !== undefined);
+    const responseTimes = new Map();
+    const correctedResponseTimes = new Map();
+    let total = {
+        requestsCount: 0,
+        failuresCount: 0,
+        averageResponseTime: 0,
+        minResponseTime: Number.MAX_SAFE_INTEGER,
+        maxResponseTime: 0,
+        correctedMaxResponseTime: 0
+    };
+    let weighted_average = 0;
+
+    for (const value of summaries) {
+        total.requestsCount += value.requestsCount;
+        total.failuresCount += value.failuresCount;
+        if (value.requestsCount === 0) {
+            continue;
+        }
+        total.minResponseTime = Math.min(total.minResponseTime, value.minResponseTime);
+        total.maxResponseTime = Math.max(total.maxResponseTime, value.maxResponseTime);
+        weighted_average += value.averageResponseTime * value.requestsCount;
+        for (const [responseTime, count] of value.responseTimes) {
+            responseTimes.set(responseTime, (responseTimes.get(responseTime) || 0) + count);
+        }
+        // Keys without corrections contribute their measured response times
+        if (hasCorrections) {
+            const distribution = value.correctedResponseTimes !== undefined ? value.correctedResponseTimes : value.responseTimes;
+            for (const [responseTime, count] of distribution) {
+                correctedResponseTimes.set(responseTime, (correctedResponseTimes.get(responseTime) || 0) + count);
+            }
+            total.correctedMaxResponseTime = Math.max(total.correctedMaxResponseTime, 
+                value.correctedMaxResponseTime !== undefined ? value.correctedMaxResponseTime : value.maxResponseTime);
+        }
     }
 
-    const calculateAverage = (arr) => arr.length > 0 ? 
-        Math.floor(arr.reduce((sum, val) => sum + val, 0) / arr.length) : 
-        0;
+    total.averageResponseTime = total.requestsCount > 0 ? Math.floor(weighted_average / total.requestsCount) : 0;
+    total.responseTimes = Array.from(responseTimes.entries()).sort((a, b) => a[0] - b[0]);
+    if (hasCorrections) {
+        total.correctedResponseTimes = Array.from(correctedResponseTimes.entries()).sort((a, b) => a[0] - b[0]);
+    }
 
-    if (endpoint_count > 0) {
-        rows.push(
-            `<tr style="font-weight: bold;">
-               <td>Total</td>
-               <td>${calculateAverage(total_min_values)}</td>
-               <td>${calculateAverage(total_p1_values)}</td>
-               <td>${calculateAverage(total_p2_values)}</td>
-               <td>${calculateAverage(total_p3_values)}</td>
-               <td>${calculateAverage(total_p4_values)}</td>
-               <td>${calculateAverage(total_p5_values)}</td>
-               <td>${calculateAverage(total_max_values)}</td>
-               <td>${calculateAverage(total_avg_values)}</td>
-               <td>${total_requests}</td>
-               <td>${total_failures}</td>
-               <td>${total_requests > 0 ? Math.floor((total_failures / total_requests) * 100) : 0}%</td>
-            </tr>`
-        );
+    return total;
+}
+
+// Returns the value at given percentile of a response times distribution.
+// Distribution is a list of [response time, count] pairs, sorted by response time - values are accurate to 1%.
+function getPercentileFromDistribution(distribution, totalCount, percentile, min, max) {
+    if (totalCount === 0 || distribution.length === 0) {
+        return 0;
+    }
+    if (percentile <= 0) {
+        return min;
+    }
+    if (percentile >= 100) {
+        return max;
     }
 
-    tableBody.innerHTML = rows.join("");
+    const rank = Math.max(1, Math.ceil(percentile / 100 * totalCount));
+    let seen = 0;
+    for (const [responseTime, count] of distribution) {
+        seen += count;
+        if (seen >= rank) {
+            return Math.max(min, Math.min(max, responseTime));
+        }
+    }
+
+    return max;
 }
 
 function populateResponseFailuresTable() {
@@ -435,13 +716,45 @@ function populateResponseFailuresTable() {
             </tr>`
         );
         
-        failure_entries.set(counter, value.response);
+        failure_entries.set(counter, failure_messages[value.responseId] ?? "");
         counter += 1;
     }
 
     document.getElementById("failures_table_rows").innerHTML = rows.join("");
 }
 
+// SLO section is only shown if the run had any rules. Reports of older versions don't have the verdicts at all
+function populateSloTable() {
+    const section = document.getElementById("sloSection");
+    if (typeof slo_verdicts === "undefined" || slo_verdicts.verdicts.length === 0) {
+        section.style.display = "none";
+        return;
+    }
+    section.style.display = "block";
+
+    const status = document.getElementById("slo_status");
+    status.innerText = slo_verdicts.failed ? "Run failed" : "Run passed";
+    status.className = slo_verdicts.failed ? "badge bg-danger" : "badge bg-success";
+
+    let rows = [];
+    for (const verdict of slo_verdicts.verdicts) {
+        rows.push(
+            `<tr class="${verdict.passed ? "" : "table-danger"}">
+               <td>${verdict.rule}</td>
+               <td>${verdict.node === "" ? "-" : verdict.node}</td>
+               <td>${verdict.action}</td>
+               <td>${verdict.checksCount === 0 ? "No data" : verdict.passed ? "Passed" : "Breached"}</td>
+               <td>${verdict.breachesCount} / ${verdict.checksCount}</td>
+               <td>${verdict.firstBreachTime > 0 ? moment(verdict.firstBreachTime).format("yyyy.MM.DD : HH.mm.ss") : "-"}</td>
+               <td>${+verdict.worstValue.toFixed(2)}</td>
+               <td>${+verdict.lastValue.toFixed(2)}</td>
+            </tr>`
+        );
+    }
+
+    document.getElementById("slo_table_rows").innerHTML = rows.join("");
+}
+
 function openErrorContentModal(number) {
     document.getElementById("errorModalContent").innerHTML = failure_entries.get(number);
     $('#errorModal').modal('show');
@@ -575,6 +888,9 @@ function createChart(container, datasets, metricName, annotations, legendContain
                                         'none'
                                       );
                                 });
+                            },
+                            onZoomComplete({ chart }) {
+                                scheduleViewSeriesUpdate(chart);
                             }
                             },
                             pan: {
@@ -589,6 +905,9 @@ function createChart(container, datasets, metricName, annotations, legendContain
                                             'none'
                                           );
                                     });
+                                },
+                                onPanComplete({ chart }) {
+                                    scheduleViewSeriesUpdate(chart);
                                 }
                             }
                     },
@@ -636,6 +955,293 @@ function createChart(container, datasets, metricName, annotations, legendContain
     );
 }
 
+// Series, embedded into results file, and the ones of the loaded keys. Reports of older versions only have per-second series and no resolution levels
+function getEmbeddedSeries() {
+    return {
+        resolution: typeof series_resolution === "undefined" ? 1000 : series_resolution,
+        timestamps: timestamps,
+        requests_averages_data: key_series,
+        users_timeline: users_timeline,
+        totals: typeof totals_series === "undefined" ? undefined : totals_series
+    };
+}
+
+// Loads the data of the first keys. Returned promise is resolved once it's done
+function initKeyData() {
+    if (typeof key_files === "undefined") {
+        key_series = requests_averages_data;
+        key_summaries = requests_summary;
+        Object.keys(requests_summary).forEach((key) => expanded_keys.add(key));
+        return Promise.resolve();
+    }
+
+    const keys = Object.keys(requests_summary).slice(0, KEYS_EXPANDED_BY_DEFAULT);
+    keys.forEach((key) => expanded_keys.add(key));
+
+    return Promise.all(keys.map(loadKeyData)).catch((error) => console.error(error));
+}
+
+// Called by the per-key files
+function register_key_data(data) {
+    if (data.series !== undefined) {
+        key_series[data.name] = data.series;
+    }
+    key_summaries[data.name] = data.summary;
+    const pending = pending_key_data.get(data.name);
+    if (pending !== undefined) {
+        pending_key_data.delete(data.name);
+        pending.resolve(data);
+    }
+}
+
+// Plain files are loaded as scripts, same as series chunks. Compressed ones can only be fetched, so the report has to be served over HTTP
+function loadKeyData(key) {
+    if (key_summaries[key] !== undefined) {
+        return Promise.resolve();
+    }
+    if (pending_key_data.has(key)) {
+        return pending_key_data.get(key).promise;
+    }
+
+    const file = key_files[key];
+    let pending = {};
+    pending.promise = new Promise((resolve, reject) => {
+        pending.resolve = resolve;
+        const fail = (error) => {
+            pending_key_data.delete(key);
+            reject(error);
+        };
+        if (key_files_compressed) {
+            fetch(file)
+                .then((response) => {
+                    if (!response.ok) {
+                        throw new Error(`Failed to load ${file}: ${response.status}`);
+                    }
+                    return new Response(response.body.pipeThrough(new DecompressionStream("gzip"))).json();
+                })
+                .then(register_key_data)
+                .catch(fail);
+        } else {
+            const script = document.createElement("script");
+            script.src = file;
+            script.onerror = () => {
+                script.remove();
+                fail(new Error(`Failed to load ${file}`));
+            };
+            document.head.appendChild(script);
+        }
+    });
+    pending_key_data.set(key, pending);
+
+    return pending.promise;
+}
+
+function toggleKey(index) {
+    const key = Object.keys(requests_summary)[index];
+    if (expanded_keys.has(key)) {
+        expanded_keys.delete(key);
+        redrawKeyViews();
+        return;
+    }
+
+    loadKeyData(key)
+        .then(() => {
+            expanded_keys.add(key);
+            redrawKeyViews();
+        })
+        .catch((error) => console.error(error));
+}
+
+// Redraws everything that depends on the loaded and expanded keys, keeping the time charts zoom
+function redrawKeyViews() {
+    redrawTimeCharts({ min: Math.trunc(response_times_chart.scales.x.min), max: Math.trunc(response_times_chart.scales.x.max) });
+    populateResponseTimesTable();
+}
+
+function getViewSeries() {
+    if (view_series === null) {
+        view_series = getEmbeddedSeries();
+    }
+
+    return view_series;
+}
+
+// Called by the series chunk files
+function register_series_chunk(resolution, index, chunk) {
+    const key = `${resolution}-${index}`;
+    loaded_series_chunks.set(key, chunk);
+    const pending = pending_series_chunks.get(key);
+    if (pending !== undefined) {
+        pending_series_chunks.delete(key);
+        pending.resolve(chunk);
+    }
+}
+
+// Chunks are loaded as scripts rather than fetched - this way it works for the reports opened straight from the disk
+function loadSeriesChunk(resolution, index) {
+    const key = `${resolution}-${index}`;
+    if (loaded_series_chunks.has(key)) {
+        return Promise.resolve(loaded_series_chunks.get(key));
+    }
+    if (pending_series_chunks.has(key)) {
+        return pending_series_chunks.get(key).promise;
+    }
+
+    let pending = {};
+    pending.promise = new Promise((resolve, reject) => {
+        pending.resolve = resolve;
+        const script = document.createElement("script");
+        script.src = `series/${key}.js`;
+        script.onerror = () => {
+            pending_series_chunks.delete(key);
+            script.remove();
+            reject(new Error(`Failed to load ${script.src}`));
+        };
+        document.head.appendChild(script);
+    });
+    pending_series_chunks.set(key, pending);
+
+    return pending.promise;
+}
+
+// Returns the finest resolution level, which fits given time range into SERIES_MAX_POINTS, or null if the embedded series should be used
+function selectSeriesLevel(min, max) {
+    if (typeof series_levels === "undefined") {
+        return null;
+    }
+    // Levels are sorted from the finest one
+    for (const level of series_levels) {
+        if ((max - min) / level.resolution <= SERIES_MAX_POINTS) {
+            return level;
+        }
+    }
+
+    return null;
+}
+
+function getSeriesChunkIndex(level, timestamp) {
+    const index = Math.floor((timestamp - level.start) / (level.resolution * level.chunkPoints));
+
+    return Math.min(Math.max(index, 0), level.chunksCount - 1);
+}
+
+// Joins consecutive chunks of the same resolution into a single series
+function mergeSeriesChunks(resolution, chunks) {
+    let series = {
+        resolution: resolution,
+        timestamps: [],
+        requests_averages_data: {},
+        users_timeline: []
+    };
+    chunks.forEach((chunk, position) => {
+        // Each chunk starts with the frame start mark, which is the last timestamp of the previous chunk
+        series.timestamps.push(...(position === 0 ? chunk.timestamps : chunk.timestamps.slice(1)));
+        series.users_timeline.push(...chunk.users_timeline);
+        for (const [key, value] of Object.entries(chunk.requests_averages_data)) {
+            let target = series.requests_averages_data[key];
+            if (target === undefined) {
+                target = {
+                    name: value.name,
+                    requestsCount: 0,
+                    failuresCount: 0,
+                    responseTimesLog: [],
+                    requestsPerSecondLog: [],
+                    failuresLog: [],
+                    percentileLogs: {}
+                };
+                series.requests_averages_data[key] = target;
+            }
+            target.requestsCount += value.requestsCount;
+            target.failuresCount += value.failuresCount;
+            target.responseTimesLog.push(...value.responseTimesLog);
+            target.requestsPerSecondLog.push(...value.requestsPerSecondLog);
+            target.failuresLog.push(...value.failuresLog);
+            for (const [percentile, entries] of Object.entries(value.percentileLogs)) {
+                if (target.percentileLogs[percentile] === undefined) {
+                    target.percentileLogs[percentile] = [];
+                }
+                target.percentileLogs[percentile].push(...entries);
+            }
+        }
+    });
+
+    return series;
+}
+
+// Zoom and pan fire a lot of events - series are only updated once the user stops
+function scheduleViewSeriesUpdate(chart) {
+    clearTimeout(series_update_timeout);
+    const min = Math.trunc(chart.scales.x.min);
+    const max = Math.trunc(chart.scales.x.max);
+    series_update_timeout = setTimeout(() => updateViewSeries(min, max), 300);
+}
+
+async function updateViewSeries(min, max) {
+    const updateId = ++series_update_id;
+    const level = selectSeriesLevel(min, max);
+    const current = getViewSeries();
+    let series;
+    if (level === null) {
+        if (current.chunks === undefined) {
+            return;
+        }
+        series = getEmbeddedSeries();
+    } else {
+        const firstChunk = getSeriesChunkIndex(level, min);
+        const lastChunk = getSeriesChunkIndex(level, max);
+        if (current.resolution === level.resolution && current.chunks !== undefined &&
+            current.chunks[0] <= firstChunk && current.chunks[1] >= lastChunk) {
+            return;
+        }
+
+        let chunks = [];
+        try {
+            for (let index = firstChunk; index <= lastChunk; index++) {
+                chunks.push(loadSeriesChunk(level.resolution, index));
+            }
+            chunks = await Promise.all(chunks);
+        } catch (error) {
+            console.error(error);
+            return;
+        }
+        // Newer update took place while the chunks were loading
+        if (updateId !== series_update_id) {
+            return;
+        }
+        series = mergeSeriesChunks(level.resolution, chunks);
+        series.chunks = [firstChunk, lastChunk];
+    }
+
+    view_series = series;
+    redrawTimeCharts({ min: Math.trunc(response_times_chart.scales.x.min), max: Math.trunc(response_times_chart.scales.x.max) });
+}
+
+// Redraws the time charts with current view series. If range is given - charts are zoomed to it
+function redrawTimeCharts(range) {
+    [rps_chart, failures_chart, users_chart].forEach(chart => chart.destroy());
+    drawResponseTimesChart();
+    drawRPSGraph();
+    drawFailuresGraph();
+    drawUsersGraph();
+    if (range !== undefined) {
+        [response_times_chart, rps_chart, failures_chart, users_chart].forEach(chart => chart.zoomScale('x', range, 'none'));
+    }
+    updateSeriesResolutionLabel();
+}
+
+function resetTimeChartsZoom() {
+    clearTimeout(series_update_timeout);
+    series_update_id++;
+    view_series = getEmbeddedSeries();
+    redrawTimeCharts();
+}
+
+function updateSeriesResolutionLabel() {
+    const resolution = getViewSeries().resolution;
+    const label = resolution % 60000 === 0 ? `${resolution / 60000} min` : `${resolution / 1000} s`;
+    document.getElementById("seriesResolution").innerText = `Resolution: ${label}`;
+}
+
 function drawBarChart(canvas, datasets, labels, datalabels) {
     return new Chart(
         canvas,
@@ -769,4 +1375,4 @@ const getOrCreateLegendList = (chart, id) => {
         ul.appendChild(li);
       });
     }
-  };
\ No newline at end of file
+  };
\ No newline at end of file